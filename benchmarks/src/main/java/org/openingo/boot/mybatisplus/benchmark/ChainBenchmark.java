@@ -0,0 +1,208 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.benchmark;
+
+import com.baomidou.mybatisplus.core.conditions.AbstractLambdaWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import org.openingo.boot.mybatisplus.extension.ChainTerminals;
+import org.openingo.boot.mybatisplus.extension.ModelX;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 条件链的构建及SQL片段渲染
+ * <p>各方法都计量到终端操作可执行的Wrapper为止；dualWrapper*为3.0之前的实现：每个条件同时作用于QueryWrapper和UpdateWrapper，作为对照</p>
+ *
+ * @author Qicz
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ChainBenchmark {
+
+    private static final List<Integer> IDS = Arrays.asList(1, 2, 3);
+
+    @Param({"5", "10", "20"})
+    public int predicates;
+
+    @Setup
+    public void setup() {
+        // 初始化TableInfo，lambda字段才能解析
+        H2Database.start(0);
+    }
+
+    /**
+     * ModelX：记录条件，并按终端操作的路径构建出可执行的Wrapper
+     */
+    @Benchmark
+    public LambdaQueryWrapper<BenchDO> modelXChain() {
+        BenchDO dao = ModelX.dao(BenchDO.class);
+        for (int i = 0; i < this.predicates; i++) {
+            switch (i % 5) {
+                case 0: dao.eq(BenchDO::getAge, i); break;
+                case 1: dao.like(BenchDO::getUsername, "user"); break;
+                case 2: dao.ge(BenchDO::getAge, 10); break;
+                case 3: dao.in(BenchDO::getBenchId, IDS); break;
+                default: dao.ne(BenchDO::getAddr, "addr"); break;
+            }
+        }
+        return ChainTerminals.queryWrapper(dao);
+    }
+
+    /**
+     * 对照：MyBatis-Plus原生的单个QueryWrapper
+     */
+    @Benchmark
+    public LambdaQueryWrapper<BenchDO> queryWrapperChain() {
+        LambdaQueryWrapper<BenchDO> wrapper = new LambdaQueryWrapper<>();
+        for (int i = 0; i < this.predicates; i++) {
+            switch (i % 5) {
+                case 0: wrapper.eq(BenchDO::getAge, i); break;
+                case 1: wrapper.like(BenchDO::getUsername, "user"); break;
+                case 2: wrapper.ge(BenchDO::getAge, 10); break;
+                case 3: wrapper.in(BenchDO::getBenchId, IDS); break;
+                default: wrapper.ne(BenchDO::getAddr, "addr"); break;
+            }
+        }
+        return wrapper;
+    }
+
+    /**
+     * 对照：3.0之前的getWrappers()双Wrapper链，终端操作执行其中的QueryWrapper
+     */
+    @Benchmark
+    public LambdaQueryWrapper<BenchDO> dualWrapperChain() {
+        return this.dualWrappers().getQueryWrapper();
+    }
+
+    /**
+     * ModelX构建并渲染WHERE片段
+     */
+    @Benchmark
+    public String modelXRender() {
+        return this.modelXChain().getCustomSqlSegment();
+    }
+
+    /**
+     * 对照：原生QueryWrapper构建并渲染WHERE片段
+     */
+    @Benchmark
+    public String queryWrapperRender() {
+        return this.queryWrapperChain().getCustomSqlSegment();
+    }
+
+    /**
+     * 对照：双Wrapper链构建并渲染WHERE片段
+     */
+    @Benchmark
+    public String dualWrapperRender() {
+        return this.dualWrapperChain().getCustomSqlSegment();
+    }
+
+    /**
+     * 对照：3.0之前doQueryLimitOne()的getQueryWrapper().clone().last("LIMIT 1")
+     */
+    @Benchmark
+    public String dualWrapperCloneLimitOne() {
+        return this.dualWrapperChain().clone().last("LIMIT 1").getCustomSqlSegment();
+    }
+
+    private DualWrapperChain dualWrappers() {
+        DualWrapperChain chain = new DualWrapperChain();
+        for (int i = 0; i < this.predicates; i++) {
+            switch (i % 5) {
+                case 0: chain.eq(BenchDO::getAge, i); break;
+                case 1: chain.like(BenchDO::getUsername, "user"); break;
+                case 2: chain.ge(BenchDO::getAge, 10); break;
+                case 3: chain.in(BenchDO::getBenchId, IDS); break;
+                default: chain.ne(BenchDO::getAddr, "addr"); break;
+            }
+        }
+        return chain;
+    }
+
+    /**
+     * 3.0之前ModelX的条件链实现
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static final class DualWrapperChain {
+
+        private Map<String, AbstractLambdaWrapper> wrappersMapping;
+
+        private void initWrappersMapping() {
+            if (null == this.wrappersMapping) {
+                this.wrappersMapping = new HashMap<>();
+                this.wrappersMapping.put("q", new LambdaQueryWrapper<BenchDO>());
+                this.wrappersMapping.put("u", new LambdaUpdateWrapper<BenchDO>());
+            }
+        }
+
+        private List<AbstractLambdaWrapper> getWrappers() {
+            this.initWrappersMapping();
+            return new ArrayList<>(this.wrappersMapping.values());
+        }
+
+        LambdaQueryWrapper<BenchDO> getQueryWrapper() {
+            this.initWrappersMapping();
+            return (LambdaQueryWrapper<BenchDO>) this.wrappersMapping.get("q");
+        }
+
+        DualWrapperChain eq(SFunction<BenchDO, ?> column, Object val) {
+            this.getWrappers().forEach(wrapper -> wrapper.eq(column, val));
+            return this;
+        }
+
+        DualWrapperChain ne(SFunction<BenchDO, ?> column, Object val) {
+            this.getWrappers().forEach(wrapper -> wrapper.ne(column, val));
+            return this;
+        }
+
+        DualWrapperChain ge(SFunction<BenchDO, ?> column, Object val) {
+            this.getWrappers().forEach(wrapper -> wrapper.ge(column, val));
+            return this;
+        }
+
+        DualWrapperChain like(SFunction<BenchDO, ?> column, Object val) {
+            this.getWrappers().forEach(wrapper -> wrapper.like(column, val));
+            return this;
+        }
+
+        DualWrapperChain in(SFunction<BenchDO, ?> column, Collection<?> coll) {
+            this.getWrappers().forEach(wrapper -> wrapper.in(column, coll));
+            return this;
+        }
+    }
+}
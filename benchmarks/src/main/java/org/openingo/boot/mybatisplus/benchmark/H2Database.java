@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.benchmark;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 内存H2数据库，不依赖Spring启动MyBatis-Plus
+ *
+ * @author Qicz
+ */
+final class H2Database {
+
+    private H2Database() {
+    }
+
+    private static SqlSessionFactory sqlSessionFactory;
+
+    /**
+     * 启动数据库并写入rows行数据，同一JVM中只启动一次
+     * @param rows 行数
+     */
+    static synchronized SqlSessionFactory start(int rows) {
+        if (null != sqlSessionFactory) {
+            return sqlSessionFactory;
+        }
+        PooledDataSource dataSource = new PooledDataSource("org.h2.Driver",
+                "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1", "sa", "");
+        dataSource.setPoolMaximumActiveConnections(32);
+        dataSource.setPoolMaximumIdleConnections(32);
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE bench (bench_id INT AUTO_INCREMENT PRIMARY KEY, "
+                        + "username VARCHAR(30), addr VARCHAR(20), age INT)");
+                statement.execute("CREATE INDEX idx_bench_age ON bench (age)");
+            }
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO bench (username, addr, age) VALUES (?, ?, ?)")) {
+                for (int i = 0; i < rows; i++) {
+                    insert.setString(1, "user" + i);
+                    insert.setString(2, "addr" + (i % 100));
+                    insert.setInt(3, i % 80);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("failed to prepare H2 database", e);
+        }
+        MybatisConfiguration configuration = new MybatisConfiguration(new Environment("benchmark", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(BenchMapper.class);
+        sqlSessionFactory = new MybatisSqlSessionFactoryBuilder().build(configuration);
+        return sqlSessionFactory;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.benchmark;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openingo.boot.mybatisplus.extension.ModelX;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于内存H2的端到端查询，以LambdaQueryWrapper + BaseMapper为对照
+ *
+ * @author Qicz
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+
+    private static final int ROWS = 10000;
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Setup
+    public void setup() {
+        this.sqlSessionFactory = H2Database.start(ROWS);
+    }
+
+    @Benchmark
+    public List<BenchDO> modelXDoQuery() {
+        return ModelX.dao(BenchDO.class).eq(BenchDO::getAge, 7).like(BenchDO::getUsername, "user").doQuery();
+    }
+
+    @Benchmark
+    public List<BenchDO> baseMapperSelectList() {
+        try (SqlSession sqlSession = this.sqlSessionFactory.openSession()) {
+            return sqlSession.getMapper(BenchMapper.class).selectList(new LambdaQueryWrapper<BenchDO>()
+                    .eq(BenchDO::getAge, 7).like(BenchDO::getUsername, "user"));
+        }
+    }
+
+    @Benchmark
+    public BenchDO modelXDoQueryLimitOne() {
+        return ModelX.dao(BenchDO.class).eq(BenchDO::getAge, 7).doQueryLimitOne();
+    }
+
+    @Benchmark
+    public BenchDO baseMapperSelectOneLimitOne() {
+        try (SqlSession sqlSession = this.sqlSessionFactory.openSession()) {
+            return sqlSession.getMapper(BenchMapper.class).selectOne(new LambdaQueryWrapper<BenchDO>()
+                    .eq(BenchDO::getAge, 7).last("LIMIT 1"));
+        }
+    }
+
+    @Benchmark
+    public long modelXDoCount() {
+        return ModelX.dao(BenchDO.class).eq(BenchDO::getAge, 7).doCount();
+    }
+
+    @Benchmark
+    public long baseMapperSelectCount() {
+        try (SqlSession sqlSession = this.sqlSessionFactory.openSession()) {
+            return sqlSession.getMapper(BenchMapper.class).selectCount(new LambdaQueryWrapper<BenchDO>().eq(BenchDO::getAge, 7));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+
+/**
+ * 基准测试使用：走终端操作的完整路径构建可执行的Wrapper，但不执行SQL
+ * <p>与被测版本位于同一包中以访问包内的 {@link ModelX#chain()}</p>
+ *
+ * @author Qicz
+ */
+public final class ChainTerminals {
+
+    private ChainTerminals() {
+    }
+
+    /**
+     * 从条件记录构建终端操作实际执行的QueryWrapper
+     * @param dao dao对象
+     * @param <T> 实体类型
+     * @return LambdaQueryWrapper<T>
+     */
+    public static <T extends ModelX<T>> LambdaQueryWrapper<T> queryWrapper(ModelX<T> dao) {
+        return dao.chain().stream("benchmark", (entityClass, wrapper) -> wrapper);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 关联预取
+ * <p>主查询完成后，每个关联收集父实体的外键，用一次IN查询（超过 {@link ModelXConfig#getInChunkSize()} 时分块）
+ * 取回全部关联实体，再按关联键做哈希连接设置到父实体上，避免逐行查询的N+1问题。
+ * 父实体来自缓存或合并查询时先 {@link #copy(Class, List) 拷贝}，不修改调用方之间共享的实体</p>
+ *
+ * @author Qicz
+ */
+final class Associations {
+
+    private Associations() {
+    }
+
+    /**
+     * 为父实体预取所有关联，多个关联时并行查询
+     * @param parents 父实体
+     * @param associations 关联
+     */
+    static <T> void prefetch(List<T> parents, List<Association<T, ?>> associations) {
+        if (parents.isEmpty() || associations.isEmpty()) {
+            return;
+        }
+        List<Supplier<Void>> tasks = new ArrayList<>(associations.size());
+        for (Association<T, ?> association : associations) {
+            tasks.add(() -> {
+                association.fetch(parents);
+                return null;
+            });
+        }
+        ParallelTasks.invokeAll(tasks);
+    }
+
+    /**
+     * 浅拷贝实体的主键及表字段，关联只设置到拷贝上
+     * @param entityClass 实体类
+     * @param rows 实体
+     * @return 与rows顺序一致的拷贝
+     */
+    static <T> List<T> copy(Class<T> entityClass, List<T> rows) {
+        TableInfo tableInfo = Statements.tableInfo(entityClass);
+        Configuration configuration = tableInfo.getConfiguration();
+        List<String> properties = new ArrayList<>(tableInfo.getFieldList().size() + 1);
+        if (null != tableInfo.getKeyProperty()) {
+            properties.add(tableInfo.getKeyProperty());
+        }
+        for (TableFieldInfo field : tableInfo.getFieldList()) {
+            properties.add(field.getProperty());
+        }
+        List<T> copies = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            T copy = configuration.getObjectFactory().create(entityClass);
+            MetaObject source = configuration.newMetaObject(row);
+            MetaObject target = configuration.newMetaObject(copy);
+            for (String property : properties) {
+                target.setValue(property, source.getValue(property));
+            }
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * 单个关联：parent.foreignKey = related.relatedKey
+     */
+    static final class Association<T, R> {
+
+        private final SFunction<T, ?> foreignKey;
+
+        private final Class<R> related;
+
+        private final SFunction<R, ?> relatedKey;
+
+        private final BiConsumer<T, List<R>> setter;
+
+        Association(SFunction<T, ?> foreignKey, Class<R> related, SFunction<R, ?> relatedKey, BiConsumer<T, List<R>> setter) {
+            // 提前校验关联实体已注册
+            Statements.tableInfo(related);
+            this.foreignKey = foreignKey;
+            this.related = related;
+            this.relatedKey = relatedKey;
+            this.setter = setter;
+        }
+
+        /**
+         * 查询关联实体并设置到父实体上，每个父实体设置各自的List，没有关联实体时为空List
+         * @param parents 父实体
+         */
+        void fetch(List<T> parents) {
+            Set<Object> keys = new LinkedHashSet<>();
+            for (T parent : parents) {
+                Object key = this.foreignKey.apply(parent);
+                if (null != key) {
+                    keys.add(key);
+                }
+            }
+            Map<Object, List<R>> byKey = new HashMap<>();
+            if (!keys.isEmpty()) {
+                for (R row : ModelXQuery.of(this.related).in(this.relatedKey, keys).doQuery()) {
+                    byKey.computeIfAbsent(Statements.joinKey(this.relatedKey.apply(row)), k -> new ArrayList<>(2)).add(row);
+                }
+            }
+            for (T parent : parents) {
+                Object key = this.foreignKey.apply(parent);
+                List<R> rows = null == key ? null : byKey.get(Statements.joinKey(key));
+                this.setter.accept(parent, null == rows ? new ArrayList<>(0) : new ArrayList<>(rows));
+            }
+        }
+    }
+}
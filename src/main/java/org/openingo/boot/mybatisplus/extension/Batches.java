@@ -0,0 +1,123 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.enums.SqlMethod;
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * JDBC批量执行
+ * <p>使用ExecutorType.BATCH的Executor(已注册的插件照常生效)，每batchSize条flush并commit一次；
+ * 在Spring事务中时commit由事务管理器负责</p>
+ *
+ * @author Qicz
+ */
+final class Batches {
+
+    private Batches() {
+    }
+
+    /**
+     * 批量执行
+     * @param entityClass 实体类
+     * @param sqlMethod 执行的语句
+     * @param entities 实体集合
+     * @param batchSize 每批条数
+     * @param param 实体对应的语句参数
+     * @return 影响行数，驱动返回SUCCESS_NO_INFO时按1行计
+     */
+    static <E> int execute(Class<?> entityClass, SqlMethod sqlMethod, Collection<E> entities, int batchSize,
+                           Function<E, Object> param) {
+        Configuration configuration = Statements.configuration(entityClass);
+        MappedStatement statement = configuration.getMappedStatement(Statements.statement(entityClass, sqlMethod));
+        return execute(configuration, executor -> statement, entities, batchSize, param);
+    }
+
+    /**
+     * 批量执行
+     * @param configuration 配置
+     * @param statement 执行的语句，可读取Executor的连接(如识别方言)
+     * @param entities 实体集合
+     * @param batchSize 每批条数
+     * @param param 实体对应的语句参数
+     * @return 影响行数，驱动返回SUCCESS_NO_INFO时按1行计
+     */
+    static <E> int execute(Configuration configuration, Statements.ExecutorAction<MappedStatement> statement,
+                           Collection<E> entities, int batchSize, Function<E, Object> param) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        if (null == entities || entities.isEmpty()) {
+            return 0;
+        }
+        return Statements.execute(configuration, ExecutorType.BATCH, executor -> {
+            MappedStatement ms = statement.apply(executor);
+            try {
+                int affected = 0;
+                int pending = 0;
+                for (E entity : entities) {
+                    executor.update(ms, param.apply(entity));
+                    if (++pending == batchSize) {
+                        affected += flush(executor);
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    affected += flush(executor);
+                }
+                return affected;
+            } catch (SQLException | RuntimeException e) {
+                throw ExceptionUtils.mpe("batch execution of %s failed", e, ms.getId());
+            }
+        });
+    }
+
+    private static int flush(Executor executor) throws SQLException {
+        int affected = 0;
+        List<BatchResult> results = executor.flushStatements();
+        for (BatchResult result : results) {
+            for (int count : result.getUpdateCounts()) {
+                affected += Statement.SUCCESS_NO_INFO == count ? 1 : count;
+            }
+        }
+        executor.commit(true);
+        return affected;
+    }
+}
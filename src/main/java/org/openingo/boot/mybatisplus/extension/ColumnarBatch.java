@@ -0,0 +1,318 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 列式查询结果：每个数值字段一个基本类型数组，字符串字典编码，NULL以位图表示
+ * <p>数组直接暴露以便按列循环计算，不要修改；数组长度可能大于行数，以 {@link #size()} 为准</p>
+ *
+ * @author Qicz
+ */
+public final class ColumnarBatch {
+
+    /**
+     * 列类型
+     */
+    public enum Type {
+        /** Long */
+        LONG,
+        /** Integer、Short、Byte、Boolean(0/1) */
+        INT,
+        /** Double、Float、BigDecimal */
+        DOUBLE,
+        /** 字符串及其他类型，字典编码 */
+        STRING
+    }
+
+    private final int size;
+
+    private final Column[] columns;
+
+    private ColumnarBatch(int size, Column[] columns) {
+        this.size = size;
+        this.columns = columns;
+    }
+
+    /**
+     * 行数
+     */
+    public int size() {
+        return size;
+    }
+
+    public int columnCount() {
+        return columns.length;
+    }
+
+    /**
+     * 复制各列的数组，用于缓存或合并查询共享的结果
+     */
+    ColumnarBatch copy() {
+        Column[] copies = new Column[this.columns.length];
+        for (int i = 0; i < copies.length; i++) {
+            copies[i] = new Column(this.columns[i]);
+        }
+        return new ColumnarBatch(this.size, copies);
+    }
+
+    /**
+     * 按select的顺序获取列
+     * @param index 从0开始
+     */
+    public Column column(int index) {
+        return columns[index];
+    }
+
+    /**
+     * 按实体属性名获取列
+     * @param property 属性名
+     */
+    public Column column(String property) {
+        for (Column column : columns) {
+            if (column.property.equals(property)) {
+                return column;
+            }
+        }
+        throw new IllegalArgumentException("no column for property " + property);
+    }
+
+    /**
+     * 根据Java类型确定列类型
+     * @param javaType 实体属性类型
+     */
+    static Type typeOf(Class<?> javaType) {
+        if (javaType == Long.class || javaType == long.class) {
+            return Type.LONG;
+        }
+        if (javaType == Integer.class || javaType == int.class || javaType == Short.class || javaType == short.class
+                || javaType == Byte.class || javaType == byte.class || javaType == Boolean.class || javaType == boolean.class) {
+            return Type.INT;
+        }
+        if (javaType == Double.class || javaType == double.class || javaType == Float.class || javaType == float.class
+                || Number.class.isAssignableFrom(javaType)) {
+            return Type.DOUBLE;
+        }
+        return Type.STRING;
+    }
+
+    /**
+     * 按行追加，全部追加后构建
+     * @param <T> 实体类型
+     */
+    static final class Appender<T> implements Consumer<T> {
+
+        private final Column[] columns;
+
+        private final Function<T, ?>[] getters;
+
+        private int size;
+
+        /**
+         * @param properties 属性名
+         * @param types 列类型
+         * @param getters 从实体读取属性值，顺序与properties一致
+         */
+        Appender(String[] properties, Type[] types, Function<T, ?>[] getters) {
+            this.columns = new Column[properties.length];
+            for (int i = 0; i < this.columns.length; i++) {
+                this.columns[i] = new Column(properties[i], types[i]);
+            }
+            this.getters = getters;
+        }
+
+        @Override
+        public void accept(T row) {
+            for (int i = 0; i < this.columns.length; i++) {
+                this.columns[i].append(this.getters[i].apply(row), this.size);
+            }
+            this.size++;
+        }
+
+        ColumnarBatch build() {
+            for (Column column : this.columns) {
+                column.dictionaryIndex = null;
+            }
+            return new ColumnarBatch(this.size, this.columns);
+        }
+    }
+
+    /**
+     * 一列数据
+     */
+    public static final class Column {
+
+        private static final int INITIAL_CAPACITY = 256;
+
+        private final String property;
+
+        private final Type type;
+
+        private final BitSet nulls;
+
+        private long[] longs;
+
+        private int[] ints;
+
+        private double[] doubles;
+
+        private List<String> dictionary;
+
+        private Map<String, Integer> dictionaryIndex;
+
+        Column(String property, Type type) {
+            this.property = property;
+            this.type = type;
+            this.nulls = new BitSet();
+            switch (type) {
+                case LONG:
+                    this.longs = new long[INITIAL_CAPACITY];
+                    break;
+                case DOUBLE:
+                    this.doubles = new double[INITIAL_CAPACITY];
+                    break;
+                case STRING:
+                    this.ints = new int[INITIAL_CAPACITY];
+                    this.dictionary = new ArrayList<>();
+                    this.dictionaryIndex = new HashMap<>();
+                    break;
+                default:
+                    this.ints = new int[INITIAL_CAPACITY];
+                    break;
+            }
+        }
+
+        private Column(Column column) {
+            this.property = column.property;
+            this.type = column.type;
+            this.nulls = (BitSet) column.nulls.clone();
+            this.longs = null == column.longs ? null : column.longs.clone();
+            this.ints = null == column.ints ? null : column.ints.clone();
+            this.doubles = null == column.doubles ? null : column.doubles.clone();
+            this.dictionary = null == column.dictionary ? null : new ArrayList<>(column.dictionary);
+            this.dictionaryIndex = null == column.dictionaryIndex ? null : new HashMap<>(column.dictionaryIndex);
+        }
+
+        private void append(Object value, int row) {
+            switch (this.type) {
+                case LONG:
+                    if (row == this.longs.length) {
+                        this.longs = Arrays.copyOf(this.longs, row << 1);
+                    }
+                    this.longs[row] = null == value ? 0L : ((Number) value).longValue();
+                    break;
+                case DOUBLE:
+                    if (row == this.doubles.length) {
+                        this.doubles = Arrays.copyOf(this.doubles, row << 1);
+                    }
+                    this.doubles[row] = null == value ? 0D : ((Number) value).doubleValue();
+                    break;
+                case STRING:
+                    if (row == this.ints.length) {
+                        this.ints = Arrays.copyOf(this.ints, row << 1);
+                    }
+                    if (null != value) {
+                        this.ints[row] = this.dictionaryIndex.computeIfAbsent(value.toString(), v -> {
+                            this.dictionary.add(v);
+                            return this.dictionary.size() - 1;
+                        });
+                    }
+                    break;
+                default:
+                    if (row == this.ints.length) {
+                        this.ints = Arrays.copyOf(this.ints, row << 1);
+                    }
+                    this.ints[row] = null == value ? 0 : value instanceof Boolean
+                            ? (Boolean) value ? 1 : 0 : ((Number) value).intValue();
+                    break;
+            }
+            if (null == value) {
+                this.nulls.set(row);
+            }
+        }
+
+        public String getProperty() {
+            return property;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        /**
+         * NULL位图
+         */
+        public BitSet getNulls() {
+            return nulls;
+        }
+
+        /**
+         * LONG列的值，NULL行为0
+         */
+        public long[] getLongs() {
+            return longs;
+        }
+
+        /**
+         * INT列的值，NULL行为0；STRING列的字典编码
+         */
+        public int[] getInts() {
+            return ints;
+        }
+
+        /**
+         * DOUBLE列的值，NULL行为0
+         */
+        public double[] getDoubles() {
+            return doubles;
+        }
+
+        /**
+         * STRING列的字典，下标为编码
+         */
+        public List<String> getDictionary() {
+            return dictionary;
+        }
+
+        /**
+         * STRING列某一行的值
+         * @param row 行
+         */
+        public String getString(int row) {
+            return nulls.get(row) ? null : dictionary.get(ints[row]);
+        }
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.conditions.AbstractLambdaWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 条件记录
+ * <p>链式调用时只记录条件，终端操作时才构建所需的那一个Wrapper</p>
+ *
+ * @author Qicz
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+final class ConditionLog<T> {
+
+    /**
+     * 条件类型
+     */
+    enum Kind {
+        /** WHERE 条件，查询和更新共用 */
+        WHERE(true, true),
+        /** SELECT 字段，仅查询 */
+        SELECT(true, false),
+        /** SET 片段，仅更新 */
+        SET(false, true),
+        /** GROUP BY，查询和更新共用 */
+        GROUP_BY(true, true),
+        /** ORDER BY，查询和更新共用 */
+        ORDER_BY(true, true);
+
+        final boolean query;
+        final boolean update;
+
+        Kind(boolean query, boolean update) {
+            this.query = query;
+            this.update = update;
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private Kind[] kinds = new Kind[INITIAL_CAPACITY];
+
+    private Consumer<AbstractLambdaWrapper>[] steps = new Consumer[INITIAL_CAPACITY];
+
+    private int size;
+
+    private T entity;
+
+    private boolean normalized;
+
+    private Integer fetchSize;
+
+    private long cacheTtlMillis;
+
+    private boolean coalesced;
+
+    private Comparator<T> order;
+
+    private List<Associations.Association<T, ?>> associations = Collections.emptyList();
+
+    /**
+     * 分块执行的IN条件在steps中的位置，-1表示没有
+     */
+    private int chunkedStep = -1;
+
+    private SFunction<T, ?> chunkedColumn;
+
+    private List<Object> chunkedValues;
+
+    /**
+     * 顶层WHERE中是否有OR
+     */
+    private boolean disjunctive;
+
+    /**
+     * 记录一个条件
+     * @param kind 条件类型
+     * @param step 作用于Wrapper的条件
+     */
+    void add(Kind kind, Consumer<AbstractLambdaWrapper> step) {
+        if (this.size == this.steps.length) {
+            int capacity = this.size << 1;
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.steps = Arrays.copyOf(this.steps, capacity);
+        }
+        this.kinds[this.size] = kind;
+        this.steps[this.size++] = step;
+    }
+
+    /**
+     * 设置实体条件
+     * @param entity 实体
+     */
+    void setEntity(T entity) {
+        this.entity = entity;
+    }
+
+    /**
+     * 开启SQL规范化
+     */
+    void normalize() {
+        this.normalized = true;
+    }
+
+    /**
+     * 是否规范化SQL，链上开启或全局开启
+     */
+    boolean isNormalized() {
+        return this.normalized || ModelXConfig.isNormalizeSql();
+    }
+
+    /**
+     * 流式查询的JDBC fetchSize，null时使用全局配置
+     */
+    Integer getFetchSize() {
+        return this.fetchSize;
+    }
+
+    void setFetchSize(Integer fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * 查询结果缓存的有效期(毫秒)，0表示不缓存
+     */
+    long getCacheTtlMillis() {
+        return this.cacheTtlMillis;
+    }
+
+    void setCacheTtlMillis(long cacheTtlMillis) {
+        this.cacheTtlMillis = cacheTtlMillis;
+    }
+
+    /**
+     * 是否合并相同的并发查询
+     */
+    boolean isCoalesced() {
+        return this.coalesced;
+    }
+
+    void coalesce() {
+        this.coalesced = true;
+    }
+
+    /**
+     * 记录一个关联，主查询完成后批量预取
+     * @param association 关联
+     */
+    void addAssociation(Associations.Association<T, ?> association) {
+        if (this.associations.isEmpty()) {
+            this.associations = new ArrayList<>(2);
+        }
+        this.associations.add(association);
+    }
+
+    /**
+     * 链上的关联，没有时为empty
+     */
+    List<Associations.Association<T, ?>> getAssociations() {
+        return this.associations;
+    }
+
+    /**
+     * IN列表的值，规范化时按桶补齐
+     * @param coll 数据集合
+     */
+    Collection<?> inValues(Collection<?> coll) {
+        return this.isNormalized() ? SqlShapes.pad(coll) : coll;
+    }
+
+    /**
+     * 记录超过 {@link ModelXConfig#getInChunkSize()} 的IN条件，每条链只分块一个IN条件
+     * @param column 字段
+     * @param coll 数据集合
+     * @return 是否已作为分块的IN条件记录，false时按普通条件记录
+     */
+    boolean chunkIn(SFunction<T, ?> column, Collection<?> coll) {
+        if (this.chunkedStep >= 0 || null == coll || coll.size() <= ModelXConfig.getInChunkSize()) {
+            return false;
+        }
+        List<Object> values = new ArrayList<>(new LinkedHashSet<>(coll));
+        this.chunkedStep = this.size;
+        this.chunkedColumn = column;
+        this.chunkedValues = values;
+        // 非分块执行的终端操作使用完整的列表
+        this.add(Kind.WHERE, wrapper -> wrapper.in(true, column, values));
+        return true;
+    }
+
+    /**
+     * 记录顶层WHERE中的OR
+     */
+    void disjoin() {
+        this.disjunctive = true;
+    }
+
+    /**
+     * 分块的IN列表
+     * <p>只有IN是顶层WHERE的AND条件时才分块，各块结果互不重叠；顶层有OR时OR另一侧的行会在每块中重复匹配，
+     * 更新时会被重复执行，因此不分块，使用完整的列表。groupBy无法合并，有groupBy时也不分块</p>
+     * @return 每块的值，不需要分块时为empty
+     */
+    List<List<Object>> inChunks() {
+        if (this.chunkedStep < 0 || this.chunkedValues.size() <= ModelXConfig.getInChunkSize() || this.disjunctive
+                || this.contains(Kind.GROUP_BY)) {
+            return Collections.emptyList();
+        }
+        return InChunks.split(this.chunkedValues, ModelXConfig.getInChunkSize());
+    }
+
+    /**
+     * 记录排序，用于合并分块查询的结果
+     * @param isAsc 是否是 ASC 排序
+     * @param columns 字段数组
+     */
+    void addOrder(boolean isAsc, SFunction<T, ?>[] columns) {
+        Comparator<Comparable> natural = Comparator.nullsFirst(Comparator.<Comparable>naturalOrder());
+        for (SFunction<T, ?> column : columns) {
+            Comparator<T> comparator = (a, b) -> natural.compare((Comparable) column.apply(a), (Comparable) column.apply(b));
+            if (!isAsc) {
+                comparator = comparator.reversed();
+            }
+            this.order = null == this.order ? comparator : this.order.thenComparing(comparator);
+        }
+    }
+
+    /**
+     * 链上的排序，没有orderBy时为null
+     */
+    Comparator<T> getOrder() {
+        return this.order;
+    }
+
+    /**
+     * 是否记录了指定类型的条件
+     * @param kind 条件类型
+     */
+    boolean contains(Kind kind) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.kinds[i] == kind) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 构建QueryWrapper，每次返回一个新的
+     */
+    LambdaQueryWrapper<T> toQueryWrapper() {
+        return this.toQueryWrapper(EnumSet.noneOf(Kind.class));
+    }
+
+    /**
+     * 构建QueryWrapper，每次返回一个新的
+     * @param excludes 不需要的条件类型
+     */
+    LambdaQueryWrapper<T> toQueryWrapper(EnumSet<Kind> excludes) {
+        return this.toQueryWrapper(excludes, false);
+    }
+
+    /**
+     * 构建QueryWrapper，每次返回一个新的
+     * @param excludes 不需要的条件类型
+     * @param nested 是否将WHERE条件整体嵌套为 AND (...)，便于终端操作追加条件而不受OR影响
+     */
+    LambdaQueryWrapper<T> toQueryWrapper(EnumSet<Kind> excludes, boolean nested) {
+        LambdaQueryWrapper<T> wrapper = new LambdaQueryWrapper<>();
+        this.replay(wrapper, true, excludes, nested, null);
+        return wrapper;
+    }
+
+    /**
+     * 构建分块的QueryWrapper，分块的IN条件只包含inChunk
+     * @param inChunk IN列表的一块
+     */
+    LambdaQueryWrapper<T> toQueryWrapper(List<Object> inChunk) {
+        LambdaQueryWrapper<T> wrapper = new LambdaQueryWrapper<>();
+        this.replay(wrapper, true, EnumSet.noneOf(Kind.class), false, inChunk);
+        return wrapper;
+    }
+
+    /**
+     * 构建UpdateWrapper，每次返回一个新的
+     */
+    LambdaUpdateWrapper<T> toUpdateWrapper() {
+        return this.toUpdateWrapper(false);
+    }
+
+    /**
+     * 构建UpdateWrapper，每次返回一个新的
+     * @param nested 是否将WHERE条件整体嵌套为 AND (...)
+     */
+    LambdaUpdateWrapper<T> toUpdateWrapper(boolean nested) {
+        LambdaUpdateWrapper<T> wrapper = new LambdaUpdateWrapper<>();
+        this.replay(wrapper, false, EnumSet.noneOf(Kind.class), nested, null);
+        return wrapper;
+    }
+
+    /**
+     * 构建分块的UpdateWrapper，分块的IN条件只包含inChunk
+     * @param inChunk IN列表的一块
+     */
+    LambdaUpdateWrapper<T> toUpdateWrapper(List<Object> inChunk) {
+        LambdaUpdateWrapper<T> wrapper = new LambdaUpdateWrapper<>();
+        this.replay(wrapper, false, EnumSet.noneOf(Kind.class), false, inChunk);
+        return wrapper;
+    }
+
+    /**
+     * 清空所有记录
+     */
+    void clear() {
+        Arrays.fill(this.kinds, 0, this.size, null);
+        Arrays.fill(this.steps, 0, this.size, null);
+        this.size = 0;
+        this.entity = null;
+        this.normalized = false;
+        this.fetchSize = null;
+        this.cacheTtlMillis = 0;
+        this.coalesced = false;
+        this.order = null;
+        this.associations = Collections.emptyList();
+        this.chunkedStep = -1;
+        this.chunkedColumn = null;
+        this.chunkedValues = null;
+        this.disjunctive = false;
+    }
+
+    private void replay(AbstractLambdaWrapper wrapper, boolean query, EnumSet<Kind> excludes, boolean nested, List<Object> inChunk) {
+        if (null != this.entity) {
+            wrapper.setEntity(this.entity);
+        }
+        if (nested && !excludes.contains(Kind.WHERE) && this.contains(Kind.WHERE)) {
+            Consumer<AbstractLambdaWrapper> where = inner -> this.apply(inner, kind -> kind == Kind.WHERE, inChunk);
+            wrapper.and(true, where);
+            this.apply(wrapper, kind -> kind != Kind.WHERE && (query ? kind.query : kind.update) && !excludes.contains(kind), inChunk);
+        } else {
+            this.apply(wrapper, kind -> (query ? kind.query : kind.update) && !excludes.contains(kind), inChunk);
+        }
+    }
+
+    private void apply(AbstractLambdaWrapper wrapper, Predicate<Kind> filter, List<Object> inChunk) {
+        for (int i = 0; i < this.size; i++) {
+            if (!filter.test(this.kinds[i])) {
+                continue;
+            }
+            if (i == this.chunkedStep && null != inChunk) {
+                wrapper.in(true, this.chunkedColumn, this.inValues(inChunk));
+            } else {
+                this.steps[i].accept(wrapper);
+            }
+        }
+    }
+}
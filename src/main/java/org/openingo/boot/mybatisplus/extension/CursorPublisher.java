@@ -0,0 +1,220 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 基于MyBatis Cursor的Reactive Streams Publisher
+ * <p>每次subscribe打开一个新的Cursor；只在subscriber request(n)时从ResultSet读取n行，
+ * cancel时立即关闭Cursor并释放连接。读取在 {@link ModelXConfig#getAsyncExecutor()} 中串行进行</p>
+ *
+ * @author Qicz
+ */
+final class CursorPublisher<T> implements Publisher<T> {
+
+    private final Class<T> entityClass;
+
+    private final Wrapper<T> wrapper;
+
+    private final int prefetch;
+
+    private CursorPublisher(Class<T> entityClass, Wrapper<T> wrapper, int prefetch) {
+        this.entityClass = entityClass;
+        this.wrapper = wrapper;
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * 创建Publisher
+     * @param entityClass 实体类
+     * @param wrapper 条件
+     * @param prefetch JDBC fetchSize
+     */
+    static <T> Publisher<T> create(Class<T> entityClass, Wrapper<T> wrapper, int prefetch) {
+        if (prefetch <= 0 && ModelXConfig.STREAMING_FETCH_SIZE != prefetch) {
+            throw new IllegalArgumentException("prefetch must be positive or STREAMING_FETCH_SIZE");
+        }
+        return new CursorPublisher<>(entityClass, wrapper, prefetch);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (null == subscriber) {
+            throw new NullPointerException("subscriber");
+        }
+        subscriber.onSubscribe(new CursorSubscription(subscriber, ModelXConfig.getAsyncExecutor()));
+    }
+
+    private final class CursorSubscription implements Subscription, Runnable {
+
+        private final Subscriber<? super T> subscriber;
+
+        private final Executor executor;
+
+        /**
+         * 订阅时的读写路由上下文，在线程池中读取时恢复
+         */
+        private final ReadWriteRouting.Context routing = ReadWriteRouting.capture();
+
+        private final AtomicLong requested = new AtomicLong();
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+
+        private Throwable invalidRequest;
+
+        private Stream<T> stream;
+
+        private Iterator<T> iterator;
+
+        private boolean done;
+
+        CursorSubscription(Subscriber<? super T> subscriber, Executor executor) {
+            this.subscriber = subscriber;
+            this.executor = executor;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                this.invalidRequest = new IllegalArgumentException("§3.9: request must be positive, but was " + n);
+                this.cancelled = true;
+            } else {
+                long current;
+                long next;
+                do {
+                    current = this.requested.get();
+                    next = current + n;
+                    if (next < 0) {
+                        next = Long.MAX_VALUE;
+                    }
+                } while (!this.requested.compareAndSet(current, next));
+            }
+            this.schedule();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            this.schedule();
+        }
+
+        private void schedule() {
+            if (this.wip.getAndIncrement() == 0) {
+                try {
+                    this.executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // 线程池已满，不在request/cancel的调用线程中读取
+                    this.done = true;
+                    if (!this.cancelled) {
+                        this.cancelled = true;
+                        this.subscriber.onError(e);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                this.drain();
+                missed = this.wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (this.done) {
+                return;
+            }
+            if (this.cancelled) {
+                this.close();
+                if (null != this.invalidRequest) {
+                    this.subscriber.onError(this.invalidRequest);
+                }
+                return;
+            }
+            try {
+                if (null == this.iterator) {
+                    this.stream = this.routing.call(() -> Cursors.stream(entityClass, wrapper, prefetch));
+                    this.iterator = this.stream.iterator();
+                }
+                long emitted = 0;
+                long demand = this.requested.get();
+                while (emitted < demand && !this.cancelled) {
+                    if (!this.iterator.hasNext()) {
+                        this.close();
+                        this.subscriber.onComplete();
+                        return;
+                    }
+                    this.subscriber.onNext(this.iterator.next());
+                    emitted++;
+                }
+                if (emitted > 0 && demand != Long.MAX_VALUE) {
+                    this.requested.addAndGet(-emitted);
+                }
+                if (this.cancelled) {
+                    this.close();
+                }
+            } catch (Throwable t) {
+                this.close();
+                this.subscriber.onError(t);
+            }
+        }
+
+        /**
+         * 关闭Cursor并释放连接，关闭失败不影响已发出的终止信号
+         */
+        private void close() {
+            this.done = true;
+            if (null != this.stream) {
+                Stream<T> stream = this.stream;
+                this.stream = null;
+                this.iterator = null;
+                try {
+                    stream.close();
+                } catch (RuntimeException ignored) {
+                    // 连接已由SqlSession释放
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.enums.SqlMethod;
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.exceptions.ExceptionFactory;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.RowBounds;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 基于MyBatis Cursor的流式查询
+ * <p>使用派生的SELECT_LIST语句，设置fetchSize及FORWARD_ONLY，结果逐行读取，内存占用与结果集大小无关</p>
+ *
+ * @author Qicz
+ */
+final class Cursors {
+
+    private Cursors() {
+    }
+
+    /**
+     * 打开流，使用完必须关闭，关闭时释放Cursor及连接
+     * @param entityClass 实体类
+     * @param wrapper 条件
+     * @param fetchSize JDBC fetchSize，null时使用 {@link ModelXConfig#getFetchSize()}
+     */
+    static <T> Stream<T> stream(Class<T> entityClass, Wrapper<T> wrapper, Integer fetchSize) {
+        Configuration configuration = Statements.configuration(entityClass);
+        MappedStatement statement = statement(entityClass, configuration, fetchSize);
+        Executor executor = Statements.newExecutor(configuration, ExecutorType.SIMPLE);
+        Cursor<T> cursor;
+        try {
+            cursor = executor.queryCursor(statement, Statements.wrapperParam(wrapper), RowBounds.DEFAULT);
+        } catch (SQLException e) {
+            executor.close(true);
+            throw ExceptionFactory.wrapException("Error querying database.  Cause: " + e, e);
+        } catch (RuntimeException e) {
+            executor.close(true);
+            throw e;
+        }
+        return StreamSupport.stream(cursor.spliterator(), false).onClose(() -> close(executor, cursor));
+    }
+
+    /**
+     * 逐行消费
+     * @param entityClass 实体类
+     * @param wrapper 条件
+     * @param fetchSize JDBC fetchSize
+     * @param consumer 消费函数
+     */
+    static <T> void each(Class<T> entityClass, Wrapper<T> wrapper, Integer fetchSize, Consumer<T> consumer) {
+        try (Stream<T> stream = stream(entityClass, wrapper, fetchSize)) {
+            stream.forEach(consumer);
+        }
+    }
+
+    /**
+     * 按批消费，每批最多batchSize条
+     * @param entityClass 实体类
+     * @param wrapper 条件
+     * @param fetchSize JDBC fetchSize
+     * @param batchSize 批大小
+     * @param consumer 消费函数
+     */
+    static <T> void each(Class<T> entityClass, Wrapper<T> wrapper, Integer fetchSize, int batchSize, Consumer<List<T>> consumer) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        try (Stream<T> stream = stream(entityClass, wrapper, fetchSize)) {
+            Iterator<T> iterator = stream.iterator();
+            List<T> batch = new ArrayList<>(batchSize);
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == batchSize) {
+                    consumer.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                consumer.accept(batch);
+            }
+        }
+    }
+
+    /**
+     * 派生带fetchSize的SELECT_LIST语句
+     */
+    private static MappedStatement statement(Class<?> entityClass, Configuration configuration, Integer fetchSize) {
+        Integer size = null == fetchSize ? ModelXConfig.getFetchSize() : fetchSize;
+        String suffix = "cursor" + (Integer.MIN_VALUE == size ? "Streaming" : String.valueOf(size));
+        return Statements.derive(configuration, Statements.statement(entityClass, SqlMethod.SELECT_LIST),
+                suffix, null, builder -> builder.fetchSize(size).resultSetType(ResultSetType.FORWARD_ONLY));
+    }
+
+    private static void close(Executor executor, Cursor<?> cursor) {
+        try {
+            cursor.close();
+        } catch (IOException e) {
+            throw ExceptionUtils.mpe(e);
+        } finally {
+            executor.close(false);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+/**
+ * 数据库方言
+ * <p>内置实现见 {@link Dialects}，默认根据DataSource自动识别，可通过 {@link ModelXConfig#setDialect(Dialect)} 指定</p>
+ *
+ * @author Qicz
+ */
+public interface Dialect {
+
+    /**
+     * 为查询SQL添加行数限制
+     * @param sql 原SQL
+     * @param offset 跳过的行数
+     * @param limit 最多返回的行数
+     * @return 添加行数限制后的SQL，限制值以占位符 ? 表示
+     */
+    LimitSql limit(String sql, long offset, int limit);
+
+    /**
+     * 添加行数限制后的SQL
+     */
+    final class LimitSql {
+
+        private static final long[] NONE = new long[0];
+
+        private final String sql;
+
+        private final long[] before;
+
+        private final long[] after;
+
+        /**
+         * @param sql 添加行数限制后的SQL
+         * @param before 位于原SQL参数之前的占位符的值
+         * @param after 位于原SQL参数之后的占位符的值
+         */
+        public LimitSql(String sql, long[] before, long[] after) {
+            this.sql = sql;
+            this.before = null == before ? NONE : before;
+            this.after = null == after ? NONE : after;
+        }
+
+        /**
+         * 限制值都位于原SQL参数之后
+         * @param sql 添加行数限制后的SQL
+         * @param after 占位符的值
+         */
+        public static LimitSql suffix(String sql, long... after) {
+            return new LimitSql(sql, NONE, after);
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long[] getBefore() {
+            return before;
+        }
+
+        public long[] getAfter() {
+            return after;
+        }
+    }
+}
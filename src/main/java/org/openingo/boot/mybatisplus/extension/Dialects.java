@@ -0,0 +1,357 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 内置方言及自动识别
+ *
+ * @author Qicz
+ */
+public final class Dialects {
+
+    private Dialects() {
+    }
+
+    private static final Log LOG = LogFactory.getLog(Dialects.class);
+
+    private static final Map<DataSource, Dialect> DETECTED = new ConcurrentHashMap<>();
+
+    private static final Map<DataSource, UpsertDialect> DETECTED_UPSERT = new ConcurrentHashMap<>();
+
+    /**
+     * LIMIT ? OFFSET ?：MySQL、MariaDB、PostgreSQL、H2、HSQLDB、SQLite等
+     */
+    public static final Dialect LIMIT_OFFSET = (sql, offset, limit) -> offset > 0
+            ? Dialect.LimitSql.suffix(sql + " LIMIT ? OFFSET ?", limit, offset)
+            : Dialect.LimitSql.suffix(sql + " LIMIT ?", limit);
+
+    /**
+     * OFFSET ? ROWS FETCH NEXT ? ROWS ONLY：Oracle 12c+、DB2、Derby
+     */
+    public static final Dialect OFFSET_FETCH = (sql, offset, limit) -> offset > 0
+            ? Dialect.LimitSql.suffix(sql + " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY", offset, limit)
+            : Dialect.LimitSql.suffix(sql + " FETCH FIRST ? ROWS ONLY", limit);
+
+    /**
+     * SQL Server 2012+：OFFSET ... FETCH 必须有ORDER BY，没有时补 ORDER BY (SELECT NULL)
+     */
+    public static final Dialect SQL_SERVER = (sql, offset, limit) ->
+            Dialect.LimitSql.suffix(sql + (hasOrderBy(sql) ? "" : " ORDER BY (SELECT NULL)")
+                    + " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY", offset, limit);
+
+    /**
+     * ROWNUM：Oracle 11g及以前
+     */
+    public static final Dialect ROWNUM = (sql, offset, limit) -> offset > 0
+            ? Dialect.LimitSql.suffix("SELECT * FROM ( SELECT MX_T.*, ROWNUM MX_RN FROM ( " + sql
+                    + " ) MX_T WHERE ROWNUM <= ? ) WHERE MX_RN > ?", offset + limit, offset)
+            : Dialect.LimitSql.suffix("SELECT * FROM ( " + sql + " ) WHERE ROWNUM <= ?", limit);
+
+    /**
+     * TOP：SQL Server 2005/2008，有offset时使用ROW_NUMBER()，排序取自原SQL的ORDER BY
+     */
+    public static final Dialect TOP = (sql, offset, limit) -> {
+        int select = selectEnd(sql);
+        if (offset <= 0) {
+            return new Dialect.LimitSql(sql.substring(0, select) + " TOP (?)" + sql.substring(select),
+                    new long[]{limit}, null);
+        }
+        int orderBy = orderByStart(sql);
+        String orders = orderBy < 0 ? "ORDER BY (SELECT NULL)" : sql.substring(orderBy).trim();
+        String body = orderBy < 0 ? sql.substring(select) : sql.substring(select, orderBy);
+        return Dialect.LimitSql.suffix("SELECT * FROM ( " + sql.substring(0, select) + " ROW_NUMBER() OVER (" + orders
+                + ") AS MX_RN," + body + " ) MX_T WHERE MX_RN > ? AND MX_RN <= ?", offset, offset + limit);
+    };
+
+    /**
+     * INSERT ... ON DUPLICATE KEY UPDATE col = VALUES(col)：MariaDB、MySQL 8.0.19以前，冲突判断包含所有唯一索引
+     */
+    public static final UpsertDialect ON_DUPLICATE_KEY_UPDATE = (table, keyColumn, columns, values, updateColumns) ->
+            insert(table, columns, values) + " ON DUPLICATE KEY UPDATE " + (updateColumns.isEmpty()
+                    ? keyColumn + " = " + keyColumn
+                    : join(updateColumns, column -> column + " = VALUES(" + column + ")"));
+
+    /**
+     * INSERT ... AS mx_new ON DUPLICATE KEY UPDATE col = mx_new.col：MySQL 8.0.19+，VALUES(col)自8.0.20起废弃
+     */
+    public static final UpsertDialect ON_DUPLICATE_KEY_UPDATE_ROW_ALIAS = (table, keyColumn, columns, values, updateColumns) ->
+            insert(table, columns, values) + " AS mx_new ON DUPLICATE KEY UPDATE " + (updateColumns.isEmpty()
+                    ? keyColumn + " = " + keyColumn
+                    : join(updateColumns, column -> column + " = mx_new." + column));
+
+    /**
+     * INSERT ... ON CONFLICT (key) DO UPDATE：PostgreSQL 9.5+、SQLite 3.24+
+     */
+    public static final UpsertDialect ON_CONFLICT = (table, keyColumn, columns, values, updateColumns) ->
+            insert(table, columns, values) + " ON CONFLICT (" + keyColumn + ") " + (updateColumns.isEmpty()
+                    ? "DO NOTHING"
+                    : "DO UPDATE SET " + join(updateColumns, column -> column + " = EXCLUDED." + column));
+
+    /**
+     * MERGE INTO ... USING DUAL：H2、Oracle
+     */
+    public static final UpsertDialect MERGE = (table, keyColumn, columns, values, updateColumns) -> {
+        Function<String, String> value = column -> values.get(columns.indexOf(column));
+        return "MERGE INTO " + table + " USING DUAL ON (" + keyColumn + " = " + value.apply(keyColumn) + ")"
+                + (updateColumns.isEmpty() ? "" : " WHEN MATCHED THEN UPDATE SET " + join(updateColumns, column -> column + " = " + value.apply(column)))
+                + " WHEN NOT MATCHED THEN INSERT (" + String.join(", ", columns) + ") VALUES (" + String.join(", ", values) + ")";
+    };
+
+    /**
+     * 获取Configuration对应的方言，优先使用 {@link ModelXConfig#getDialect()}
+     * <p>首次识别读取语句自身所用连接的元数据，不另外获取连接，结果按DataSource缓存</p>
+     * @param configuration MyBatis配置
+     * @param connection 语句执行所用的连接，不会被关闭
+     */
+    static Dialect of(Configuration configuration, Connection connection) {
+        Dialect dialect = ModelXConfig.getDialect();
+        if (null != dialect) {
+            return dialect;
+        }
+        DataSource dataSource = configuration.getEnvironment().getDataSource();
+        return DETECTED.computeIfAbsent(dataSource,
+                key -> metaData(connection, metaData -> detect(metaData.getDatabaseProductName(), metaData.getDatabaseMajorVersion())));
+    }
+
+    /**
+     * 获取Configuration对应的upsert方言，优先使用 {@link ModelXConfig#getUpsertDialect()}
+     * <p>首次识别读取语句自身所用连接的元数据，不另外获取连接，结果按DataSource缓存</p>
+     * @param configuration MyBatis配置
+     * @param connection 语句执行所用的连接，不会被关闭
+     */
+    static UpsertDialect upsertOf(Configuration configuration, Connection connection) {
+        UpsertDialect dialect = ModelXConfig.getUpsertDialect();
+        if (null != dialect) {
+            return dialect;
+        }
+        DataSource dataSource = configuration.getEnvironment().getDataSource();
+        return DETECTED_UPSERT.computeIfAbsent(dataSource,
+                key -> metaData(connection, metaData -> detectUpsert(metaData.getDatabaseProductName(), metaData.getDatabaseProductVersion())));
+    }
+
+    /**
+     * 根据DataSource识别方言
+     * @param dataSource 数据源
+     */
+    public static Dialect detect(DataSource dataSource) {
+        return metaData(dataSource, metaData -> detect(metaData.getDatabaseProductName(), metaData.getDatabaseMajorVersion()));
+    }
+
+    /**
+     * 根据DataSource识别upsert方言
+     * @param dataSource 数据源
+     */
+    public static UpsertDialect detectUpsert(DataSource dataSource) {
+        return metaData(dataSource, metaData -> detectUpsert(metaData.getDatabaseProductName(), metaData.getDatabaseProductVersion()));
+    }
+
+    /**
+     * 根据数据库产品名识别upsert方言，MySQL使用兼容所有版本的VALUES(col)
+     * @param productName DatabaseMetaData#getDatabaseProductName
+     */
+    public static UpsertDialect detectUpsert(String productName) {
+        return detectUpsert(productName, null);
+    }
+
+    /**
+     * 根据数据库产品名及版本识别upsert方言，MySQL 8.0.19+使用行别名
+     * @param productName DatabaseMetaData#getDatabaseProductName
+     * @param productVersion DatabaseMetaData#getDatabaseProductVersion，如 8.0.23，null时按不支持行别名处理
+     */
+    public static UpsertDialect detectUpsert(String productName, String productVersion) {
+        String product = null == productName ? "" : productName.toLowerCase(Locale.ENGLISH);
+        String version = null == productVersion ? "" : productVersion.toLowerCase(Locale.ENGLISH);
+        if (product.contains("mysql") || product.contains("mariadb")) {
+            // MariaDB经MySQL驱动连接时产品名为MySQL，版本如 5.5.5-10.5.8-MariaDB
+            boolean mariaDb = product.contains("mariadb") || version.contains("mariadb");
+            return !mariaDb && atLeast(version, 8, 0, 19) ? ON_DUPLICATE_KEY_UPDATE_ROW_ALIAS : ON_DUPLICATE_KEY_UPDATE;
+        }
+        if (product.contains("postgresql") || product.contains("sqlite")) {
+            return ON_CONFLICT;
+        }
+        if (product.contains("h2") || product.contains("oracle")) {
+            return MERGE;
+        }
+        throw ExceptionUtils.mpe("upsert is not supported for '%s', specify one by ModelXConfig.setUpsertDialect", productName);
+    }
+
+    private static <R> R metaData(DataSource dataSource, MetaDataReader<R> detector) {
+        try (Connection connection = dataSource.getConnection()) {
+            return metaData(connection, detector);
+        } catch (SQLException e) {
+            throw ExceptionUtils.mpe("failed to detect the database dialect", e);
+        }
+    }
+
+    private static <R> R metaData(Connection connection, MetaDataReader<R> detector) {
+        try {
+            return detector.read(connection.getMetaData());
+        } catch (SQLException e) {
+            throw ExceptionUtils.mpe("failed to detect the database dialect", e);
+        }
+    }
+
+    /**
+     * 版本号是否不低于major.minor.patch，无法解析时为false
+     * @param version 如 8.0.23-log
+     */
+    private static boolean atLeast(String version, int major, int minor, int patch) {
+        String[] parts = version.split("[^0-9]+", -1);
+        int[] numbers = new int[3];
+        int count = 0;
+        for (String part : parts) {
+            if (count == numbers.length) {
+                break;
+            }
+            if (!part.isEmpty()) {
+                numbers[count++] = Integer.parseInt(part);
+            } else if (count > 0) {
+                break;
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+        int[] required = {major, minor, patch};
+        for (int i = 0; i < required.length; i++) {
+            if (numbers[i] != required[i]) {
+                return numbers[i] > required[i];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 读取DatabaseMetaData
+     */
+    @FunctionalInterface
+    private interface MetaDataReader<R> {
+
+        R read(DatabaseMetaData metaData) throws SQLException;
+    }
+
+    /**
+     * 根据数据库产品名及主版本号识别方言
+     * @param productName DatabaseMetaData#getDatabaseProductName
+     * @param majorVersion DatabaseMetaData#getDatabaseMajorVersion
+     */
+    public static Dialect detect(String productName, int majorVersion) {
+        String product = null == productName ? "" : productName.toLowerCase(Locale.ENGLISH);
+        if (product.contains("oracle")) {
+            return majorVersion >= 12 ? OFFSET_FETCH : ROWNUM;
+        }
+        if (product.contains("sql server")) {
+            return majorVersion >= 11 ? SQL_SERVER : TOP;
+        }
+        if (product.contains("db2") || product.contains("derby")) {
+            return OFFSET_FETCH;
+        }
+        if (!(product.contains("mysql") || product.contains("mariadb") || product.contains("postgresql")
+                || product.contains("h2") || product.contains("hsql") || product.contains("sqlite"))) {
+            LOG.warn("Unknown database '" + productName + "', falling back to LIMIT ? OFFSET ?");
+        }
+        return LIMIT_OFFSET;
+    }
+
+    private static String insert(String table, List<String> columns, List<String> values) {
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" + String.join(", ", values) + ")";
+    }
+
+    private static String join(List<String> columns, Function<String, String> assignment) {
+        return columns.stream().map(assignment).collect(Collectors.joining(", "));
+    }
+
+    /**
+     * 最外层的ORDER BY是否存在
+     */
+    private static boolean hasOrderBy(String sql) {
+        return orderByStart(sql) >= 0;
+    }
+
+    /**
+     * 最外层(不在括号内)最后一个ORDER BY的位置，没有时返回-1
+     */
+    private static int orderByStart(String sql) {
+        String upper = sql.toUpperCase(Locale.ENGLISH);
+        int index = upper.lastIndexOf("ORDER BY");
+        while (index >= 0) {
+            if (depth(upper, index) == 0) {
+                return index;
+            }
+            index = upper.lastIndexOf("ORDER BY", index - 1);
+        }
+        return -1;
+    }
+
+    private static int depth(String sql, int end) {
+        int depth = 0;
+        for (int i = 0; i < end; i++) {
+            char c = sql.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * 开头 SELECT [DISTINCT] 之后的位置
+     */
+    private static int selectEnd(String sql) {
+        String upper = sql.toUpperCase(Locale.ENGLISH);
+        int select = upper.indexOf("SELECT");
+        if (select < 0) {
+            throw ExceptionUtils.mpe("not a SELECT statement: %s", sql);
+        }
+        int end = select + "SELECT".length();
+        String rest = upper.substring(end).trim();
+        if (rest.startsWith("DISTINCT")) {
+            end = upper.indexOf("DISTINCT", end) + "DISTINCT".length();
+        }
+        return end;
+    }
+}
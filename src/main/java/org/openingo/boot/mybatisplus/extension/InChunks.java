@@ -0,0 +1,229 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.reflection.SystemMetaObject;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 大IN列表分块执行
+ * <p>IN列表超过 {@link ModelXConfig#getInChunkSize()} 时按块拆分为多条SQL：
+ * 查询并行执行后合并(按主键去重，链上有orderBy时重新排序)，更新和删除在调用线程中依次执行；
+ * 只拆分顶层WHERE中AND连接的IN条件，链上有OR时使用完整的列表</p>
+ *
+ * @author Qicz
+ */
+public final class InChunks {
+
+    private InChunks() {
+    }
+
+    private static final Log LOG = LogFactory.getLog(InChunks.class);
+
+    private static final LongAdder EXECUTIONS = new LongAdder();
+
+    private static final LongAdder CHUNKS = new LongAdder();
+
+    private static final LongAdder TOTAL_NANOS = new LongAdder();
+
+    private static final LongAccumulator MAX_NANOS = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * 按块拆分
+     * @param values 去重后的IN列表
+     * @param chunkSize 每块大小
+     */
+    static List<List<Object>> split(List<Object> values, int chunkSize) {
+        List<List<Object>> chunks = new ArrayList<>((values.size() + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < values.size(); from += chunkSize) {
+            chunks.add(values.subList(from, Math.min(values.size(), from + chunkSize)));
+        }
+        return chunks;
+    }
+
+    /**
+     * 分块查询并合并
+     * @param entityClass 实体类
+     * @param chunks IN列表的块
+     * @param query 每块的查询
+     * @param order 链上的排序，null时保持各块的顺序
+     */
+    static <T> List<T> query(Class<?> entityClass, List<List<Object>> chunks, Function<List<Object>, List<T>> query,
+                             Comparator<T> order) {
+        long start = System.nanoTime();
+        List<Supplier<List<T>>> tasks = new ArrayList<>(chunks.size());
+        for (List<Object> chunk : chunks) {
+            tasks.add(() -> query.apply(chunk));
+        }
+        List<List<T>> results = ParallelTasks.invokeAll(tasks);
+        int total = 0;
+        for (List<T> result : results) {
+            total += result.size();
+        }
+        List<T> merged = new ArrayList<>(total);
+        String keyProperty = keyProperty(entityClass);
+        Set<Object> keys = null == keyProperty ? null : new HashSet<>(total * 4 / 3 + 1);
+        for (List<T> result : results) {
+            for (T row : result) {
+                // 数据库按排序规则比较时(如忽略大小写)不同块的值可能匹配同一行；select未包含主键时主键为null，不去重
+                Object key = null == keys ? null : SystemMetaObject.forObject(row).getValue(keyProperty);
+                if (null == key || keys.add(key)) {
+                    merged.add(row);
+                }
+            }
+        }
+        if (null != order) {
+            merged.sort(order);
+        }
+        record(entityClass, "SELECT", chunks.size(), start);
+        return merged;
+    }
+
+    /**
+     * 分块更新或删除，在调用线程中依次执行
+     * @param entityClass 实体类
+     * @param action 操作
+     * @param chunks IN列表的块
+     * @param write 每块的写操作
+     * @return 任意一块有影响行数时返回true
+     */
+    static boolean write(Class<?> entityClass, String action, List<List<Object>> chunks, Predicate<List<Object>> write) {
+        long start = System.nanoTime();
+        boolean result = false;
+        for (List<Object> chunk : chunks) {
+            result |= write.test(chunk);
+        }
+        record(entityClass, action, chunks.size(), start);
+        return result;
+    }
+
+    private static String keyProperty(Class<?> entityClass) {
+        TableInfo tableInfo = Statements.tableInfo(entityClass);
+        return tableInfo.getKeyProperty();
+    }
+
+    private static void record(Class<?> entityClass, String action, int chunks, long start) {
+        long nanos = System.nanoTime() - start;
+        EXECUTIONS.increment();
+        CHUNKS.add(chunks);
+        TOTAL_NANOS.add(nanos);
+        MAX_NANOS.accumulate(nanos);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(action + " " + entityClass.getSimpleName() + " with chunked IN: " + chunks + " chunks in "
+                    + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms");
+        }
+    }
+
+    /**
+     * 分块执行的统计
+     */
+    public static Stats stats() {
+        return new Stats(EXECUTIONS.sum(), CHUNKS.sum(), TimeUnit.NANOSECONDS.toMillis(TOTAL_NANOS.sum()),
+                TimeUnit.NANOSECONDS.toMillis(MAX_NANOS.get()));
+    }
+
+    /**
+     * 清空统计
+     */
+    public static void reset() {
+        EXECUTIONS.reset();
+        CHUNKS.reset();
+        TOTAL_NANOS.reset();
+        MAX_NANOS.reset();
+    }
+
+    /**
+     * 分块执行的统计
+     */
+    public static final class Stats {
+
+        private final long executions;
+
+        private final long chunks;
+
+        private final long totalMillis;
+
+        private final long maxMillis;
+
+        Stats(long executions, long chunks, long totalMillis, long maxMillis) {
+            this.executions = executions;
+            this.chunks = chunks;
+            this.totalMillis = totalMillis;
+            this.maxMillis = maxMillis;
+        }
+
+        /**
+         * 分块执行的次数
+         */
+        public long getExecutions() {
+            return executions;
+        }
+
+        /**
+         * 执行的块数
+         */
+        public long getChunks() {
+            return chunks;
+        }
+
+        /**
+         * 总耗时(毫秒)
+         */
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+
+        /**
+         * 单次执行的最大耗时(毫秒)
+         */
+        public long getMaxMillis() {
+            return maxMillis;
+        }
+
+        public double getAverageMillis() {
+            return executions == 0 ? 0D : (double) totalMillis / executions;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{executions=" + executions + ", chunks=" + chunks + ", totalMillis=" + totalMillis
+                    + ", maxMillis=" + maxMillis + "}";
+        }
+    }
+}
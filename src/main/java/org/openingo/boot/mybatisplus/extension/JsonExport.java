@@ -0,0 +1,181 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+import com.baomidou.mybatisplus.core.toolkit.StringUtils;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.invoker.Invoker;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 查询结果直接写出为JSON数组
+ * <p>逐行读取并通过JsonGenerator写出，不构建List；列值经实体的ResultMap(TypeHandler、枚举等)转换，
+ * 由 {@link ModelXConfig#getObjectMapper()} 序列化(JSR-310等类型取决于其注册的模块)；
+ * 写出的属性及其getter每次查询只解析一次</p>
+ *
+ * @author Qicz
+ */
+final class JsonExport {
+
+    private JsonExport() {
+    }
+
+    /**
+     * 创建UTF-8的JsonGenerator，不关闭调用方的流
+     * @param out 输出流
+     */
+    static JsonGenerator generator(OutputStream out) throws IOException {
+        return ModelXConfig.getObjectMapper().getFactory().createGenerator(out, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+    }
+
+    /**
+     * 创建JsonGenerator，不关闭调用方的Writer
+     * @param writer Writer
+     */
+    static JsonGenerator generator(Writer writer) throws IOException {
+        return ModelXConfig.getObjectMapper().getFactory().createGenerator(writer)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+    }
+
+    /**
+     * 执行查询并写出
+     * @param entityClass 实体类
+     * @param wrapper 条件
+     * @param fetchSize JDBC fetchSize
+     * @param generator 创建JsonGenerator
+     * @return 写出的行数
+     */
+    static <T> long write(Class<T> entityClass, Wrapper<T> wrapper, Integer fetchSize, GeneratorFactory generator) {
+        List<String> properties = selected(entityClass, wrapper.getSqlSelect());
+        Reflector reflector = Statements.configuration(entityClass).getReflectorFactory().findForClass(entityClass);
+        String[] names = properties.toArray(new String[0]);
+        Invoker[] getters = new Invoker[names.length];
+        for (int i = 0; i < names.length; i++) {
+            getters[i] = reflector.getGetInvoker(names[i]);
+        }
+        long[] rows = {0L};
+        try (JsonGenerator json = generator.create()) {
+            json.writeStartArray();
+            Projections.rows(entityClass, wrapper, fetchSize, row -> {
+                try {
+                    json.writeStartObject();
+                    for (int i = 0; i < names.length; i++) {
+                        json.writeFieldName(names[i]);
+                        json.writeObject(getters[i].invoke(row, null));
+                    }
+                    json.writeEndObject();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    throw ExceptionUtils.mpe(e);
+                }
+                rows[0]++;
+            });
+            json.writeEndArray();
+            json.flush();
+            return rows[0];
+        } catch (IOException e) {
+            throw ExceptionUtils.mpe("failed to write query results as JSON", e);
+        } catch (UncheckedIOException e) {
+            throw ExceptionUtils.mpe("failed to write query results as JSON", e.getCause());
+        }
+    }
+
+    /**
+     * 查询的属性，按select的顺序；没有select时为主键及所有字段
+     * @param entityClass 实体类
+     * @param sqlSelect Wrapper的select片段
+     */
+    private static List<String> selected(Class<?> entityClass, String sqlSelect) {
+        Map<String, String> properties = properties(entityClass);
+        List<String> selected = new ArrayList<>(properties.size());
+        if (StringUtils.isBlank(sqlSelect)) {
+            properties.values().stream().distinct().forEach(selected::add);
+            return selected;
+        }
+        for (String column : sqlSelect.split(",")) {
+            String name = column.trim();
+            // 列名与属性名不一致时为 column AS property
+            int as = name.toUpperCase(Locale.ENGLISH).lastIndexOf(" AS ");
+            if (as >= 0) {
+                name = name.substring(as + 4).trim();
+            }
+            String property = properties.get(name.toLowerCase(Locale.ENGLISH));
+            if (null != property && !selected.contains(property)) {
+                selected.add(property);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 列名(及属性名)到属性名的映射，key为小写，按主键、字段的顺序
+     */
+    private static Map<String, String> properties(Class<?> entityClass) {
+        TableInfo tableInfo = Statements.tableInfo(entityClass);
+        Map<String, String> properties = new LinkedHashMap<>();
+        if (null != tableInfo.getKeyColumn()) {
+            properties.put(tableInfo.getKeyColumn().toLowerCase(Locale.ENGLISH), tableInfo.getKeyProperty());
+            properties.put(tableInfo.getKeyProperty().toLowerCase(Locale.ENGLISH), tableInfo.getKeyProperty());
+        }
+        for (TableFieldInfo field : tableInfo.getFieldList()) {
+            properties.put(field.getColumn().toLowerCase(Locale.ENGLISH), field.getProperty());
+            properties.put(field.getProperty().toLowerCase(Locale.ENGLISH), field.getProperty());
+        }
+        return properties;
+    }
+
+    /**
+     * 创建JsonGenerator
+     */
+    @FunctionalInterface
+    interface GeneratorFactory {
+
+        JsonGenerator create() throws IOException;
+    }
+}
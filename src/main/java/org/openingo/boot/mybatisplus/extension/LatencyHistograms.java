@@ -0,0 +1,211 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 内置的监控实现：按实体类、终端操作及SQL形态统计延迟直方图及行数
+ * <p>直方图按微秒以2的幂分桶，分位数取桶的上界。使用 {@code ModelXConfig.setMonitor(new LatencyHistograms())} 开启</p>
+ *
+ * @author Qicz
+ */
+public final class LatencyHistograms implements ModelXMonitor {
+
+    /**
+     * 最多统计的直方图数量，超过后新的形态只计入overflow
+     */
+    private static final int MAX_HISTOGRAMS = 4096;
+
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private final LongAdder overflow = new LongAdder();
+
+    @Override
+    public void onExecution(Execution execution) {
+        String key = execution.getEntityClass().getName() + '#' + execution.getTerminal() + '#' + execution.getSql();
+        Histogram histogram = this.histograms.get(key);
+        if (null == histogram) {
+            if (this.histograms.size() >= MAX_HISTOGRAMS) {
+                this.overflow.increment();
+                return;
+            }
+            histogram = this.histograms.computeIfAbsent(key, k -> new Histogram(execution));
+        }
+        histogram.record(execution);
+    }
+
+    /**
+     * 当前所有直方图的快照
+     */
+    public List<Histogram> snapshot() {
+        return new ArrayList<>(this.histograms.values());
+    }
+
+    /**
+     * 超出统计上限而未统计的执行次数
+     */
+    public long overflow() {
+        return this.overflow.sum();
+    }
+
+    /**
+     * 清空统计
+     */
+    public void reset() {
+        this.histograms.clear();
+        this.overflow.reset();
+    }
+
+    /**
+     * 单个实体类、终端操作及SQL形态的统计
+     */
+    public static final class Histogram {
+
+        private static final int BUCKETS = 40;
+
+        private final String entity;
+
+        private final String terminal;
+
+        private final String sql;
+
+        private final String fingerprint;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder rows = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+        Histogram(Execution execution) {
+            this.entity = execution.getEntityClass().getName();
+            this.terminal = execution.getTerminal();
+            this.sql = execution.getSql();
+            this.fingerprint = execution.getFingerprint();
+        }
+
+        void record(Execution execution) {
+            long nanos = execution.getElapsedNanos();
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            int bucket = Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(micros));
+            this.buckets.incrementAndGet(bucket);
+            this.count.increment();
+            if (null != execution.getError()) {
+                this.errors.increment();
+            }
+            if (execution.getRows() > 0) {
+                this.rows.add(execution.getRows());
+            }
+            this.totalNanos.add(nanos);
+            this.maxNanos.accumulate(nanos);
+        }
+
+        public String getEntity() {
+            return entity;
+        }
+
+        public String getTerminal() {
+            return terminal;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public double getMeanMillis() {
+            long count = this.getCount();
+            return count == 0 ? 0D : totalNanos.sum() / 1e6 / count;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        /**
+         * 分位数(毫秒)，取所在桶的上界
+         * @param quantile 0~1，如0.99
+         */
+        public double getPercentileMillis(double quantile) {
+            long total = 0;
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = this.buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0D;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return (1L << i) / 1e3;
+                }
+            }
+            return this.getMaxMillis();
+        }
+
+        @Override
+        public String toString() {
+            return "Histogram{entity=" + entity + ", terminal=" + terminal + ", sql=" + sql + ", count=" + getCount()
+                    + ", errors=" + getErrors() + ", rows=" + getRows() + ", meanMillis=" + getMeanMillis()
+                    + ", p99Millis=" + getPercentileMillis(0.99) + ", maxMillis=" + getMaxMillis() + "}";
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.enums.SqlMethod;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.reflection.property.PropertyTokenizer;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 行数限制的SqlSource
+ * <p>包装MyBatis-Plus注入语句的SqlSource，按 {@link Dialect} 改写生成的SQL，
+ * 限制值以占位符绑定，同一语句不同的limit/offset共用一个预编译语句</p>
+ *
+ * @author Qicz
+ */
+final class LimitSqlSource implements SqlSource {
+
+    private static final String OFFSET = "mx_offset";
+
+    private static final String LIMIT = "mx_limit";
+
+    private static final String VALUE = "mx_limit_";
+
+    private static final String DIALECT = "mx_dialect";
+
+    private final Configuration configuration;
+
+    private final SqlSource delegate;
+
+    private LimitSqlSource(Configuration configuration, SqlSource delegate) {
+        this.configuration = configuration;
+        this.delegate = delegate;
+    }
+
+    /**
+     * 执行限制行数的查询
+     * @param entityClass 实体类
+     * @param sqlMethod 注入的查询方法，如SELECT_LIST、SELECT_OBJS
+     * @param wrapper 条件
+     * @param limit 最多返回的行数
+     * @param offset 跳过的行数
+     */
+    static <T, E> List<E> selectList(Class<T> entityClass, SqlMethod sqlMethod, Wrapper<T> wrapper, int limit, long offset) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must not be negative");
+        }
+        Configuration configuration = Statements.configuration(entityClass);
+        MappedStatement statement = Statements.derive(configuration, Statements.statement(entityClass, sqlMethod), "limit",
+                sqlSource -> new LimitSqlSource(configuration, sqlSource), builder -> {
+                });
+        return Statements.execute(configuration, ExecutorType.SIMPLE, executor -> {
+            Map<String, Object> param = Statements.wrapperParam(wrapper);
+            param.put(LIMIT, limit);
+            param.put(OFFSET, offset);
+            // 方言在执行前由语句自身的连接识别，getBoundSql中不再获取连接
+            param.put(DIALECT, Dialects.of(configuration, executor.getTransaction().getConnection()));
+            return executor.query(statement, param, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        });
+    }
+
+    @Override
+    public BoundSql getBoundSql(Object parameterObject) {
+        BoundSql boundSql = this.delegate.getBoundSql(parameterObject);
+        Map<?, ?> param = (Map<?, ?>) parameterObject;
+        Dialect.LimitSql limited = ((Dialect) param.get(DIALECT)).limit(boundSql.getSql(),
+                ((Number) param.get(OFFSET)).longValue(), ((Number) param.get(LIMIT)).intValue());
+
+        List<ParameterMapping> mappings = new ArrayList<>(boundSql.getParameterMappings().size() + 2);
+        List<Long> values = new ArrayList<>(2);
+        this.addValues(mappings, values, limited.getBefore());
+        mappings.addAll(boundSql.getParameterMappings());
+        this.addValues(mappings, values, limited.getAfter());
+
+        BoundSql limitedSql = new BoundSql(this.configuration, limited.getSql(), mappings, parameterObject);
+        // 沿用原SQL的附加参数(如foreach生成的参数)
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            String name = new PropertyTokenizer(mapping.getProperty()).getName();
+            if (boundSql.hasAdditionalParameter(name)) {
+                limitedSql.setAdditionalParameter(name, boundSql.getAdditionalParameter(name));
+            }
+        }
+        for (int i = 0; i < values.size(); i++) {
+            limitedSql.setAdditionalParameter(VALUE + i, values.get(i));
+        }
+        return limitedSql;
+    }
+
+    private void addValues(List<ParameterMapping> mappings, List<Long> values, long[] limits) {
+        for (long limit : limits) {
+            mappings.add(new ParameterMapping.Builder(this.configuration, VALUE + values.size(), Long.class).build());
+            values.add(limit);
+        }
+    }
+}
@@ -28,98 +28,238 @@
 package org.openingo.boot.mybatisplus.extension;
 
 import com.baomidou.mybatisplus.annotation.TableField;
-import com.baomidou.mybatisplus.core.conditions.AbstractLambdaWrapper;
 import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
-import com.baomidou.mybatisplus.core.exceptions.MybatisPlusException;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.enums.SqlMethod;
 import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
 import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
 import com.baomidou.mybatisplus.extension.activerecord.Model;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.SneakyThrows;
 import org.openingo.jdkits.json.JacksonKit;
 
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.Writer;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 import java.util.function.BiPredicate;
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * MyBatis Plus Extensions: ModelX
+ * <p>链上的条件及终端操作委托给 {@link ModelXQuery}；查询结果不需要继承ModelX时直接使用 {@link ModelXQuery#of(Class)}</p>
  *
  * @author Qicz
  */
 @SuppressWarnings({"unchecked", "rawtypes"})
 public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
 
+    /**
+     * 链的状态，只有dao实例才会创建；查询结果中的实体只多一个null引用
+     */
+    @JsonIgnore
     @TableField(exist = false)
-    private final T typedThis = (T) this;
-
-    @TableField(exist = false)
-    private static final String LIMIT_ONE = "LIMIT 1";
-
-    @TableField(exist = false)
-    private Map<String, AbstractLambdaWrapper> wrappersMapping;
+    private transient ModelXQuery<T> chain;
 
     /**
-     * 生成实例
+     * 获取dao对象，默认每次生成一个新的
+     * <p>开启 {@link ModelXConfig#setRecycleDao(boolean)} 后复用当前线程的空闲实例，
+     * 实例在终端操作完成后被reset回收，不可再持有使用；异步终端操作在其他线程完成，实例reset后丢弃，不回收</p>
      * @param clazz
      * @param <T>
+     * @return T
      */
-    private static<T extends ModelX<?>> T getInstance(Class<T> clazz) {
-        T t = null;
-        try {
-            t = clazz.newInstance();
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new MybatisPlusException(e.getLocalizedMessage());
+    public static<T extends ModelX<?>> T dao(Class<T> clazz) {
+        if (!ModelXConfig.isRecycleDao()) {
+            return ModelXFactory.newInstance(clazz);
         }
-        return t;
+        T dao = ModelXFactory.acquire(clazz);
+        ModelX<T> self = (ModelX<T>) dao;
+        if (null == self.chain) {
+            // 实例只会放回获取它的线程，绑定的线程不变
+            Thread home = Thread.currentThread();
+            self.chain = new ModelXQuery<>(clazz, self.owner(), () -> self.recycle(home));
+        }
+        return dao;
     }
 
     /**
-     * 获取dao对象，每次生成一个新的
+     * 获取按主键批量加载的loader，短时间内各调用方的load合并为一次IN查询
+     * <p>loader记住加载过的主键，应按请求获取，见 {@link ModelXLoader}</p>
      * @param clazz
      * @param <T>
-     * @return T
+     * @return ModelXLoader<T>
      */
-    public static<T extends ModelX<?>> T dao(Class<T> clazz) {
-        return getInstance(clazz);
+    public static<T extends ModelX<?>> ModelXLoader<T> loader(Class<T> clazz) {
+        return ModelXLoader.of(clazz);
+    }
+
+    /**
+     * 批量插入，每 {@link ModelXConfig#getBatchSize()} 条提交一次
+     * @param entities 实体集合
+     * @return 影响行数
+     */
+    public static<T extends ModelX<?>> int insertBatch(Collection<T> entities) {
+        return insertBatch(entities, ModelXConfig.getBatchSize());
+    }
+
+    /**
+     * 批量插入，JDBC batch执行，每batchSize条提交一次
+     * <p>MySQL驱动开启rewriteBatchedStatements=true时会改写为多行VALUES</p>
+     * @param entities 实体集合
+     * @param batchSize 每批条数
+     * @return 影响行数
+     */
+    public static<T extends ModelX<?>> int insertBatch(Collection<T> entities, int batchSize) {
+        if (null == entities || entities.isEmpty()) {
+            return 0;
+        }
+        Class<?> entityClass = entityClass(entities);
+        try {
+            return Monitoring.run(entityClass, "insertBatch", monitoring -> Monitoring.rows(monitoring,
+                    Batches.execute(entityClass, SqlMethod.INSERT_ONE, entities, batchSize, entity -> entity)));
+        } finally {
+            QueryCache.invalidate(entityClass);
+            ReadWriteRouting.written();
+        }
+    }
+
+    /**
+     * 根据ID批量更新，每 {@link ModelXConfig#getBatchSize()} 条提交一次
+     * @param entities 实体集合
+     * @return 影响行数
+     */
+    public static<T extends ModelX<?>> int updateBatchById(Collection<T> entities) {
+        return updateBatchById(entities, ModelXConfig.getBatchSize());
+    }
+
+    /**
+     * 根据ID批量更新，JDBC batch执行，每batchSize条提交一次
+     * @param entities 实体集合
+     * @param batchSize 每批条数
+     * @return 影响行数
+     */
+    public static<T extends ModelX<?>> int updateBatchById(Collection<T> entities, int batchSize) {
+        if (null == entities || entities.isEmpty()) {
+            return 0;
+        }
+        Class<?> entityClass = entityClass(entities);
+        try {
+            return Monitoring.run(entityClass, "updateBatchById", monitoring -> Monitoring.rows(monitoring,
+                    Batches.execute(entityClass, SqlMethod.UPDATE_BY_ID, entities, batchSize, entity -> {
+                        Map<String, Object> param = new HashMap<>(2);
+                        param.put(Constants.ENTITY, entity);
+                        return param;
+                    })));
+        } finally {
+            QueryCache.invalidate(entityClass);
+            ReadWriteRouting.written();
+        }
+    }
+
+    /**
+     * 批量插入或更新，每 {@link ModelXConfig#getBatchSize()} 条提交一次
+     * @param entities 实体集合
+     * @param updateColumns 主键冲突时更新的字段，不指定时更新主键以外的所有字段
+     * @return 影响行数
+     */
+    @SafeVarargs
+    public static<T extends ModelX<?>> int upsertBatch(Collection<T> entities, SFunction<T, ?>... updateColumns) {
+        return upsertBatch(entities, ModelXConfig.getBatchSize(), updateColumns);
+    }
+
+    /**
+     * 批量插入或更新：一条语句完成，不需要先查询，JDBC batch执行，每batchSize条提交一次
+     * <p>按方言生成SQL(MySQL ON DUPLICATE KEY UPDATE、PostgreSQL ON CONFLICT、H2/Oracle MERGE)，见 {@link Dialects}；
+     * 插入 @TableId 及所有 @TableField 字段，NULL值同样写入</p>
+     * @param entities 实体集合
+     * @param batchSize 每批条数
+     * @param updateColumns 主键冲突时更新的字段，不指定时更新主键以外的所有字段
+     * @return 影响行数，由驱动返回，MySQL中被更新的行计为2
+     */
+    @SafeVarargs
+    public static<T extends ModelX<?>> int upsertBatch(Collection<T> entities, int batchSize, SFunction<T, ?>... updateColumns) {
+        if (null == entities || entities.isEmpty()) {
+            return 0;
+        }
+        Class<?> entityClass = entityClass(entities);
+        try {
+            return Monitoring.run(entityClass, "upsertBatch", monitoring -> Monitoring.rows(monitoring,
+                    Upserts.execute(entityClass, entities, updateColumns, batchSize)));
+        } finally {
+            QueryCache.invalidate(entityClass);
+            ReadWriteRouting.written();
+        }
+    }
+
+    private static Class<?> entityClass(Collection<? extends ModelX<?>> entities) {
+        return entities.iterator().next().getClass();
     }
 
     /**
-     * 初始化WrappersMapping
+     * 重置：清空链上的条件，实体字段恢复为新建实例时的初始值
+     * @return T
      */
-    private void initWrappersMapping() {
-        if (null == this.wrappersMapping) {
-            this.wrappersMapping = new HashMap<>();
-            this.wrappersMapping.put("q", new LambdaQueryWrapper<T>());
-            this.wrappersMapping.put("u", new LambdaUpdateWrapper<T>());
+    public T reset() {
+        if (null != this.chain) {
+            this.chain.reset();
         }
+        ModelXFactory.resetFields(this);
+        return self();
     }
 
     /**
-     * 获取Wrappers
+     * 链上的条件及终端操作委托给绑定当前实体类的 {@link ModelXQuery}，查询结果中的实体该字段始终为null
      */
-    private List<AbstractLambdaWrapper> getWrappers() {
-        this.initWrappersMapping();
-        return new ArrayList<>(this.wrappersMapping.values());
+    ModelXQuery<T> chain() {
+        if (null == this.chain) {
+            this.chain = new ModelXQuery<>((Class<T>) this.getClass(), this.owner(), null);
+        }
+        return this.chain;
     }
 
     /**
-     * 获取QueryWrapper，如果为null，创建一个新的
+     * 作为链的所有者，链上的doUpdate/doDelete经由当前实体的update/delete执行
      */
-    private LambdaQueryWrapper<T> getQueryWrapper() {
-        this.initWrappersMapping();
-        return (LambdaQueryWrapper<T>) this.wrappersMapping.get("q");
+    private ModelXQuery.Owner<T> owner() {
+        return new ModelXQuery.Owner<T>() {
+            @Override
+            public boolean update(Wrapper<T> updateWrapper) {
+                return ModelX.this.update(updateWrapper);
+            }
+
+            @Override
+            public boolean delete(Wrapper<T> queryWrapper) {
+                return ModelX.this.delete(queryWrapper);
+            }
+
+            @Override
+            public Object entity() {
+                return ModelX.this;
+            }
+        };
+    }
+
+    private T self() {
+        return (T) this;
     }
 
     /**
-     * 获取UpdateWrapper，如果为null，创建一个新的
+     * 终端操作完成，回收模式下reset并放回获取实例的线程；在其他线程(异步终端操作)完成时不回收
+     * @param home 获取实例的线程
      */
-    private LambdaUpdateWrapper<T> getUpdateWrapper() {
-        this.initWrappersMapping();
-        return (LambdaUpdateWrapper<T>) this.wrappersMapping.get("u");
+    private void recycle(Thread home) {
+        this.reset();
+        if (Thread.currentThread() == home) {
+            ModelXFactory.release(this);
+        }
     }
 
     /**
@@ -127,7 +267,7 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return List<T>
      */
     public List<T> doQuery() {
-        return this.selectList(this.getQueryWrapper());
+        return this.chain().doQuery();
     }
 
     /**
@@ -135,8 +275,27 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T doQueryLimitOne() {
-        // clone 不影响原对象，解决添加last之后，再做其他的操作
-        return this.selectOne(this.getQueryWrapper().clone().last(LIMIT_ONE));
+        return this.chain().doQueryLimitOne();
+    }
+
+    /**
+     * 执行Limit Query操作：行数限制按方言下推到数据库，不修改链上的条件
+     * @param limit 最多返回的行数
+     * @return List<T>
+     */
+    public List<T> doQueryLimit(int limit) {
+        return this.doQueryLimit(limit, 0L);
+    }
+
+    /**
+     * 执行Limit Offset Query操作：行数限制按方言下推到数据库，不修改链上的条件
+     * <p>方言根据DataSource识别(LIMIT/OFFSET FETCH/ROWNUM/TOP)，见 {@link Dialects}</p>
+     * @param limit 最多返回的行数
+     * @param offset 跳过的行数
+     * @return List<T>
+     */
+    public List<T> doQueryLimit(int limit, long offset) {
+        return this.chain().doQueryLimit(limit, offset);
     }
 
     /**
@@ -144,7 +303,85 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T doQueryOne() {
-        return this.selectOne(this.getQueryWrapper());
+        return this.chain().doQueryOne();
+    }
+
+    /**
+     * 执行Count操作：SELECT COUNT(*)，忽略链上的select和orderBy，不构建实体
+     * <p>链上有groupBy时返回分组数</p>
+     * @return 行数
+     */
+    public long doCount() {
+        return this.chain().doCount();
+    }
+
+    /**
+     * 执行Exists操作：只查询主键并限制1行，不构建实体
+     * @return 是否存在
+     */
+    public boolean doExists() {
+        return this.chain().doExists();
+    }
+
+    /**
+     * 单列查询：逐行读取为long[]，不构建实体及List，NULL值跳过
+     * <p>插件及TypeHandler照常生效，见 {@link Projections}</p>
+     * @param column 查询的字段，如主键
+     * @return long[]
+     */
+    public long[] doQueryLongs(SFunction<T, ?> column) {
+        return this.chain().doQueryLongs(column);
+    }
+
+    /**
+     * 单列查询：逐行读取为int[]，不构建实体及List，NULL值跳过
+     * <p>插件及TypeHandler照常生效，见 {@link Projections}</p>
+     * @param column 查询的字段
+     * @return int[]
+     */
+    public int[] doQueryInts(SFunction<T, ?> column) {
+        return this.chain().doQueryInts(column);
+    }
+
+    /**
+     * 单列查询：逐行读取为String[]，不构建实体及List，NULL值跳过
+     * <p>插件及TypeHandler照常生效，见 {@link Projections}</p>
+     * @param column 查询的字段
+     * @return String[]
+     */
+    public String[] doQueryStrings(SFunction<T, ?> column) {
+        return this.chain().doQueryStrings(column);
+    }
+
+    /**
+     * 列式查询：每个数值字段一个基本类型数组，字符串字典编码，NULL以位图表示，逐行追加，不构建List
+     * <p>忽略链上的select；列值经实体的TypeHandler转换，插件照常生效，见 {@link Projections}</p>
+     * @param columns 查询的字段
+     * @return ColumnarBatch
+     */
+    @SafeVarargs
+    public final ColumnarBatch doQueryColumnar(SFunction<T, ?>... columns) {
+        return this.chain().doQueryColumnar(columns);
+    }
+
+    /**
+     * 查询结果直接以UTF-8写出为JSON数组：逐行读取，不构建List，内存占用与结果集大小无关
+     * <p>字段名为实体属性名，值经实体的TypeHandler转换后由 {@link ModelXConfig#getObjectMapper()} 写出；不关闭out。插件照常生效，见 {@link Projections}</p>
+     * @param out 输出流
+     * @return 写出的行数
+     */
+    public long doQueryToJson(OutputStream out) {
+        return this.chain().doQueryToJson(out);
+    }
+
+    /**
+     * 查询结果直接写出为JSON数组：逐行读取，不构建List，内存占用与结果集大小无关
+     * <p>字段名为实体属性名，值经实体的TypeHandler转换后由 {@link ModelXConfig#getObjectMapper()} 写出；不关闭writer。插件照常生效，见 {@link Projections}</p>
+     * @param writer Writer
+     * @return 写出的行数
+     */
+    public long doQueryToJson(Writer writer) {
+        return this.chain().doQueryToJson(writer);
     }
 
     /**
@@ -152,7 +389,7 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return true成功，false失败
      */
     public Boolean doUpdate() {
-        return this.update(this.getUpdateWrapper());
+        return this.chain().doUpdate();
     }
 
     /**
@@ -160,7 +397,230 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return true成功，false失败
      */
     public Boolean doDelete() {
-        return this.delete(this.getUpdateWrapper());
+        return this.chain().doDelete();
+    }
+
+    /**
+     * 分块删除：按主键顺序每次删除chunkSize行，每块是一个独立的短事务，避免长时间持有行锁和间隙锁
+     * @param chunkSize 每块行数
+     * @return 删除的总行数
+     */
+    public long doDeleteChunked(int chunkSize) {
+        return this.chain().doDeleteChunked(chunkSize);
+    }
+
+    /**
+     * 分块删除：按主键顺序每次删除chunkSize行，每块是一个独立的短事务，避免长时间持有行锁和间隙锁
+     * <p>先按链上的条件查询下一块的主键(key &gt; 上一块的最后一个主键)，再以链上的条件加 key IN (...) 删除；
+     * 不能在Spring事务中调用，链上不能有groupBy</p>
+     * @param chunkSize 每块行数
+     * @param pause 块之间的停顿，便于从库追平及让出锁，Duration.ZERO不停顿
+     * @param progress 每块完成后回调已删除的总行数，可为null
+     * @return 删除的总行数
+     */
+    public long doDeleteChunked(int chunkSize, Duration pause, LongConsumer progress) {
+        return this.chain().doDeleteChunked(chunkSize, pause, progress);
+    }
+
+    /**
+     * 分块更新：按主键顺序每次更新chunkSize行，每块是一个独立的短事务，避免长时间持有行锁和间隙锁
+     * @param chunkSize 每块行数
+     * @return 更新的总行数
+     */
+    public long doUpdateChunked(int chunkSize) {
+        return this.chain().doUpdateChunked(chunkSize);
+    }
+
+    /**
+     * 分块更新：按主键顺序每次更新chunkSize行，每块是一个独立的短事务，避免长时间持有行锁和间隙锁
+     * <p>先按链上的条件查询下一块的主键(key &gt; 上一块的最后一个主键)，再以链上的条件加 key IN (...) 更新，
+     * 更新后仍满足条件的行不会被重复更新；dao的非空字段同doUpdate作为SET。不能在Spring事务中调用，链上不能有groupBy，不能set主键</p>
+     * @param chunkSize 每块行数
+     * @param pause 块之间的停顿，便于从库追平及让出锁，Duration.ZERO不停顿
+     * @param progress 每块完成后回调已更新的总行数，可为null
+     * @return 更新的总行数
+     */
+    public long doUpdateChunked(int chunkSize, Duration pause, LongConsumer progress) {
+        return this.chain().doUpdateChunked(chunkSize, pause, progress);
+    }
+
+    /**
+     * 异步执行Query操作
+     * <p>在 {@link ModelXConfig#getAsyncExecutor()} 中执行，不参与调用线程的Spring事务，读写路由的上下文随任务传递</p>
+     * @return CompletableFuture<List<T>>
+     */
+    public CompletableFuture<List<T>> doQueryAsync() {
+        return CompletableFuture.supplyAsync(ReadWriteRouting.capture().wrap(this::doQuery), ModelXConfig.getAsyncExecutor());
+    }
+
+    /**
+     * 异步执行Select One Limit 1 Query操作
+     * @return CompletableFuture<T>
+     */
+    public CompletableFuture<T> doQueryLimitOneAsync() {
+        return CompletableFuture.supplyAsync(ReadWriteRouting.capture().wrap(this::doQueryLimitOne), ModelXConfig.getAsyncExecutor());
+    }
+
+    /**
+     * 异步执行Select One Query操作
+     * @return CompletableFuture<T>
+     */
+    public CompletableFuture<T> doQueryOneAsync() {
+        return CompletableFuture.supplyAsync(ReadWriteRouting.capture().wrap(this::doQueryOne), ModelXConfig.getAsyncExecutor());
+    }
+
+    /**
+     * 异步执行Update操作
+     * @return CompletableFuture<Boolean>
+     */
+    public CompletableFuture<Boolean> doUpdateAsync() {
+        return CompletableFuture.supplyAsync(ReadWriteRouting.capture().wrap(this::doUpdate), ModelXConfig.getAsyncExecutor());
+    }
+
+    /**
+     * 异步执行Delete操作
+     * @return CompletableFuture<Boolean>
+     */
+    public CompletableFuture<Boolean> doDeleteAsync() {
+        return CompletableFuture.supplyAsync(ReadWriteRouting.capture().wrap(this::doDelete), ModelXConfig.getAsyncExecutor());
+    }
+
+    /**
+     * 流式查询：逐行消费，内存占用与结果集大小无关
+     * @param consumer 消费函数
+     */
+    public void doEach(Consumer<T> consumer) {
+        this.chain().doEach(consumer);
+    }
+
+    /**
+     * 流式查询：按批消费，每批最多batchSize条
+     * @param batchSize 批大小
+     * @param consumer 消费函数
+     */
+    public void doEach(int batchSize, Consumer<List<T>> consumer) {
+        this.chain().doEach(batchSize, consumer);
+    }
+
+    /**
+     * 流式查询：返回基于Cursor的Stream，使用完必须关闭(try-with-resources)，关闭时释放连接
+     * @return Stream<T>
+     */
+    public Stream<T> doStream() {
+        return this.chain().doStream();
+    }
+
+    /**
+     * Seek分页：WHERE key &gt; afterKey ORDER BY key 并限制size行，每页的代价与翻页深度无关
+     * <p>链上不能有orderBy和groupBy，分页只按key排序；链上有select时必须包含key字段，key不能为NULL，否则抛出异常</p>
+     * @param keyColumn 唯一且有索引的key字段
+     * @param afterKey 上一页最后一条的key，null时取第一页
+     * @param size 每页条数
+     * @return List<T>
+     */
+    public List<T> doSeekPage(SFunction<T, ?> keyColumn, Object afterKey, int size) {
+        return this.chain().doSeekPage(keyColumn, afterKey, size);
+    }
+
+    /**
+     * 按主键(@TableId)分块扫描全表，每块使用Seek分页
+     * @param chunkSize 每块条数
+     * @param consumer 消费函数
+     */
+    public void doScan(int chunkSize, Consumer<List<T>> consumer) {
+        this.doScan(null, chunkSize, consumer);
+    }
+
+    /**
+     * 按keyColumn分块扫描全表，每块使用Seek分页
+     * @param keyColumn 唯一且有索引的key字段，null时使用主键(@TableId)
+     * @param chunkSize 每块条数
+     * @param consumer 消费函数
+     */
+    public void doScan(SFunction<T, ?> keyColumn, int chunkSize, Consumer<List<T>> consumer) {
+        this.chain().doScan(keyColumn, chunkSize, consumer);
+    }
+
+    /**
+     * 按partitionColumn的取值范围分片并行查询，合并后返回
+     * <p>先查询partitionColumn的最小值和最大值，将范围均分为partitions片，每片使用同样的条件在异步线程池中
+     * 各自获取连接执行；链上有orderBy时合并后重新排序。partitionColumn为NULL的行单独作为一片</p>
+     * @param partitionColumn 整数类型且有索引的字段
+     * @param partitions 分片数，通常不超过连接池大小
+     * @return List<T>
+     */
+    public List<T> doQueryParallel(SFunction<T, ?> partitionColumn, int partitions) {
+        return this.chain().doQueryParallel(partitionColumn, partitions);
+    }
+
+    /**
+     * 按partitionColumn的取值范围分片并行查询，每片查询完成后交给consumer，不合并结果
+     * <p>consumer的调用是串行的，各片的先后顺序不定</p>
+     * @param partitionColumn 整数类型且有索引的字段
+     * @param partitions 分片数，通常不超过连接池大小
+     * @param consumer 消费函数
+     */
+    public void doQueryParallel(SFunction<T, ?> partitionColumn, int partitions, Consumer<List<T>> consumer) {
+        this.chain().doQueryParallel(partitionColumn, partitions, consumer);
+    }
+
+    /**
+     * 缓存查询结果，同一实体表发生写操作(doUpdate/doDelete/insert/updateById等)时自动失效
+     * <p>缓存的实体在调用方之间共享，不要修改；使用by(t)的链、Spring事务中及读己之写窗口内的查询不缓存，事务中的写操作提交后失效</p>
+     * @param ttl 有效期
+     * @return T
+     */
+    public T cached(Duration ttl) {
+        this.chain().cached(ttl);
+        return self();
+    }
+
+    /**
+     * 合并相同的并发查询：同一时刻SQL及参数相同的查询只执行一次，其他线程等待并共享结果或异常，避免缓存失效时的惊群
+     * <p>共享的实体不要修改；Spring事务中、读己之写窗口内及使用by(t)的链不合并。统计见 {@link SingleFlight#stats()}</p>
+     * @return T
+     */
+    public T coalesced() {
+        this.chain().coalesced();
+        return self();
+    }
+
+    /**
+     * 关联预取：主查询完成后，用一次IN查询(related.relatedKey IN 所有父实体的foreignKey)取回关联实体，
+     * 在内存中按键连接后通过setter为每个父实体设置各自的List，没有关联实体时设置为空List
+     * <p>作用于doQuery/doQueryLimit/doQueryLimitOne/doQueryOne/doSeekPage/doScan/doQueryParallel(合并结果)；
+     * 多个关联并行查询，IN列表超过 {@link ModelXConfig#getInChunkSize()} 时分块。
+     * 与cached/coalesced同时使用时，关联设置在结果的拷贝上，不修改共享的实体</p>
+     * @param foreignKey 父实体的外键
+     * @param related 关联实体类
+     * @param relatedKey 关联实体中与外键对应的字段
+     * @param setter 设置关联实体
+     * @param <R> 关联实体类型
+     * @return T
+     */
+    public <R> T with(SFunction<T, ?> foreignKey, Class<R> related, SFunction<R, ?> relatedKey, BiConsumer<T, List<R>> setter) {
+        this.chain().with(foreignKey, related, relatedKey, setter);
+        return self();
+    }
+
+    /**
+     * 设置流式查询的JDBC fetchSize，MySQL逐行读取使用 {@link ModelXConfig#STREAMING_FETCH_SIZE}
+     * @param fetchSize fetchSize
+     * @return T
+     */
+    public T fetchSize(int fetchSize) {
+        this.chain().fetchSize(fetchSize);
+        return self();
+    }
+
+    /**
+     * 规范化SQL：IN列表按桶补齐，并统计SQL形态的命中情况
+     * <p>全局开启见 {@link ModelXConfig#setNormalizeSql(boolean)}</p>
+     * @return T
+     */
+    public T normalized() {
+        this.chain().normalized();
+        return self();
     }
 
     /**
@@ -169,8 +629,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T by(T t) {
-        this.getWrappers().forEach(wrapper -> wrapper.setEntity(t));
-        return typedThis;
+        this.chain().by(t);
+        return self();
     }
 
     /**
@@ -180,8 +640,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      */
     @SafeVarargs
     public final T select(SFunction<T, ?>... columns) {
-        this.getQueryWrapper().select(columns);
-        return typedThis;
+        this.chain().select(columns);
+        return self();
     }
 
     /**
@@ -211,8 +671,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T select(Class<T> entityClass, Predicate<TableFieldInfo> predicate) {
-        this.getQueryWrapper().select(entityClass, predicate);
-        return typedThis;
+        this.chain().select(entityClass, predicate);
+        return self();
     }
 
     /**
@@ -256,8 +716,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public <V> T allEq(BiPredicate<SFunction<T, ?>, V> filter, Map<SFunction<T, ?>, V> params, boolean null2IsNull) {
-        this.getWrappers().forEach(wrapper -> wrapper.allEq(filter, params, null2IsNull));
-        return typedThis;
+        this.chain().allEq(filter, params, null2IsNull);
+        return self();
     }
 
     /**
@@ -269,8 +729,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public <V> T allEq(boolean condition, Map<SFunction<T, ?>, V> params, boolean null2IsNull) {
-        this.getWrappers().forEach(wrapper -> wrapper.allEq(condition, params, null2IsNull));
-        return typedThis;
+        this.chain().allEq(condition, params, null2IsNull);
+        return self();
     }
 
     /**
@@ -283,8 +743,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public <V> T allEq(boolean condition, BiPredicate<SFunction<T, ?>, V> filter, Map<SFunction<T, ?>, V> params, boolean null2IsNull) {
-        this.getWrappers().forEach(wrapper -> wrapper.allEq(condition, filter, params, null2IsNull));
-        return typedThis;
+        this.chain().allEq(condition, filter, params, null2IsNull);
+        return self();
     }
 
     /**
@@ -307,8 +767,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T eq(boolean condition, SFunction<T, ?> column, Object val) {
-        this.getWrappers().forEach(wrapper -> wrapper.eq(condition, column, val));
-        return typedThis;
+        this.chain().eq(condition, column, val);
+        return self();
     }
 
     /**
@@ -331,8 +791,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T ne(boolean condition, SFunction<T, ?> column, Object val) {
-        this.getWrappers().forEach(wrapper -> wrapper.ne(condition, column, val));
-        return typedThis;
+        this.chain().ne(condition, column, val);
+        return self();
     }
 
     /**
@@ -355,8 +815,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T gt(boolean condition, SFunction<T, ?> column, Object val) {
-        this.getWrappers().forEach(wrapper -> wrapper.gt(condition, column, val));
-        return typedThis;
+        this.chain().gt(condition, column, val);
+        return self();
     }
 
     /**
@@ -379,8 +839,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T ge(boolean condition, SFunction<T, ?> column, Object val) {
-        this.getWrappers().forEach(wrapper -> wrapper.ge(condition, column, val));
-        return typedThis;
+        this.chain().ge(condition, column, val);
+        return self();
     }
 
     /**
@@ -403,8 +863,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T lt(boolean condition, SFunction<T, ?> column, Object val) {
-        this.getWrappers().forEach(wrapper -> wrapper.lt(condition, column, val));
-        return typedThis;
+        this.chain().lt(condition, column, val);
+        return self();
     }
 
     /**
@@ -427,8 +887,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T le(boolean condition, SFunction<T, ?> column, Object val) {
-        this.getWrappers().forEach(wrapper -> wrapper.le(condition, column, val));
-        return typedThis;
+        this.chain().le(condition, column, val);
+        return self();
     }
 
     /**
@@ -453,8 +913,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T between(boolean condition, SFunction<T, ?> column, Object val1, Object val2) {
-        this.getWrappers().forEach(wrapper -> wrapper.between(condition, column, val1, val2));
-        return typedThis;
+        this.chain().between(condition, column, val1, val2);
+        return self();
     }
 
     /**
@@ -479,8 +939,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T notBetween(boolean condition, SFunction<T, ?> column, Object val1, Object val2) {
-        this.getWrappers().forEach(wrapper -> wrapper.notBetween(condition, column, val1, val2));
-        return typedThis;
+        this.chain().notBetween(condition, column, val1, val2);
+        return self();
     }
 
     /**
@@ -503,8 +963,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T like(boolean condition, SFunction<T, ?> column, Object val) {
-        this.getWrappers().forEach(wrapper -> wrapper.like(condition, column, val));
-        return typedThis;
+        this.chain().like(condition, column, val);
+        return self();
     }
 
     /**
@@ -527,8 +987,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T notLike(boolean condition, SFunction<T, ?> column, Object val) {
-        this.getWrappers().forEach(wrapper -> wrapper.notLike(condition, column, val));
-        return typedThis;
+        this.chain().notLike(condition, column, val);
+        return self();
     }
 
     /**
@@ -551,8 +1011,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T likeLeft(boolean condition, SFunction<T, ?> column, Object val) {
-        this.getWrappers().forEach(wrapper -> wrapper.likeLeft(condition, column, val));
-        return typedThis;
+        this.chain().likeLeft(condition, column, val);
+        return self();
     }
 
     /**
@@ -575,8 +1035,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T likeRight(boolean condition, SFunction<T, ?> column, Object val) {
-        this.getWrappers().forEach(wrapper -> wrapper.likeRight(condition, column, val));
-        return typedThis;
+        this.chain().likeRight(condition, column, val);
+        return self();
     }
 
     /**
@@ -595,8 +1055,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T or(boolean condition) {
-        this.getWrappers().forEach(wrapper -> wrapper.or(condition));
-        return typedThis;
+        this.chain().or(condition);
+        return self();
     }
 
     /**
@@ -623,8 +1083,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public <Children extends AbstractWrapper<T, SFunction<T, ?>, Children>> T or(boolean condition, Consumer<Children> consumer) {
-        this.getWrappers().forEach(wrapper -> wrapper.or(condition, consumer));
-        return typedThis;
+        this.chain().or(condition, consumer);
+        return self();
     }
 
     /**
@@ -651,8 +1111,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public <Children extends AbstractWrapper<T, SFunction<T, ?>, Children>> T and(boolean condition, Consumer<Children> consumer) {
-        this.getWrappers().forEach(wrapper -> wrapper.and(condition, consumer));
-        return typedThis;
+        this.chain().and(condition, consumer);
+        return self();
     }
 
     /**
@@ -679,8 +1139,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public <Children extends AbstractWrapper<T, SFunction<T, ?>, Children>> T nested(boolean condition, Consumer<Children> consumer) {
-        this.getWrappers().forEach(wrapper -> wrapper.nested(condition, consumer));
-        return typedThis;
+        this.chain().nested(condition, consumer);
+        return self();
     }
 
     /**
@@ -703,8 +1163,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T set(boolean condition, SFunction<T, ?> column, Object val) {
-        this.getUpdateWrapper().set(condition, column, val);
-        return typedThis;
+        this.chain().set(condition, column, val);
+        return self();
     }
 
     /**
@@ -727,8 +1187,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T isNull(boolean condition, SFunction<T, ?> column) {
-        this.getWrappers().forEach(wrapper -> wrapper.isNull(condition, column));
-        return typedThis;
+        this.chain().isNull(condition, column);
+        return self();
     }
 
     /**
@@ -751,8 +1211,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T isNotNull(boolean condition, SFunction<T, ?> column) {
-        this.getWrappers().forEach(wrapper -> wrapper.isNotNull(condition, column));
-        return typedThis;
+        this.chain().isNotNull(condition, column);
+        return self();
     }
 
     /**
@@ -774,6 +1234,7 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * <p>例: in("id", Arrays.asList(1, 2, 3, 4, 5))</p>
      *
      * <li> 如果集合为 empty 则不会进行 sql 拼接 </li>
+     * <li> 超过 {@link ModelXConfig#getInChunkSize()} 时doQuery/doUpdate/doDelete按块拆分执行 </li>
      *
      * @param condition 执行条件
      * @param column    字段
@@ -781,8 +1242,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T in(boolean condition, SFunction<T, ?> column, Collection<?> coll) {
-        this.getWrappers().forEach(wrapper -> wrapper.in(condition, column, coll));
-        return typedThis;
+        this.chain().in(condition, column, coll);
+        return self();
     }
 
     /**
@@ -807,8 +1268,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @return T
      */
     public T notIn(boolean condition, SFunction<T, ?> column, Collection<?> coll) {
-        this.getWrappers().forEach(wrapper -> wrapper.notIn(condition, column, coll));
-        return typedThis;
+        this.chain().notIn(condition, column, coll);
+        return self();
     }
 
     /**
@@ -833,8 +1294,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      */
     @SafeVarargs
     public final T groupBy(boolean condition, SFunction<T, ?>... columns) {
-        this.getWrappers().forEach(wrapper -> wrapper.groupBy(condition, columns));
-        return typedThis;
+        this.chain().groupBy(condition, columns);
+        return self();
     }
 
     /**
@@ -861,8 +1322,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      */
     @SafeVarargs
     public final T orderBy(boolean condition, boolean isAsc, SFunction<T, ?>... columns) {
-        this.getWrappers().forEach(wrapper -> wrapper.orderBy(condition, isAsc, columns));
-        return typedThis;
+        this.chain().orderBy(condition, isAsc, columns);
+        return self();
     }
 
     /**
@@ -887,8 +1348,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      */
     @SafeVarargs
     public final T orderByAsc(boolean condition, SFunction<T, ?>... columns) {
-        this.getWrappers().forEach(wrapper -> wrapper.orderByAsc(condition, columns));
-        return typedThis;
+        this.chain().orderByAsc(condition, columns);
+        return self();
     }
 
     /**
@@ -913,8 +1374,8 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      */
     @SafeVarargs
     public final T orderByDesc(boolean condition, SFunction<T, ?>... columns) {
-        this.getWrappers().forEach(wrapper -> wrapper.orderByDesc(condition, columns));
-        return typedThis;
+        this.chain().orderByDesc(condition, columns);
+        return self();
     }
 
     /**
@@ -926,8 +1387,80 @@ public abstract class ModelX<T extends ModelX<?>> extends Model<T> {
      * @since Mp3.3.1
      */
     public <Children extends AbstractWrapper<T, SFunction<T, ?>, Children>> T func(boolean condition, Consumer<Children> consumer) {
-        this.getWrappers().forEach(wrapper -> wrapper.func(condition, consumer));
-        return typedThis;
+        this.chain().func(condition, consumer);
+        return self();
+    }
+
+    // ====== write operations ====
+
+    @Override
+    public boolean insert() {
+        try {
+            return super.insert();
+        } finally {
+            QueryCache.invalidate(this.getClass());
+            ReadWriteRouting.written();
+        }
+    }
+
+    @Override
+    public boolean insertOrUpdate() {
+        try {
+            return super.insertOrUpdate();
+        } finally {
+            QueryCache.invalidate(this.getClass());
+            ReadWriteRouting.written();
+        }
+    }
+
+    @Override
+    public boolean deleteById(Serializable id) {
+        try {
+            return super.deleteById(id);
+        } finally {
+            QueryCache.invalidate(this.getClass());
+            ReadWriteRouting.written();
+        }
+    }
+
+    @Override
+    public boolean deleteById() {
+        try {
+            return super.deleteById();
+        } finally {
+            QueryCache.invalidate(this.getClass());
+            ReadWriteRouting.written();
+        }
+    }
+
+    @Override
+    public boolean delete(Wrapper<T> queryWrapper) {
+        try {
+            return super.delete(queryWrapper);
+        } finally {
+            QueryCache.invalidate(this.getClass());
+            ReadWriteRouting.written();
+        }
+    }
+
+    @Override
+    public boolean updateById() {
+        try {
+            return super.updateById();
+        } finally {
+            QueryCache.invalidate(this.getClass());
+            ReadWriteRouting.written();
+        }
+    }
+
+    @Override
+    public boolean update(Wrapper<T> updateWrapper) {
+        try {
+            return super.update(updateWrapper);
+        } finally {
+            QueryCache.invalidate(this.getClass());
+            ReadWriteRouting.written();
+        }
     }
 
     // ====== other logic ====
@@ -0,0 +1,448 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ModelX 全局配置
+ *
+ * @author Qicz
+ */
+public final class ModelXConfig {
+
+    private ModelXConfig() {
+    }
+
+    /**
+     * MySQL逐行流式读取的fetchSize
+     */
+    public static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+    /**
+     * 是否规范化SQL（IN列表按桶补齐，并统计SQL形态的命中情况）
+     */
+    private static volatile boolean normalizeSql = false;
+
+    /**
+     * IN列表补齐的最小桶大小
+     */
+    private static volatile int inListMinBucket = 8;
+
+    /**
+     * IN列表补齐的最大桶大小，超过后不再补齐
+     */
+    private static volatile int inListMaxBucket = 1024;
+
+    /**
+     * 是否回收dao实例，开启后dao实例在终端操作后reset并放回当前线程复用
+     */
+    private static volatile boolean recycleDao = false;
+
+    /**
+     * 流式查询默认的JDBC fetchSize，MySQL需配合useCursorFetch=true或使用 {@link #STREAMING_FETCH_SIZE}
+     */
+    private static volatile int fetchSize = 1000;
+
+    /**
+     * 批量写入每批的条数，每批flush并commit一次
+     */
+    private static volatile int batchSize = 1000;
+
+    /**
+     * IN列表分块执行的块大小，超过时doQuery/doUpdate/doDelete按块拆分执行
+     */
+    private static volatile int inChunkSize = 1000;
+
+    /**
+     * 批量加载收集主键的时间窗口(毫秒)
+     */
+    private static volatile long loaderBatchWindowMillis = 2;
+
+    /**
+     * 批量加载每批最多的主键数，达到时立即查询
+     */
+    private static volatile int loaderMaxBatchSize = 1000;
+
+    /**
+     * 查询结果缓存的最大条目数
+     */
+    private static volatile int queryCacheSize = 10000;
+
+    /**
+     * 读取不到连接池大小时默认异步线程池的大小
+     */
+    private static final int DEFAULT_ASYNC_POOL_SIZE = 10;
+
+    /**
+     * 连接池最大连接数的getter：HikariCP、Druid/Tomcat、MyBatis PooledDataSource、DBCP2
+     */
+    private static final String[] POOL_SIZE_GETTERS = {"getMaximumPoolSize", "getMaxActive", "getPoolMaximumActiveConnections", "getMaxTotal"};
+
+    /**
+     * 默认异步线程池的大小，0表示与连接池的最大连接数一致
+     */
+    private static volatile int asyncPoolSize = 0;
+
+    /**
+     * 异步终端操作使用的线程池，null时使用默认的有界线程池
+     */
+    private static volatile Executor asyncExecutor;
+
+    /**
+     * 数据库方言，null时根据DataSource自动识别
+     */
+    private static volatile Dialect dialect;
+
+    /**
+     * upsert方言，null时根据DataSource自动识别
+     */
+    private static volatile UpsertDialect upsertDialect;
+
+    /**
+     * doQueryToJson使用的ObjectMapper，null时使用注册了classpath上的Jackson模块(如JSR-310)的默认实例
+     */
+    private static volatile ObjectMapper objectMapper;
+
+    /**
+     * 终端操作监控，null时通过ServiceLoader发现，没有时为 {@link ModelXMonitor#NOOP}
+     */
+    private static volatile ModelXMonitor monitor;
+
+    /**
+     * 慢查询日志的阈值(毫秒)，0表示不输出
+     */
+    private static volatile long slowQueryMillis = 0;
+
+    public static boolean isNormalizeSql() {
+        return normalizeSql;
+    }
+
+    public static void setNormalizeSql(boolean normalizeSql) {
+        ModelXConfig.normalizeSql = normalizeSql;
+    }
+
+    public static int getInListMinBucket() {
+        return inListMinBucket;
+    }
+
+    public static void setInListMinBucket(int inListMinBucket) {
+        ModelXConfig.inListMinBucket = positive(inListMinBucket, "inListMinBucket");
+    }
+
+    public static int getInListMaxBucket() {
+        return inListMaxBucket;
+    }
+
+    public static void setInListMaxBucket(int inListMaxBucket) {
+        ModelXConfig.inListMaxBucket = positive(inListMaxBucket, "inListMaxBucket");
+    }
+
+    public static boolean isRecycleDao() {
+        return recycleDao;
+    }
+
+    public static void setRecycleDao(boolean recycleDao) {
+        ModelXConfig.recycleDao = recycleDao;
+    }
+
+    public static int getFetchSize() {
+        return fetchSize;
+    }
+
+    public static void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0 && STREAMING_FETCH_SIZE != fetchSize) {
+            throw new IllegalArgumentException("fetchSize must be positive or STREAMING_FETCH_SIZE");
+        }
+        ModelXConfig.fetchSize = fetchSize;
+    }
+
+    public static int getBatchSize() {
+        return batchSize;
+    }
+
+    public static void setBatchSize(int batchSize) {
+        ModelXConfig.batchSize = positive(batchSize, "batchSize");
+    }
+
+    public static int getInChunkSize() {
+        return inChunkSize;
+    }
+
+    public static void setInChunkSize(int inChunkSize) {
+        ModelXConfig.inChunkSize = positive(inChunkSize, "inChunkSize");
+    }
+
+    public static long getLoaderBatchWindowMillis() {
+        return loaderBatchWindowMillis;
+    }
+
+    /**
+     * 设置批量加载收集主键的时间窗口，窗口越长合并越多，单次load的延迟越大
+     * @param loaderBatchWindowMillis 窗口(毫秒)，0表示提交到调度线程后立即查询
+     */
+    public static void setLoaderBatchWindowMillis(long loaderBatchWindowMillis) {
+        if (loaderBatchWindowMillis < 0) {
+            throw new IllegalArgumentException("loaderBatchWindowMillis must not be negative");
+        }
+        ModelXConfig.loaderBatchWindowMillis = loaderBatchWindowMillis;
+    }
+
+    public static int getLoaderMaxBatchSize() {
+        return loaderMaxBatchSize;
+    }
+
+    public static void setLoaderMaxBatchSize(int loaderMaxBatchSize) {
+        ModelXConfig.loaderMaxBatchSize = positive(loaderMaxBatchSize, "loaderMaxBatchSize");
+    }
+
+    public static int getQueryCacheSize() {
+        return queryCacheSize;
+    }
+
+    public static void setQueryCacheSize(int queryCacheSize) {
+        ModelXConfig.queryCacheSize = positive(queryCacheSize, "queryCacheSize");
+    }
+
+    /**
+     * 默认异步线程池的大小：设置的值，未设置时为连接池的最大连接数，读取不到时为10
+     */
+    public static int getAsyncPoolSize() {
+        int size = asyncPoolSize;
+        return size > 0 ? size : maximumPoolSize();
+    }
+
+    /**
+     * 设置默认异步线程池的大小，需在第一次异步调用前设置，未设置时与连接池的最大连接数一致
+     * @param asyncPoolSize 线程数，通常为连接池的maximumPoolSize
+     */
+    public static void setAsyncPoolSize(int asyncPoolSize) {
+        ModelXConfig.asyncPoolSize = positive(asyncPoolSize, "asyncPoolSize");
+    }
+
+    /**
+     * 异步终端操作使用的线程池
+     * <p>默认线程池的队列已满时拒绝执行：异步终端操作抛出RejectedExecutionException，
+     * 分块/分片的并行查询及批量加载改由调用线程执行</p>
+     */
+    public static Executor getAsyncExecutor() {
+        Executor executor = asyncExecutor;
+        if (null == executor) {
+            synchronized (ModelXConfig.class) {
+                executor = asyncExecutor;
+                if (null == executor) {
+                    executor = asyncExecutor = newAsyncExecutor(getAsyncPoolSize());
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 设置异步终端操作使用的线程池，如JDK 21的Executors.newVirtualThreadPerTaskExecutor()
+     * @param asyncExecutor 线程池
+     */
+    public static void setAsyncExecutor(Executor asyncExecutor) {
+        ModelXConfig.asyncExecutor = asyncExecutor;
+    }
+
+    public static Dialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * 指定数据库方言，如 {@link Dialects#OFFSET_FETCH}，null时根据DataSource自动识别
+     * @param dialect 方言
+     */
+    public static void setDialect(Dialect dialect) {
+        ModelXConfig.dialect = dialect;
+    }
+
+    public static UpsertDialect getUpsertDialect() {
+        return upsertDialect;
+    }
+
+    /**
+     * 指定upsert方言，如 {@link Dialects#MERGE}，null时根据DataSource自动识别
+     * @param upsertDialect 方言
+     */
+    public static void setUpsertDialect(UpsertDialect upsertDialect) {
+        ModelXConfig.upsertDialect = upsertDialect;
+    }
+
+    /**
+     * doQueryToJson使用的ObjectMapper
+     */
+    public static ObjectMapper getObjectMapper() {
+        ObjectMapper current = objectMapper;
+        if (null == current) {
+            synchronized (ModelXConfig.class) {
+                current = objectMapper;
+                if (null == current) {
+                    current = objectMapper = new ObjectMapper().findAndRegisterModules()
+                            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 设置doQueryToJson使用的ObjectMapper，Spring应用中传入容器中的ObjectMapper使导出与接口序列化一致；null时恢复默认
+     * @param objectMapper ObjectMapper
+     */
+    public static void setObjectMapper(ObjectMapper objectMapper) {
+        ModelXConfig.objectMapper = objectMapper;
+    }
+
+    /**
+     * 终端操作监控
+     */
+    public static ModelXMonitor getMonitor() {
+        ModelXMonitor current = monitor;
+        if (null == current) {
+            synchronized (ModelXConfig.class) {
+                current = monitor;
+                if (null == current) {
+                    current = monitor = loadMonitor();
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 设置终端操作监控，null时恢复为ServiceLoader发现的实现
+     * @param monitor 监控
+     */
+    public static void setMonitor(ModelXMonitor monitor) {
+        ModelXConfig.monitor = monitor;
+    }
+
+    public static long getSlowQueryMillis() {
+        return slowQueryMillis;
+    }
+
+    /**
+     * 设置慢查询日志的阈值，耗时达到阈值的终端操作以WARN级别输出规范化的SQL
+     * @param slowQueryMillis 阈值(毫秒)，0表示不输出
+     */
+    public static void setSlowQueryMillis(long slowQueryMillis) {
+        if (slowQueryMillis < 0) {
+            throw new IllegalArgumentException("slowQueryMillis must not be negative");
+        }
+        ModelXConfig.slowQueryMillis = slowQueryMillis;
+    }
+
+    /**
+     * 通过ServiceLoader发现监控实现，多个时依次调用
+     */
+    private static ModelXMonitor loadMonitor() {
+        List<ModelXMonitor> monitors = new ArrayList<>();
+        for (ModelXMonitor found : ServiceLoader.load(ModelXMonitor.class, ModelXMonitor.class.getClassLoader())) {
+            monitors.add(found);
+        }
+        if (monitors.isEmpty()) {
+            return ModelXMonitor.NOOP;
+        }
+        if (monitors.size() == 1) {
+            return monitors.get(0);
+        }
+        return execution -> monitors.forEach(each -> each.onExecution(execution));
+    }
+
+    /**
+     * 读取表实体所在DataSource的连接池最大连接数，读写分离时取主库
+     */
+    private static int maximumPoolSize() {
+        for (TableInfo tableInfo : TableInfoHelper.getTableInfos()) {
+            if (null == tableInfo.getConfiguration() || null == tableInfo.getConfiguration().getEnvironment()) {
+                continue;
+            }
+            DataSource dataSource = tableInfo.getConfiguration().getEnvironment().getDataSource();
+            while (true) {
+                if (dataSource instanceof ReadWriteDataSource) {
+                    dataSource = ((ReadWriteDataSource) dataSource).getPrimary();
+                } else if (dataSource instanceof DelegatingDataSource && null != ((DelegatingDataSource) dataSource).getTargetDataSource()) {
+                    dataSource = ((DelegatingDataSource) dataSource).getTargetDataSource();
+                } else {
+                    break;
+                }
+            }
+            for (String getter : POOL_SIZE_GETTERS) {
+                try {
+                    Method method = dataSource.getClass().getMethod(getter);
+                    Object size = method.invoke(dataSource);
+                    if (size instanceof Integer && (Integer) size > 0) {
+                        return (Integer) size;
+                    }
+                } catch (ReflectiveOperationException | RuntimeException ignored) {
+                    // 不是该连接池
+                }
+            }
+        }
+        return DEFAULT_ASYNC_POOL_SIZE;
+    }
+
+    /**
+     * 有界线程池，队列满时拒绝执行，不会在调用线程中悄悄同步执行
+     */
+    private static Executor newAsyncExecutor(int poolSize) {
+        AtomicInteger sequence = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(poolSize * 64), runnable -> {
+                    Thread thread = new Thread(runnable, "modelx-async-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static int positive(int value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ModelX 实例工厂
+ * <p>按类缓存无参构造方法的MethodHandle；开启回收模式时，每个线程按类缓存一个空闲实例，
+ * 回收时按新建实例(原型)的字段值恢复，字段的初始值是可变对象时该类不回收</p>
+ *
+ * @author Qicz
+ */
+@SuppressWarnings("unchecked")
+final class ModelXFactory {
+
+    private ModelXFactory() {
+    }
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private static final ClassValue<MethodHandle> CONSTRUCTORS = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            if (Modifier.isAbstract(type.getModifiers())) {
+                throw ExceptionUtils.mpe("%s is abstract, can not be instantiated", type.getName());
+            }
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return MethodHandles.lookup().unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw ExceptionUtils.mpe("%s requires an accessible no-arg constructor", e, type.getName());
+            }
+        }
+    };
+
+    /**
+     * 实体自身（ModelX子类中声明）的实例字段及新建实例时的初始值，reset时恢复
+     */
+    private static final ClassValue<Prototype> PROTOTYPES = new ClassValue<Prototype>() {
+        @Override
+        protected Prototype computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = type; null != c && c != ModelX.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+            }
+            return new Prototype(type, fields.toArray(new Field[0]));
+        }
+    };
+
+    private static final ThreadLocal<Map<Class<?>, ModelX<?>>> IDLE = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * 生成新实例
+     * @param clazz 实体类
+     */
+    static <T> T newInstance(Class<T> clazz) {
+        MethodHandle constructor = CONSTRUCTORS.get(clazz);
+        try {
+            Object instance = constructor.invokeExact();
+            return (T) instance;
+        } catch (Throwable e) {
+            throw ExceptionUtils.mpe("failed to instantiate %s", e, clazz.getName());
+        }
+    }
+
+    /**
+     * 从当前线程取一个空闲实例，没有时生成新的
+     * @param clazz 实体类
+     */
+    static <T extends ModelX<?>> T acquire(Class<T> clazz) {
+        if (!PROTOTYPES.get(clazz).recyclable) {
+            return newInstance(clazz);
+        }
+        ModelX<?> idle = IDLE.get().remove(clazz);
+        if (null != idle) {
+            return (T) idle;
+        }
+        return newInstance(clazz);
+    }
+
+    /**
+     * 将已reset的实例放回当前线程，同类已有空闲实例或该类不回收时丢弃
+     * @param instance 实例
+     */
+    static void release(ModelX<?> instance) {
+        if (PROTOTYPES.get(instance.getClass()).recyclable) {
+            IDLE.get().putIfAbsent(instance.getClass(), instance);
+        }
+    }
+
+    /**
+     * 恢复实体字段为新建实例时的初始值
+     * @param instance 实例
+     */
+    static void resetFields(Object instance) {
+        Prototype prototype = PROTOTYPES.get(instance.getClass());
+        try {
+            for (int i = 0; i < prototype.fields.length; i++) {
+                prototype.fields[i].set(instance, prototype.values[i]);
+            }
+        } catch (IllegalAccessException e) {
+            throw ExceptionUtils.mpe("failed to reset %s", e, instance.getClass().getName());
+        }
+    }
+
+    /**
+     * 新建实例的字段值，只有不可变的值才能在回收的实例之间共享
+     */
+    private static final class Prototype {
+
+        private final Field[] fields;
+
+        private final Object[] values;
+
+        private final boolean recyclable;
+
+        Prototype(Class<?> type, Field[] fields) {
+            Object instance = newInstance(type);
+            this.fields = fields;
+            this.values = new Object[fields.length];
+            boolean immutable = true;
+            try {
+                for (int i = 0; i < fields.length; i++) {
+                    Object value = fields[i].get(instance);
+                    this.values[i] = value;
+                    immutable &= fields[i].getType().isPrimitive() || isImmutable(value);
+                }
+            } catch (IllegalAccessException e) {
+                throw ExceptionUtils.mpe("failed to read the initial fields of %s", e, type.getName());
+            }
+            this.recyclable = immutable;
+        }
+
+        private static boolean isImmutable(Object value) {
+            if (null == value || value instanceof Enum) {
+                return true;
+            }
+            // AtomicInteger等java.util.concurrent中的Number是可变的
+            String type = value.getClass().getName();
+            return type.startsWith("java.lang.") && !(value instanceof StringBuilder || value instanceof StringBuffer)
+                    || type.startsWith("java.math.") || type.startsWith("java.time.");
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.enums.SqlMethod;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按主键批量加载(DataLoader)
+ * <p>所有调用方(包括并发的请求)的load在 {@link ModelXConfig#getLoaderBatchWindowMillis()} 内或达到
+ * {@link ModelXConfig#getLoaderMaxBatchSize()} 时合并为一次 WHERE id IN (...) 查询，相同的主键只查询一次；
+ * 每个loader实例记住自己加载过的主键(memo)，应按请求创建，不要长期持有</p>
+ * <p>查询在 {@link ModelXConfig#getAsyncExecutor()} 中执行，不参与调用线程的Spring事务；批内任一调用线程处于读己之写窗口时读主库</p>
+ *
+ * @author Qicz
+ */
+@SuppressWarnings("unchecked")
+public final class ModelXLoader<T> {
+
+    private static final Map<Class<?>, Batcher<?>> BATCHERS = new ConcurrentHashMap<>();
+
+    private static final LongAdder REQUESTS = new LongAdder();
+
+    private static final LongAdder KEYS = new LongAdder();
+
+    private static final LongAdder BATCHES = new LongAdder();
+
+    private static volatile ScheduledThreadPoolExecutor scheduler;
+
+    private final Batcher<T> batcher;
+
+    private final Map<Object, CompletableFuture<T>> memo = new ConcurrentHashMap<>();
+
+    private ModelXLoader(Batcher<T> batcher) {
+        this.batcher = batcher;
+    }
+
+    /**
+     * 创建绑定entityClass的loader
+     * @param entityClass 有 @TableId 的表实体类
+     * @param <T> 实体类型
+     * @return ModelXLoader<T>
+     */
+    public static <T> ModelXLoader<T> of(Class<T> entityClass) {
+        Batcher<T> batcher = (Batcher<T>) BATCHERS.computeIfAbsent(entityClass, Batcher::new);
+        return new ModelXLoader<>(batcher);
+    }
+
+    /**
+     * 按主键加载
+     * @param id 主键
+     * @return 实体，不存在时为null
+     */
+    public CompletableFuture<T> load(Object id) {
+        if (null == id) {
+            throw new IllegalArgumentException("id must not be null");
+        }
+        REQUESTS.increment();
+        Object key = Statements.joinKey(id);
+        CompletableFuture<T> future = this.memo.get(key);
+        if (null != future) {
+            if (!future.isCompletedExceptionally()) {
+                return future;
+            }
+            this.memo.remove(key, future);
+        }
+        CompletableFuture<T> loaded = new CompletableFuture<>();
+        CompletableFuture<T> current = this.memo.putIfAbsent(key, loaded);
+        if (null != current) {
+            return current;
+        }
+        // 失败的结果不记住，先移出memo再通知调用方，调用方观察到失败后的load一定重新查询
+        this.batcher.load(key).whenComplete((entity, error) -> {
+            if (null == error) {
+                loaded.complete(entity);
+            } else {
+                this.memo.remove(key, loaded);
+                loaded.completeExceptionally(error);
+            }
+        });
+        return loaded;
+    }
+
+    /**
+     * 按主键加载多个
+     * @param ids 主键集合
+     * @return 与ids顺序一致的实体，不存在的为null
+     */
+    public CompletableFuture<List<T>> loadMany(Collection<?> ids) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            futures.add(this.load(id));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(done -> {
+            List<T> entities = new ArrayList<>(futures.size());
+            for (CompletableFuture<T> future : futures) {
+                entities.add(future.join());
+            }
+            return entities;
+        });
+    }
+
+    /**
+     * 立即执行当前正在收集的批次，不等待时间窗口
+     */
+    public void dispatch() {
+        this.batcher.dispatchCurrent();
+    }
+
+    /**
+     * 忘记主键的加载结果，之后的load重新查询
+     * @param id 主键
+     * @return ModelXLoader<T>
+     */
+    public ModelXLoader<T> clear(Object id) {
+        this.memo.remove(Statements.joinKey(id));
+        return this;
+    }
+
+    /**
+     * 忘记所有加载结果
+     * @return ModelXLoader<T>
+     */
+    public ModelXLoader<T> clearAll() {
+        this.memo.clear();
+        return this;
+    }
+
+    /**
+     * 批量加载的统计
+     */
+    public static Stats stats() {
+        return new Stats(REQUESTS.sum(), KEYS.sum(), BATCHES.sum());
+    }
+
+    /**
+     * 清空统计
+     */
+    public static void reset() {
+        REQUESTS.reset();
+        KEYS.reset();
+        BATCHES.reset();
+    }
+
+    private static ScheduledThreadPoolExecutor scheduler() {
+        ScheduledThreadPoolExecutor current = scheduler;
+        if (null == current) {
+            synchronized (ModelXLoader.class) {
+                current = scheduler;
+                if (null == current) {
+                    current = new ScheduledThreadPoolExecutor(1, runnable -> {
+                        Thread thread = new Thread(runnable, "modelx-loader");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    current.setRemoveOnCancelPolicy(true);
+                    scheduler = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 实体类共享的批次收集器
+     */
+    private static final class Batcher<T> {
+
+        private final Class<T> entityClass;
+
+        private Batch<T> current;
+
+        Batcher(Class<?> entityClass) {
+            if (null == Statements.tableInfo(entityClass).getKeyProperty()) {
+                throw ExceptionUtils.mpe("%s has no @TableId, can not be loaded by id", entityClass.getName());
+            }
+            this.entityClass = (Class<T>) entityClass;
+        }
+
+        CompletableFuture<T> load(Object key) {
+            Batch<T> full = null;
+            CompletableFuture<T> future;
+            synchronized (this) {
+                if (null == this.current) {
+                    Batch<T> batch = this.current = new Batch<>();
+                    scheduler().schedule(() -> this.dispatch(batch), ModelXConfig.getLoaderBatchWindowMillis(), TimeUnit.MILLISECONDS);
+                }
+                future = this.current.futures.computeIfAbsent(key, k -> new CompletableFuture<>());
+                this.current.routing = ReadWriteRouting.latest(this.current.routing, ReadWriteRouting.capture());
+                if (this.current.futures.size() >= ModelXConfig.getLoaderMaxBatchSize()) {
+                    full = this.current;
+                    this.current = null;
+                }
+            }
+            if (null != full) {
+                this.dispatch(full);
+            }
+            return future;
+        }
+
+        void dispatchCurrent() {
+            Batch<T> batch;
+            synchronized (this) {
+                batch = this.current;
+            }
+            if (null != batch) {
+                this.dispatch(batch);
+            }
+        }
+
+        private void dispatch(Batch<T> batch) {
+            synchronized (this) {
+                if (this.current == batch) {
+                    this.current = null;
+                }
+            }
+            if (!batch.dispatched.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                ModelXConfig.getAsyncExecutor().execute(() -> this.run(batch));
+            } catch (RejectedExecutionException e) {
+                this.run(batch);
+            }
+        }
+
+        private void run(Batch<T> batch) {
+            try {
+                Map<String, Object> param = new HashMap<>(2);
+                param.put(Constants.COLLECTION, new ArrayList<>(batch.futures.keySet()));
+                List<T> rows = batch.routing.call(() -> Monitoring.run(this.entityClass, "load", monitoring -> ReadWriteRouting.read(() ->
+                        Statements.selectList(this.entityClass, Statements.statement(this.entityClass, SqlMethod.SELECT_BATCH_BY_IDS), param))));
+                BATCHES.increment();
+                KEYS.add(batch.futures.size());
+                Map<Object, T> byKey = new HashMap<>(rows.size() * 4 / 3 + 1);
+                for (T row : rows) {
+                    byKey.put(Statements.joinKey(Statements.keyValue(row)), row);
+                }
+                batch.futures.forEach((key, future) -> future.complete(byKey.get(key)));
+            } catch (Throwable e) {
+                batch.futures.values().forEach(future -> future.completeExceptionally(e));
+            }
+        }
+    }
+
+    private static final class Batch<T> {
+
+        private final Map<Object, CompletableFuture<T>> futures = new LinkedHashMap<>();
+
+        private final AtomicBoolean dispatched = new AtomicBoolean();
+
+        /**
+         * 各调用线程中最近写过的上下文，批内任一调用者处于读己之写窗口时整批读主库
+         */
+        private ReadWriteRouting.Context routing;
+    }
+
+    /**
+     * 批量加载的统计快照
+     */
+    public static final class Stats {
+
+        private final long requests;
+
+        private final long keys;
+
+        private final long batches;
+
+        Stats(long requests, long keys, long batches) {
+            this.requests = requests;
+            this.keys = keys;
+            this.batches = batches;
+        }
+
+        /**
+         * load的调用次数
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * 查询的主键数，去重及memo命中的不计
+         */
+        public long getKeys() {
+            return keys;
+        }
+
+        /**
+         * 执行的IN查询次数
+         */
+        public long getBatches() {
+            return batches;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{requests=" + requests + ", keys=" + keys + ", batches=" + batches + "}";
+        }
+    }
+}
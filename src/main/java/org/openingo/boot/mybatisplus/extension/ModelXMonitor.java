@@ -0,0 +1,128 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+/**
+ * 终端操作监控SPI
+ * <p>实现类可通过 {@link ModelXConfig#setMonitor(ModelXMonitor)} 设置，或在
+ * META-INF/services/org.openingo.boot.mybatisplus.extension.ModelXMonitor 中声明由ServiceLoader发现，
+ * 适配Micrometer等指标库时不需要改变本jar的依赖。没有监控且未开启慢查询日志时终端操作不计时</p>
+ *
+ * @author Qicz
+ */
+public interface ModelXMonitor {
+
+    /**
+     * 不做任何事的默认实现
+     */
+    ModelXMonitor NOOP = execution -> {
+    };
+
+    /**
+     * 一次终端操作完成，在执行终端操作的线程中调用，应尽快返回
+     * @param execution 执行信息
+     */
+    void onExecution(Execution execution);
+
+    /**
+     * 一次终端操作的执行信息
+     */
+    final class Execution {
+
+        private final Class<?> entityClass;
+
+        private final String terminal;
+
+        private final String sql;
+
+        private final long elapsedNanos;
+
+        private final long rows;
+
+        private final Throwable error;
+
+        Execution(Class<?> entityClass, String terminal, String sql, long elapsedNanos, long rows, Throwable error) {
+            this.entityClass = entityClass;
+            this.terminal = terminal;
+            this.sql = sql;
+            this.elapsedNanos = elapsedNanos;
+            this.rows = rows;
+            this.error = error;
+        }
+
+        public Class<?> getEntityClass() {
+            return entityClass;
+        }
+
+        /**
+         * 终端操作，如doQuery、doUpdate
+         */
+        public String getTerminal() {
+            return terminal;
+        }
+
+        /**
+         * 规范化的SQL(不含表名，参数及IN列表以?表示)，没有执行SQL时为null
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * SQL形态的指纹，相同形态的SQL指纹相同
+         */
+        public String getFingerprint() {
+            return null == sql ? null : Integer.toHexString(sql.hashCode());
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * 返回的行数或影响的行数，-1表示未知(如流式操作)
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * 执行失败时的异常，成功时为null
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "Execution{entity=" + entityClass.getSimpleName() + ", terminal=" + terminal + ", sql=" + sql
+                    + ", elapsedNanos=" + elapsedNanos + ", rows=" + rows + ", error=" + error + "}";
+        }
+    }
+}
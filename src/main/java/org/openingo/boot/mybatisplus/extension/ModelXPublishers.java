@@ -0,0 +1,68 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import org.reactivestreams.Publisher;
+
+/**
+ * Reactive Streams适配
+ * <p>reactive-streams是可选依赖，Publisher只出现在本类中，{@link ModelX}及 {@link ModelXQuery} 不引用它，
+ * 缺少该依赖时实体的反射(MyBatis结果映射、Jackson序列化)不受影响</p>
+ *
+ * @author Qicz
+ */
+public final class ModelXPublishers {
+
+    private ModelXPublishers() {
+    }
+
+    /**
+     * 背压流式查询：返回基于Cursor的Reactive Streams Publisher
+     * <p>只在request(n)时读取n行，cancel时立即释放连接；JDK 9+可用FlowAdapters.toFlowPublisher转换为Flow.Publisher。
+     * 需要依赖org.reactivestreams:reactive-streams</p>
+     * @param query 查询对象
+     * @param prefetch JDBC fetchSize
+     * @param <T> 实体类型
+     * @return Publisher<T>
+     */
+    public static <T> Publisher<T> publish(ModelXQuery<T> query, int prefetch) {
+        return query.stream("doPublish", (entityClass, wrapper) -> CursorPublisher.create(entityClass, wrapper, prefetch));
+    }
+
+    /**
+     * 背压流式查询：返回基于Cursor的Reactive Streams Publisher
+     * @param dao dao对象
+     * @param prefetch JDBC fetchSize
+     * @param <T> 实体类型
+     * @return Publisher<T>
+     * @see #publish(ModelXQuery, int)
+     */
+    public static <T extends ModelX<T>> Publisher<T> publish(ModelX<T> dao, int prefetch) {
+        return publish(dao.chain(), prefetch);
+    }
+}
@@ -0,0 +1,1771 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.conditions.AbstractLambdaWrapper;
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.enums.SqlMethod;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import com.baomidou.mybatisplus.extension.activerecord.Model;
+import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
+import org.apache.ibatis.logging.LogFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * MyBatis Plus Extensions: ModelXQuery
+ * <p>绑定实体类的查询对象，链上的条件及终端操作与 {@link ModelX} 一致；查询结果是普通实体，不携带任何链的状态，
+ * 实体类不需要继承ModelX，只需是MyBatis-Plus的表实体</p>
+ * <p>终端操作不清空链上的条件，同一个查询对象可以重复执行，{@link #reset()} 后可构建新的查询；非线程安全</p>
+ *
+ * @author Qicz
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public final class ModelXQuery<T> {
+
+    private final Class<T> entityClass;
+
+    private final ConditionLog<T> conditions = new ConditionLog<>();
+
+    /**
+     * 由dao创建时为dao本身，doUpdate时其非空字段作为SET，null时只使用链上的set
+     */
+    private final Owner<T> owner;
+
+    /**
+     * 终端操作完成后的回调，回收模式下dao在此时被回收
+     */
+    private final Runnable onRelease;
+
+    private Monitoring monitoring;
+
+    ModelXQuery(Class<T> entityClass, Owner<T> owner, Runnable onRelease) {
+        this.entityClass = entityClass;
+        this.owner = owner;
+        this.onRelease = onRelease;
+    }
+
+    /**
+     * 创建绑定entityClass的查询对象
+     * @param entityClass 表实体类
+     * @param <T> 实体类型
+     * @return ModelXQuery<T>
+     */
+    public static <T> ModelXQuery<T> of(Class<T> entityClass) {
+        // 提前校验，避免在终端操作时才发现不是表实体
+        Statements.tableInfo(entityClass);
+        return new ModelXQuery<>(entityClass, null, null);
+    }
+
+    /**
+     * 绑定的实体类
+     */
+    public Class<T> getEntityClass() {
+        return this.entityClass;
+    }
+
+    /**
+     * 重置：清空链上的条件，查询对象可用于构建新的查询
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> reset() {
+        this.conditions.clear();
+        return this;
+    }
+
+    /**
+     * 执行终端操作，开启监控时计时并记录SQL形态
+     * @param terminal 终端操作名
+     * @param action 操作
+     * @param <R> 结果类型
+     */
+    private <R> R execute(String terminal, Supplier<R> action) {
+        try {
+            return Monitoring.run(this.entityClass, terminal, monitoring -> {
+                this.monitoring = monitoring;
+                try {
+                    return action.get();
+                } finally {
+                    this.monitoring = null;
+                }
+            });
+        } finally {
+            if (null != this.onRelease) {
+                this.onRelease.run();
+            }
+        }
+    }
+
+    /**
+     * 执行读终端操作，配置了 {@link ReadWriteDataSource} 时可使用从库
+     * @param terminal 终端操作名
+     * @param action 操作
+     * @param <R> 结果类型
+     */
+    private <R> R read(String terminal, Supplier<R> action) {
+        return this.execute(terminal, () -> ReadWriteRouting.read(action));
+    }
+
+    /**
+     * 为查询结果预取链上的关联，结果可能被缓存或合并查询共享时预取到拷贝上
+     * @param rows 查询结果
+     */
+    private List<T> associated(List<T> rows) {
+        List<Associations.Association<T, ?>> associations = this.conditions.getAssociations();
+        if (rows.isEmpty() || associations.isEmpty()) {
+            return rows;
+        }
+        List<T> parents = this.isShared() ? Associations.copy(this.entityClass, rows) : rows;
+        Associations.prefetch(parents, associations);
+        return parents;
+    }
+
+    /**
+     * 为单个查询结果预取链上的关联
+     * @param row 查询结果，可以为null
+     */
+    private T associatedOne(T row) {
+        return null == row ? null : this.associated(Collections.singletonList(row)).get(0);
+    }
+
+    /**
+     * 查询结果是否可能在调用方之间共享：开启了cached或coalesced，且不是 {@link #isPrivateRead() 只读自己数据的查询}
+     */
+    private boolean isShared() {
+        return (this.conditions.getCacheTtlMillis() > 0 || this.conditions.isCoalesced()) && !isPrivateRead();
+    }
+
+    /**
+     * 当前线程的查询是否需要读到自己的写操作：在Spring事务中(可能读到未提交的数据)，
+     * 或在读己之写窗口内(使用主库)，这样的查询不缓存也不与其他线程合并
+     */
+    private static boolean isPrivateRead() {
+        return TransactionSynchronizationManager.isActualTransactionActive() || ReadWriteRouting.isWithinReadYourWrites();
+    }
+
+    /**
+     * 记录条件，condition为false时不记录
+     * @param kind 条件类型
+     * @param condition 执行条件
+     * @param step 作用于Wrapper的条件
+     * @return ModelXQuery<T>
+     */
+    private ModelXQuery<T> record(ConditionLog.Kind kind, boolean condition, Consumer<AbstractLambdaWrapper> step) {
+        if (condition) {
+            this.conditions.add(kind, step);
+        }
+        return this;
+    }
+
+    /**
+     * 规范化模式下记录本次执行的SQL形态，开启监控时同时记录到监控中
+     * @param action 操作
+     * @param wrapper 执行的Wrapper
+     */
+    private <W extends AbstractWrapper<T, ?, ?>> W shaped(String action, W wrapper) {
+        if (this.conditions.isNormalized()) {
+            SqlShapes.record(this.entityClass, action, wrapper);
+        }
+        Monitoring monitoring = this.monitoring;
+        if (null != monitoring) {
+            monitoring.shape(action, wrapper);
+        }
+        return wrapper;
+    }
+
+    /**
+     * 执行查询，链上开启cached时优先使用缓存，开启coalesced时合并相同的并发查询
+     * @param action 操作，用于区分同一条件的不同查询
+     * @param wrapper 执行的Wrapper
+     * @param query 查询
+     * @param extras 不在Wrapper中的查询参数，参与缓存key
+     * @param <R> 结果类型
+     */
+    private <R> R query(String action, LambdaQueryWrapper<T> wrapper, Function<LambdaQueryWrapper<T>, R> query, Object... extras) {
+        this.shaped(action, wrapper);
+        boolean privateRead = isPrivateRead();
+        long ttlMillis = privateRead ? 0L : this.conditions.getCacheTtlMillis();
+        boolean coalesced = this.conditions.isCoalesced() && !privateRead;
+        QueryCache.Key key = ttlMillis > 0 || coalesced ? QueryCache.key(this.entityClass, action, wrapper, extras) : null;
+        if (null == key) {
+            return query.apply(wrapper);
+        }
+        Supplier<R> loader = coalesced ? () -> SingleFlight.execute(key, () -> query.apply(wrapper)) : () -> query.apply(wrapper);
+        if (ttlMillis <= 0) {
+            return loader.get();
+        }
+        return QueryCache.get(key, ttlMillis, loader);
+    }
+
+    /**
+     * 执行Query操作
+     * @return List<T>
+     */
+    public List<T> doQuery() {
+        return this.read("doQuery", () -> {
+            List<List<Object>> chunks = this.conditions.inChunks();
+            if (chunks.isEmpty()) {
+                return this.associated(this.query("SELECT", this.conditions.toQueryWrapper(), this::selectList));
+            }
+            // 大IN列表按块并行查询，每块独立参与缓存
+            return this.associated(InChunks.query(this.entityClass, chunks,
+                    chunk -> this.query("SELECT", this.conditions.toQueryWrapper(chunk), this::selectList),
+                    this.conditions.getOrder()));
+        });
+    }
+
+    /**
+     * 执行Select One Limit 1 Query操作
+     * @return T
+     */
+    public T doQueryLimitOne() {
+        return this.read("doQueryLimitOne", () -> {
+            List<T> list = this.limit(this.conditions.toQueryWrapper(), 1, 0L);
+            return list.isEmpty() ? null : this.associatedOne(list.get(0));
+        });
+    }
+
+    /**
+     * 执行Limit Query操作：行数限制按方言下推到数据库，不修改链上的条件
+     * @param limit 最多返回的行数
+     * @return List<T>
+     */
+    public List<T> doQueryLimit(int limit) {
+        return this.doQueryLimit(limit, 0L);
+    }
+
+    /**
+     * 执行Limit Offset Query操作：行数限制按方言下推到数据库，不修改链上的条件
+     * <p>方言根据DataSource识别(LIMIT/OFFSET FETCH/ROWNUM/TOP)，见 {@link Dialects}</p>
+     * @param limit 最多返回的行数
+     * @param offset 跳过的行数
+     * @return List<T>
+     */
+    public List<T> doQueryLimit(int limit, long offset) {
+        return this.read("doQueryLimit", () -> this.associated(this.limit(this.conditions.toQueryWrapper(), limit, offset)));
+    }
+
+    /**
+     * 执行限制行数的查询
+     */
+    private List<T> limit(LambdaQueryWrapper<T> wrapper, int limit, long offset) {
+        return this.query("SELECT LIMIT", wrapper,
+                w -> LimitSqlSource.selectList(this.entityClass, SqlMethod.SELECT_LIST, w, limit, offset), limit, offset);
+    }
+
+    /**
+     * 执行Select One Query操作
+     * @return T
+     */
+    public T doQueryOne() {
+        return this.read("doQueryOne", () -> this.associatedOne(this.query("SELECT ONE", this.conditions.toQueryWrapper(), this::selectOne)));
+    }
+
+    /**
+     * 执行Count操作：SELECT COUNT(*)，忽略链上的select和orderBy，不构建实体
+     * <p>链上有groupBy时返回分组数</p>
+     * @return 行数
+     */
+    public long doCount() {
+        return this.read("doCount", () -> {
+            LambdaQueryWrapper<T> wrapper = this.conditions.toQueryWrapper(EnumSet.of(ConditionLog.Kind.SELECT, ConditionLog.Kind.ORDER_BY));
+            boolean grouped = this.conditions.contains(ConditionLog.Kind.GROUP_BY);
+            return this.query("COUNT", wrapper, w -> {
+                List<Object> counts = Statements.selectList(this.entityClass,
+                        Statements.statement(this.entityClass, SqlMethod.SELECT_COUNT), Statements.wrapperParam(w));
+                if (grouped) {
+                    return (long) counts.size();
+                }
+                return counts.isEmpty() || null == counts.get(0) ? 0L : ((Number) counts.get(0)).longValue();
+            });
+        });
+    }
+
+    /**
+     * 执行Exists操作：只查询主键并限制1行，不构建实体
+     * @return 是否存在
+     */
+    public boolean doExists() {
+        return this.read("doExists", () -> {
+            LambdaQueryWrapper<T> wrapper = this.conditions.toQueryWrapper(EnumSet.of(ConditionLog.Kind.SELECT, ConditionLog.Kind.ORDER_BY));
+            TableInfo tableInfo = Statements.tableInfo(this.entityClass);
+            if (null != tableInfo.getKeyProperty() || tableInfo.getFieldList().isEmpty()) {
+                wrapper.select(this.entityClass, field -> false);
+            } else {
+                TableFieldInfo first = tableInfo.getFieldList().get(0);
+                wrapper.select(this.entityClass, field -> field == first);
+            }
+            return this.query("EXISTS", wrapper,
+                    w -> !LimitSqlSource.selectList(this.entityClass, SqlMethod.SELECT_OBJS, w, 1, 0L).isEmpty());
+        });
+    }
+
+    /**
+     * 单列查询：逐行读取为long[]，不构建实体及List，NULL值跳过
+     * <p>插件及TypeHandler照常生效，见 {@link Projections}</p>
+     * @param column 查询的字段，如主键
+     * @return long[]
+     */
+    public long[] doQueryLongs(SFunction<T, ?> column) {
+        return this.execute("doQueryLongs", () -> this.query("SELECT LONGS", this.projection(column),
+                w -> Projections.longs(this.entityClass, w)));
+    }
+
+    /**
+     * 单列查询：逐行读取为int[]，不构建实体及List，NULL值跳过
+     * <p>插件及TypeHandler照常生效，见 {@link Projections}</p>
+     * @param column 查询的字段
+     * @return int[]
+     */
+    public int[] doQueryInts(SFunction<T, ?> column) {
+        return this.execute("doQueryInts", () -> this.query("SELECT INTS", this.projection(column),
+                w -> Projections.ints(this.entityClass, w)));
+    }
+
+    /**
+     * 单列查询：逐行读取为String[]，不构建实体及List，NULL值跳过
+     * <p>插件及TypeHandler照常生效，见 {@link Projections}</p>
+     * @param column 查询的字段
+     * @return String[]
+     */
+    public String[] doQueryStrings(SFunction<T, ?> column) {
+        return this.execute("doQueryStrings", () -> this.query("SELECT STRINGS", this.projection(column),
+                w -> Projections.strings(this.entityClass, w)));
+    }
+
+    /**
+     * 列式查询：每个数值字段一个基本类型数组，字符串字典编码，NULL以位图表示，逐行追加，不构建List
+     * <p>忽略链上的select；列值经实体的TypeHandler转换，插件照常生效，见 {@link Projections}</p>
+     * @param columns 查询的字段
+     * @return ColumnarBatch
+     */
+    @SafeVarargs
+    public final ColumnarBatch doQueryColumnar(SFunction<T, ?>... columns) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("columns must not be empty");
+        }
+        return this.execute("doQueryColumnar", () -> {
+            String[] properties = new String[columns.length];
+            ColumnarBatch.Type[] types = new ColumnarBatch.Type[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                properties[i] = Statements.property(columns[i]);
+                types[i] = ColumnarBatch.typeOf(Statements.propertyType(this.entityClass, properties[i]));
+            }
+            LambdaQueryWrapper<T> wrapper = this.conditions.toQueryWrapper(EnumSet.of(ConditionLog.Kind.SELECT)).select(columns);
+            return this.query("SELECT COLUMNAR", wrapper, w -> {
+                ColumnarBatch.Appender<T> batch = new ColumnarBatch.Appender<>(properties, types, columns);
+                Projections.rows(this.entityClass, w, null, batch);
+                return batch.build();
+            });
+        });
+    }
+
+    /**
+     * 只查询column的QueryWrapper，忽略链上的select
+     */
+    private LambdaQueryWrapper<T> projection(SFunction<T, ?> column) {
+        LambdaQueryWrapper<T> wrapper = this.conditions.toQueryWrapper(EnumSet.of(ConditionLog.Kind.SELECT));
+        return wrapper.select(column);
+    }
+
+    /**
+     * 查询结果直接以UTF-8写出为JSON数组：逐行读取，不构建List，内存占用与结果集大小无关
+     * <p>字段名为实体属性名，值经实体的TypeHandler转换后由 {@link ModelXConfig#getObjectMapper()} 写出；不关闭out。插件照常生效，见 {@link Projections}</p>
+     * @param out 输出流
+     * @return 写出的行数
+     */
+    public long doQueryToJson(OutputStream out) {
+        return this.execute("doQueryToJson", () -> this.writeJson(() -> JsonExport.generator(out)));
+    }
+
+    /**
+     * 查询结果直接写出为JSON数组：逐行读取，不构建List，内存占用与结果集大小无关
+     * <p>字段名为实体属性名，值经实体的TypeHandler转换后由 {@link ModelXConfig#getObjectMapper()} 写出；不关闭writer。插件照常生效，见 {@link Projections}</p>
+     * @param writer Writer
+     * @return 写出的行数
+     */
+    public long doQueryToJson(Writer writer) {
+        return this.execute("doQueryToJson", () -> this.writeJson(() -> JsonExport.generator(writer)));
+    }
+
+    private long writeJson(JsonExport.GeneratorFactory generator) {
+        Integer fetchSize = this.conditions.getFetchSize();
+        return JsonExport.write(this.entityClass, this.shaped("SELECT", this.conditions.toQueryWrapper()),
+                null == fetchSize ? ModelXConfig.getFetchSize() : fetchSize, generator);
+    }
+
+    /**
+     * 执行Update操作
+     * @return true成功，false失败
+     */
+    public Boolean doUpdate() {
+        return this.execute("doUpdate", () -> {
+            List<List<Object>> chunks = this.conditions.inChunks();
+            if (chunks.isEmpty()) {
+                return this.update(this.shaped("UPDATE", this.conditions.toUpdateWrapper()));
+            }
+            return InChunks.write(this.entityClass, "UPDATE", chunks,
+                    chunk -> this.update(this.shaped("UPDATE", this.conditions.toUpdateWrapper(chunk))));
+        });
+    }
+
+    /**
+     * 执行Delete操作
+     * @return true成功，false失败
+     */
+    public Boolean doDelete() {
+        return this.execute("doDelete", () -> {
+            List<List<Object>> chunks = this.conditions.inChunks();
+            if (chunks.isEmpty()) {
+                return this.delete(this.shaped("DELETE", this.conditions.toUpdateWrapper()));
+            }
+            return InChunks.write(this.entityClass, "DELETE", chunks,
+                    chunk -> this.delete(this.shaped("DELETE", this.conditions.toUpdateWrapper(chunk))));
+        });
+    }
+
+    /**
+     * 分块删除：按主键顺序每次删除chunkSize行，每块是一个独立的短事务，避免长时间持有行锁和间隙锁
+     * @param chunkSize 每块行数
+     * @return 删除的总行数
+     */
+    public long doDeleteChunked(int chunkSize) {
+        return this.doDeleteChunked(chunkSize, Duration.ZERO, null);
+    }
+
+    /**
+     * 分块删除：按主键顺序每次删除chunkSize行，每块是一个独立的短事务，避免长时间持有行锁和间隙锁
+     * <p>先按链上的条件查询下一块的主键(key &gt; 上一块的最后一个主键)，再以链上的条件加 key IN (...) 删除；
+     * 不能在Spring事务中调用，链上不能有groupBy</p>
+     * @param chunkSize 每块行数
+     * @param pause 块之间的停顿，便于从库追平及让出锁，Duration.ZERO不停顿
+     * @param progress 每块完成后回调已删除的总行数，可为null
+     * @return 删除的总行数
+     */
+    public long doDeleteChunked(int chunkSize, Duration pause, LongConsumer progress) {
+        return this.execute("doDeleteChunked", () -> this.chunked("DELETE", SqlMethod.DELETE, chunkSize, pause, progress));
+    }
+
+    /**
+     * 分块更新：按主键顺序每次更新chunkSize行，每块是一个独立的短事务，避免长时间持有行锁和间隙锁
+     * @param chunkSize 每块行数
+     * @return 更新的总行数
+     */
+    public long doUpdateChunked(int chunkSize) {
+        return this.doUpdateChunked(chunkSize, Duration.ZERO, null);
+    }
+
+    /**
+     * 分块更新：按主键顺序每次更新chunkSize行，每块是一个独立的短事务，避免长时间持有行锁和间隙锁
+     * <p>先按链上的条件查询下一块的主键(key &gt; 上一块的最后一个主键)，再以链上的条件加 key IN (...) 更新，
+     * 更新后仍满足条件的行不会被重复更新；不能在Spring事务中调用，链上不能有groupBy，不能set主键</p>
+     * @param chunkSize 每块行数
+     * @param pause 块之间的停顿，便于从库追平及让出锁，Duration.ZERO不停顿
+     * @param progress 每块完成后回调已更新的总行数，可为null
+     * @return 更新的总行数
+     */
+    public long doUpdateChunked(int chunkSize, Duration pause, LongConsumer progress) {
+        return this.execute("doUpdateChunked", () -> this.chunked("UPDATE", SqlMethod.UPDATE, chunkSize, pause, progress));
+    }
+
+    /**
+     * 按主键分块执行更新或删除
+     */
+    private long chunked(String action, SqlMethod sqlMethod, int chunkSize, Duration pause, LongConsumer progress) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        if (this.conditions.contains(ConditionLog.Kind.GROUP_BY)) {
+            throw ExceptionUtils.mpe("chunked writes walk the key column, remove groupBy from the chain");
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw ExceptionUtils.mpe("chunked writes commit every chunk, do not call them inside a transaction");
+        }
+        String key = Statements.tableInfo(this.entityClass).getKeyColumn();
+        if (null == key) {
+            throw ExceptionUtils.mpe("%s has no @TableId, chunked writes walk the key column", this.entityClass.getName());
+        }
+        // 更新后的主键可能大于游标，被再次遍历
+        if (SqlMethod.UPDATE == sqlMethod && sets(this.conditions.toUpdateWrapper(), key)) {
+            throw ExceptionUtils.mpe("chunked updates walk the key column, do not set %s", key);
+        }
+        long total = 0;
+        Object afterKey = null;
+        try {
+            List<Object> keys;
+            do {
+                // WHERE条件整体嵌套，追加的key条件不受链上OR的影响
+                LambdaQueryWrapper<T> select = this.conditions.toQueryWrapper(EnumSet.of(ConditionLog.Kind.SELECT, ConditionLog.Kind.ORDER_BY), true);
+                select.select(this.entityClass, field -> false).apply(null != afterKey, key + " > {0}", afterKey).last("ORDER BY " + key);
+                keys = LimitSqlSource.selectList(this.entityClass, SqlMethod.SELECT_OBJS, this.shaped("SELECT LIMIT", select), chunkSize, 0L);
+                if (keys.isEmpty()) {
+                    break;
+                }
+                LambdaUpdateWrapper<T> write = this.conditions.toUpdateWrapper(true);
+                write.apply(key + " IN (" + placeholders(keys.size()) + ")", keys.toArray());
+                total += this.affected(sqlMethod, this.shaped(action, write));
+                afterKey = keys.get(keys.size() - 1);
+                if (null != progress) {
+                    progress.accept(total);
+                }
+                if (keys.size() == chunkSize && null != pause && !pause.isZero()) {
+                    pause(pause, action, total);
+                }
+            } while (keys.size() == chunkSize);
+        } finally {
+            QueryCache.invalidate(this.entityClass);
+            ReadWriteRouting.written();
+        }
+        return Monitoring.rows(this.monitoring, total);
+    }
+
+    /**
+     * SET片段中是否更新了该字段
+     * @param wrapper 更新的Wrapper
+     * @param column 字段
+     */
+    private static boolean sets(LambdaUpdateWrapper<?> wrapper, String column) {
+        String sqlSet = wrapper.getSqlSet();
+        if (null == sqlSet) {
+            return false;
+        }
+        for (String set : sqlSet.split(",")) {
+            if (set.trim().startsWith(column + "=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String placeholders(int size) {
+        StringBuilder placeholders = new StringBuilder(size * 5);
+        for (int i = 0; i < size; i++) {
+            placeholders.append(i == 0 ? "{" : ", {").append(i).append('}');
+        }
+        return placeholders.toString();
+    }
+
+    private static void pause(Duration pause, String action, long total) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(pause.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw ExceptionUtils.mpe("chunked %s interrupted after %s rows", e, action, total);
+        }
+    }
+
+    /**
+     * 异步执行Query操作
+     * <p>在 {@link ModelXConfig#getAsyncExecutor()} 中执行，不参与调用线程的Spring事务，读写路由的上下文随任务传递</p>
+     * @return CompletableFuture<List<T>>
+     */
+    public CompletableFuture<List<T>> doQueryAsync() {
+        return CompletableFuture.supplyAsync(ReadWriteRouting.capture().wrap(this::doQuery), ModelXConfig.getAsyncExecutor());
+    }
+
+    /**
+     * 异步执行Select One Limit 1 Query操作
+     * @return CompletableFuture<T>
+     */
+    public CompletableFuture<T> doQueryLimitOneAsync() {
+        return CompletableFuture.supplyAsync(ReadWriteRouting.capture().wrap(this::doQueryLimitOne), ModelXConfig.getAsyncExecutor());
+    }
+
+    /**
+     * 异步执行Select One Query操作
+     * @return CompletableFuture<T>
+     */
+    public CompletableFuture<T> doQueryOneAsync() {
+        return CompletableFuture.supplyAsync(ReadWriteRouting.capture().wrap(this::doQueryOne), ModelXConfig.getAsyncExecutor());
+    }
+
+    /**
+     * 异步执行Update操作
+     * @return CompletableFuture<Boolean>
+     */
+    public CompletableFuture<Boolean> doUpdateAsync() {
+        return CompletableFuture.supplyAsync(ReadWriteRouting.capture().wrap(this::doUpdate), ModelXConfig.getAsyncExecutor());
+    }
+
+    /**
+     * 异步执行Delete操作
+     * @return CompletableFuture<Boolean>
+     */
+    public CompletableFuture<Boolean> doDeleteAsync() {
+        return CompletableFuture.supplyAsync(ReadWriteRouting.capture().wrap(this::doDelete), ModelXConfig.getAsyncExecutor());
+    }
+
+    /**
+     * 流式查询：逐行消费，内存占用与结果集大小无关
+     * @param consumer 消费函数
+     */
+    public void doEach(Consumer<T> consumer) {
+        this.execute("doEach", () -> {
+            Cursors.each(this.entityClass, this.shaped("SELECT", this.conditions.toQueryWrapper()),
+                    this.conditions.getFetchSize(), consumer);
+            return null;
+        });
+    }
+
+    /**
+     * 流式查询：按批消费，每批最多batchSize条
+     * @param batchSize 批大小
+     * @param consumer 消费函数
+     */
+    public void doEach(int batchSize, Consumer<List<T>> consumer) {
+        this.execute("doEach", () -> {
+            Cursors.each(this.entityClass, this.shaped("SELECT", this.conditions.toQueryWrapper()),
+                    this.conditions.getFetchSize(), batchSize, consumer);
+            return null;
+        });
+    }
+
+    /**
+     * 流式查询：返回基于Cursor的Stream，使用完必须关闭(try-with-resources)，关闭时释放连接
+     * @return Stream<T>
+     */
+    public Stream<T> doStream() {
+        return this.execute("doStream", () -> Cursors.stream(this.entityClass, this.shaped("SELECT", this.conditions.toQueryWrapper()),
+                this.conditions.getFetchSize()));
+    }
+
+    /**
+     * Seek分页：WHERE key &gt; afterKey ORDER BY key 并限制size行，每页的代价与翻页深度无关
+     * <p>链上不能有orderBy和groupBy，分页只按key排序；链上有select时必须包含key字段，key不能为NULL，否则抛出异常</p>
+     * @param keyColumn 唯一且有索引的key字段
+     * @param afterKey 上一页最后一条的key，null时取第一页
+     * @param size 每页条数
+     * @return List<T>
+     */
+    public List<T> doSeekPage(SFunction<T, ?> keyColumn, Object afterKey, int size) {
+        return this.execute("doSeekPage", () -> this.associated(this.seekPage(keyColumn, afterKey, size)));
+    }
+
+    /**
+     * 按主键(@TableId)分块扫描全表，每块使用Seek分页
+     * @param chunkSize 每块条数
+     * @param consumer 消费函数
+     */
+    public void doScan(int chunkSize, Consumer<List<T>> consumer) {
+        this.doScan(null, chunkSize, consumer);
+    }
+
+    /**
+     * 按keyColumn分块扫描全表，每块使用Seek分页
+     * @param keyColumn 唯一且有索引的key字段，null时使用主键(@TableId)
+     * @param chunkSize 每块条数
+     * @param consumer 消费函数
+     */
+    public void doScan(SFunction<T, ?> keyColumn, int chunkSize, Consumer<List<T>> consumer) {
+        this.execute("doScan", () -> {
+            Object afterKey = null;
+            long total = 0;
+            List<T> chunk;
+            do {
+                chunk = this.seekPage(keyColumn, afterKey, chunkSize);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                afterKey = this.seekKey(keyColumn, chunk.get(chunk.size() - 1));
+                total += chunk.size();
+                consumer.accept(this.associated(chunk));
+            } while (chunk.size() == chunkSize);
+            return Monitoring.rows(this.monitoring, total);
+        });
+    }
+
+    /**
+     * 查询Seek分页的一页
+     */
+    private List<T> seekPage(SFunction<T, ?> keyColumn, Object afterKey, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        if (this.conditions.contains(ConditionLog.Kind.ORDER_BY) || this.conditions.contains(ConditionLog.Kind.GROUP_BY)) {
+            throw ExceptionUtils.mpe("seek pagination orders by the key column only, remove orderBy/groupBy from the chain");
+        }
+        // WHERE条件整体嵌套，追加的key条件不受链上OR的影响
+        LambdaQueryWrapper<T> wrapper = this.conditions.toQueryWrapper(EnumSet.noneOf(ConditionLog.Kind.class), true);
+        if (null == keyColumn) {
+            String key = Statements.tableInfo(this.entityClass).getKeyColumn();
+            wrapper.apply(null != afterKey, key + " > {0}", afterKey).last("ORDER BY " + key);
+        } else {
+            wrapper.gt(null != afterKey, keyColumn, afterKey).orderByAsc(keyColumn);
+        }
+        List<T> rows = LimitSqlSource.selectList(this.entityClass, SqlMethod.SELECT_LIST, this.shaped("SELECT LIMIT", wrapper), size, 0L);
+        if (!rows.isEmpty()) {
+            // 下一页的afterKey取自最后一行，为null时会再次返回第一页
+            this.seekKey(keyColumn, rows.get(rows.size() - 1));
+        }
+        return rows;
+    }
+
+    /**
+     * 行的key，用作下一页的afterKey
+     * @param keyColumn key字段，null时使用主键(@TableId)
+     * @param row 行
+     */
+    private Object seekKey(SFunction<T, ?> keyColumn, T row) {
+        Object key = null == keyColumn ? Statements.keyValue(row) : keyColumn.apply(row);
+        if (null == key) {
+            throw ExceptionUtils.mpe("seek pagination got a null key, the key column must be selected and not null");
+        }
+        return key;
+    }
+
+    /**
+     * 按partitionColumn的取值范围分片并行查询，合并后返回
+     * <p>先查询partitionColumn的最小值和最大值，将范围均分为partitions片，每片使用同样的条件在异步线程池中
+     * 各自获取连接执行；链上有orderBy时合并后重新排序。partitionColumn为NULL的行单独作为一片</p>
+     * @param partitionColumn 整数类型且有索引的字段
+     * @param partitions 分片数，通常不超过连接池大小
+     * @return List<T>
+     */
+    public List<T> doQueryParallel(SFunction<T, ?> partitionColumn, int partitions) {
+        return this.read("doQueryParallel", () -> {
+            List<List<T>> slices = ParallelTasks.invokeAll(this.slices(partitionColumn, partitions, null));
+            int total = 0;
+            for (List<T> slice : slices) {
+                total += slice.size();
+            }
+            List<T> merged = new ArrayList<>(total);
+            slices.forEach(merged::addAll);
+            if (null != this.conditions.getOrder()) {
+                merged.sort(this.conditions.getOrder());
+            }
+            return this.associated(merged);
+        });
+    }
+
+    /**
+     * 按partitionColumn的取值范围分片并行查询，每片查询完成后交给consumer，不合并结果
+     * <p>consumer的调用是串行的，各片的先后顺序不定</p>
+     * @param partitionColumn 整数类型且有索引的字段
+     * @param partitions 分片数，通常不超过连接池大小
+     * @param consumer 消费函数
+     */
+    public void doQueryParallel(SFunction<T, ?> partitionColumn, int partitions, Consumer<List<T>> consumer) {
+        this.read("doQueryParallel", () -> {
+            // consumer的调用是串行的
+            long[] total = new long[1];
+            ParallelTasks.invokeAll(this.slices(partitionColumn, partitions, rows -> {
+                total[0] += rows.size();
+                consumer.accept(rows);
+            }));
+            return Monitoring.rows(this.monitoring, total[0]);
+        });
+    }
+
+    /**
+     * 生成各分片的查询，consumer不为null时每片的结果交给consumer并返回empty
+     */
+    private List<Supplier<List<T>>> slices(SFunction<T, ?> partitionColumn, int partitions, Consumer<List<T>> consumer) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("partitions must be positive");
+        }
+        if (this.conditions.contains(ConditionLog.Kind.GROUP_BY)) {
+            throw ExceptionUtils.mpe("partitioned queries can not be merged with groupBy, remove groupBy from the chain");
+        }
+        Long min = this.bound(partitionColumn, true);
+        List<Supplier<List<T>>> slices = new ArrayList<>(partitions + 1);
+        Object lock = new Object();
+        Function<Consumer<LambdaQueryWrapper<T>>, Supplier<List<T>>> slice = range -> () -> {
+            LambdaQueryWrapper<T> wrapper = this.conditions.toQueryWrapper(EnumSet.noneOf(ConditionLog.Kind.class), true);
+            range.accept(wrapper);
+            List<T> rows = this.query("SELECT", wrapper, this::selectList);
+            if (null == consumer) {
+                return rows;
+            }
+            synchronized (lock) {
+                consumer.accept(rows);
+            }
+            return Collections.emptyList();
+        };
+        if (null != min) {
+            long max = this.bound(partitionColumn, false);
+            long span = max - min + 1;
+            if (span <= 0) {
+                // 溢出，不分片
+                span = Long.MAX_VALUE;
+                partitions = 1;
+            }
+            long step = Math.max(1L, span / partitions + (span % partitions == 0 ? 0 : 1));
+            for (long lower = min; lower <= max; lower += step) {
+                long from = lower;
+                boolean last = max - lower < step;
+                slices.add(slice.apply(w -> w.ge(partitionColumn, from).le(last, partitionColumn, max).lt(!last, partitionColumn, from + step)));
+                if (last) {
+                    break;
+                }
+            }
+        }
+        slices.add(slice.apply(w -> w.isNull(partitionColumn)));
+        return slices;
+    }
+
+    /**
+     * 查询partitionColumn的最小值或最大值，没有非NULL值时返回null
+     */
+    private Long bound(SFunction<T, ?> partitionColumn, boolean min) {
+        LambdaQueryWrapper<T> wrapper = this.conditions.toQueryWrapper(EnumSet.of(ConditionLog.Kind.SELECT, ConditionLog.Kind.ORDER_BY), true);
+        wrapper.select(partitionColumn).isNotNull(partitionColumn).orderBy(true, min, partitionColumn);
+        List<Object> values = LimitSqlSource.selectList(this.entityClass, SqlMethod.SELECT_OBJS, this.shaped("SELECT LIMIT", wrapper), 1, 0L);
+        if (values.isEmpty() || null == values.get(0)) {
+            return null;
+        }
+        Object value = values.get(0);
+        if (!(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte
+                || value instanceof BigInteger && ((BigInteger) value).bitLength() < Long.SIZE)) {
+            throw ExceptionUtils.mpe("partition column must be integral, got %s", value.getClass().getName());
+        }
+        return ((Number) value).longValue();
+    }
+
+    /**
+     * 缓存查询结果，同一实体表发生写操作(doUpdate/doDelete/insert/updateById等)时自动失效
+     * <p>缓存的实体在调用方之间共享，不要修改；使用by(t)的链、Spring事务中及读己之写窗口内的查询不缓存，事务中的写操作提交后失效</p>
+     * @param ttl 有效期
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> cached(Duration ttl) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        this.conditions.setCacheTtlMillis(ttl.toMillis());
+        return this;
+    }
+
+    /**
+     * 合并相同的并发查询：同一时刻SQL及参数相同的查询只执行一次，其他线程等待并共享结果或异常，避免缓存失效时的惊群
+     * <p>共享的实体不要修改；Spring事务中、读己之写窗口内及使用by(t)的链不合并。统计见 {@link SingleFlight#stats()}</p>
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> coalesced() {
+        this.conditions.coalesce();
+        return this;
+    }
+
+    /**
+     * 关联预取：主查询完成后，用一次IN查询(related.relatedKey IN 所有父实体的foreignKey)取回关联实体，
+     * 在内存中按键连接后通过setter为每个父实体设置各自的List，没有关联实体时设置为空List
+     * <p>作用于doQuery/doQueryLimit/doQueryLimitOne/doQueryOne/doSeekPage/doScan/doQueryParallel(合并结果)；
+     * 多个关联并行查询，IN列表超过 {@link ModelXConfig#getInChunkSize()} 时分块。
+     * 与cached/coalesced同时使用时，关联设置在结果的拷贝上，不修改共享的实体</p>
+     * @param foreignKey 父实体的外键
+     * @param related 关联实体类
+     * @param relatedKey 关联实体中与外键对应的字段
+     * @param setter 设置关联实体
+     * @param <R> 关联实体类型
+     * @return ModelXQuery<T>
+     */
+    public <R> ModelXQuery<T> with(SFunction<T, ?> foreignKey, Class<R> related, SFunction<R, ?> relatedKey, BiConsumer<T, List<R>> setter) {
+        this.conditions.addAssociation(new Associations.Association<>(foreignKey, related, relatedKey, setter));
+        return this;
+    }
+
+    /**
+     * 以链上的查询条件执行流式终端操作，结果由factory创建
+     * <p>结果类型不出现在本类的方法签名中，可选依赖(如reactive-streams)缺失时本类仍可反射，见 {@link ModelXPublishers}</p>
+     * @param terminal 终端操作名
+     * @param factory 由实体类及查询条件创建结果
+     * @param <R> 结果类型
+     */
+    <R> R stream(String terminal, BiFunction<Class<T>, LambdaQueryWrapper<T>, R> factory) {
+        return this.execute(terminal, () -> factory.apply(this.entityClass, this.shaped("SELECT", this.conditions.toQueryWrapper())));
+    }
+
+    /**
+     * 设置流式查询的JDBC fetchSize，MySQL逐行读取使用 {@link ModelXConfig#STREAMING_FETCH_SIZE}
+     * @param fetchSize fetchSize
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> fetchSize(int fetchSize) {
+        this.conditions.setFetchSize(fetchSize);
+        return this;
+    }
+
+    /**
+     * 规范化SQL：IN列表按桶补齐，并统计SQL形态的命中情况
+     * <p>全局开启见 {@link ModelXConfig#setNormalizeSql(boolean)}</p>
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> normalized() {
+        this.conditions.normalize();
+        return this;
+    }
+
+    /**
+     * 基于t进行操作
+     * @param t
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> by(T t) {
+        this.conditions.setEntity(t);
+        return this;
+    }
+
+    /**
+     * SELECT 部分 SQL 设置
+     *
+     * @param columns 查询字段
+     */
+    @SafeVarargs
+    public final ModelXQuery<T> select(SFunction<T, ?>... columns) {
+        return this.record(ConditionLog.Kind.SELECT, true, wrapper -> ((LambdaQueryWrapper<T>) wrapper).select(columns));
+    }
+
+    /**
+     * 过滤查询的字段信息(主键除外!)
+     * <p>例1: 只要 java 字段名以 "test" 开头的             -> select(i -> i.getProperty().startsWith("test"))</p>
+     * <p>例2: 只要 java 字段属性是 CharSequence 类型的     -> select(TableFieldInfo::isCharSequence)</p>
+     * <p>例3: 只要 java 字段没有填充策略的                 -> select(i -> i.getFieldFill() == FieldFill.DEFAULT)</p>
+     * <p>例4: 要全部字段                                   -> select(i -> true)</p>
+     * <p>例5: 只要主键字段                                 -> select(i -> false)</p>
+     *
+     * @param predicate 过滤方式
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> select(Predicate<TableFieldInfo> predicate) {
+        return this.select(this.entityClass, predicate);
+    }
+
+    /**
+     * 过滤查询的字段信息(主键除外!)
+     * <p>例1: 只要 java 字段名以 "test" 开头的             -> select(i -> i.getProperty().startsWith("test"))</p>
+     * <p>例2: 只要 java 字段属性是 CharSequence 类型的     -> select(TableFieldInfo::isCharSequence)</p>
+     * <p>例3: 只要 java 字段没有填充策略的                 -> select(i -> i.getFieldFill() == FieldFill.DEFAULT)</p>
+     * <p>例4: 要全部字段                                   -> select(i -> true)</p>
+     * <p>例5: 只要主键字段                                 -> select(i -> false)</p>
+     *
+     * @param predicate 过滤方式
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> select(Class<T> entityClass, Predicate<TableFieldInfo> predicate) {
+        return this.record(ConditionLog.Kind.SELECT, true, wrapper -> ((LambdaQueryWrapper<T>) wrapper).select(entityClass, predicate));
+    }
+
+    /**
+     * map 所有非空属性等于 =
+     *
+     * @param params      map 类型的参数, key 是字段名, value 是字段值
+     * @return ModelXQuery<T>
+     */
+    public <V> ModelXQuery<T> allEq(Map<SFunction<T, ?>, V> params) {
+        return this.allEq(params, true);
+    }
+
+    /**
+     * map 所有非空属性等于 =
+     *
+     * @param params      map 类型的参数, key 是字段名, value 是字段值
+     * @param null2IsNull 是否参数为 null 自动执行 isNull 方法, false 则忽略这个字段\
+     * @return ModelXQuery<T>
+     */
+    public <V> ModelXQuery<T> allEq(Map<SFunction<T, ?>, V> params, boolean null2IsNull) {
+        return this.allEq(true, params, true);
+    }
+
+    /**
+     * 字段过滤接口，传入多参数时允许对参数进行过滤
+     *
+     * @param filter      返回 true 来允许字段传入比对条件中
+     * @param params      map 类型的参数, key 是字段名, value 是字段值
+     * @return ModelXQuery<T>
+     */
+    public <V> ModelXQuery<T> allEq(BiPredicate<SFunction<T, ?>, V> filter, Map<SFunction<T, ?>, V> params) {
+        return this.allEq(filter, params, true);
+    }
+
+    /**
+     * 字段过滤接口，传入多参数时允许对参数进行过滤
+     *
+     * @param filter      返回 true 来允许字段传入比对条件中
+     * @param params      map 类型的参数, key 是字段名, value 是字段值
+     * @param null2IsNull 是否参数为 null 自动执行 isNull 方法, false 则忽略这个字段
+     * @return ModelXQuery<T>
+     */
+    public <V> ModelXQuery<T> allEq(BiPredicate<SFunction<T, ?>, V> filter, Map<SFunction<T, ?>, V> params, boolean null2IsNull) {
+        return this.record(ConditionLog.Kind.WHERE, true, wrapper -> wrapper.allEq(true, filter, params, null2IsNull));
+    }
+
+    /**
+     * map 所有非空属性等于 =
+     *
+     * @param condition   执行条件
+     * @param params      map 类型的参数, key 是字段名, value 是字段值
+     * @param null2IsNull 是否参数为 null 自动执行 isNull 方法, false 则忽略这个字段\
+     * @return ModelXQuery<T>
+     */
+    public <V> ModelXQuery<T> allEq(boolean condition, Map<SFunction<T, ?>, V> params, boolean null2IsNull) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.allEq(true, params, null2IsNull));
+    }
+
+    /**
+     * 字段过滤接口，传入多参数时允许对参数进行过滤
+     *
+     * @param condition   执行条件
+     * @param filter      返回 true 来允许字段传入比对条件中
+     * @param params      map 类型的参数, key 是字段名, value 是字段值
+     * @param null2IsNull 是否参数为 null 自动执行 isNull 方法, false 则忽略这个字段
+     * @return ModelXQuery<T>
+     */
+    public <V> ModelXQuery<T> allEq(boolean condition, BiPredicate<SFunction<T, ?>, V> filter, Map<SFunction<T, ?>, V> params, boolean null2IsNull) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.allEq(true, filter, params, null2IsNull));
+    }
+
+    /**
+     * 等于 =
+     *
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> eq(SFunction<T, ?> column, Object val) {
+        return this.eq(true, column, val);
+    }
+
+    /**
+     * 等于 =
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> eq(boolean condition, SFunction<T, ?> column, Object val) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.eq(true, column, val));
+    }
+
+    /**
+     * 不等于 &lt;&gt;
+     *
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> ne(SFunction<T, ?> column, Object val) {
+        return this.ne(true, column, val);
+    }
+
+    /**
+     * 不等于 &lt;&gt;
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> ne(boolean condition, SFunction<T, ?> column, Object val) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.ne(true, column, val));
+    }
+
+    /**
+     * 大于 &gt;
+     *
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> gt(SFunction<T, ?> column, Object val) {
+        return this.gt(true, column, val);
+    }
+
+    /**
+     * 大于 &gt;
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> gt(boolean condition, SFunction<T, ?> column, Object val) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.gt(true, column, val));
+    }
+
+    /**
+     * 大于等于 &gt;=
+     *
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> ge(SFunction<T, ?> column, Object val) {
+        return this.ge(true, column, val);
+    }
+
+    /**
+     * 大于等于 &gt;=
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> ge(boolean condition, SFunction<T, ?> column, Object val) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.ge(true, column, val));
+    }
+
+    /**
+     * 小于 &lt;
+     *
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> lt(SFunction<T, ?> column, Object val) {
+        return this.lt(true, column, val);
+    }
+
+    /**
+     * 小于 &lt;
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> lt(boolean condition, SFunction<T, ?> column, Object val) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.lt(true, column, val));
+    }
+
+    /**
+     * 小于等于 &lt;=
+     *
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> le(SFunction<T, ?> column, Object val) {
+        return this.le(true, column, val);
+    }
+
+    /**
+     * 小于等于 &lt;=
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> le(boolean condition, SFunction<T, ?> column, Object val) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.le(true, column, val));
+    }
+
+    /**
+     * BETWEEN 值1 AND 值2
+     *
+     * @param column    字段
+     * @param val1      值1
+     * @param val2      值2
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> between(SFunction<T, ?> column, Object val1, Object val2) {
+        return this.between(true, column, val1, val2);
+    }
+
+    /**
+     * BETWEEN 值1 AND 值2
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @param val1      值1
+     * @param val2      值2
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> between(boolean condition, SFunction<T, ?> column, Object val1, Object val2) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.between(true, column, val1, val2));
+    }
+
+    /**
+     * NOT BETWEEN 值1 AND 值2
+     *
+     * @param column    字段
+     * @param val1      值1
+     * @param val2      值2
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> notBetween(SFunction<T, ?> column, Object val1, Object val2) {
+        return this.notBetween(true, column, val1, val2);
+    }
+
+    /**
+     * NOT BETWEEN 值1 AND 值2
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @param val1      值1
+     * @param val2      值2
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> notBetween(boolean condition, SFunction<T, ?> column, Object val1, Object val2) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.notBetween(true, column, val1, val2));
+    }
+
+    /**
+     * LIKE '%值%'
+     *
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> like(SFunction<T, ?> column, Object val) {
+        return this.like(true, column, val);
+    }
+
+    /**
+     * LIKE '%值%'
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> like(boolean condition, SFunction<T, ?> column, Object val) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.like(true, column, val));
+    }
+
+    /**
+     * NOT LIKE '%值%'
+     *
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> notLike(SFunction<T, ?> column, Object val) {
+        return this.notLike(true, column, val);
+    }
+
+    /**
+     * NOT LIKE '%值%'
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> notLike(boolean condition, SFunction<T, ?> column, Object val) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.notLike(true, column, val));
+    }
+
+    /**
+     * LIKE '%值'
+     *
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> likeLeft(SFunction<T, ?> column, Object val) {
+        return this.likeLeft(true, column, val);
+    }
+
+    /**
+     * LIKE '%值'
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> likeLeft(boolean condition, SFunction<T, ?> column, Object val) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.likeLeft(true, column, val));
+    }
+
+    /**
+     * LIKE '值%'
+     *
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> likeRight(SFunction<T, ?> column, Object val) {
+        return this.likeRight(true, column, val);
+    }
+
+    /**
+     * LIKE '值%'
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> likeRight(boolean condition, SFunction<T, ?> column, Object val) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.likeRight(true, column, val));
+    }
+
+    /**
+     * 拼接 OR
+     *
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> or() {
+        return this.or(true);
+    }
+
+    /**
+     * 拼接 OR
+     *
+     * @param condition 执行条件
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> or(boolean condition) {
+        if (condition) {
+            this.conditions.disjoin();
+        }
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.or(true));
+    }
+
+    /**
+     * OR 嵌套
+     * <p>
+     * 例: or(i -&gt; i.eq("name", "李白").ne("status", "活着"))
+     * </p>
+     *
+     * @param consumer  消费函数
+     * @return ModelXQuery<T>
+     */
+    public <Children extends AbstractWrapper<T, SFunction<T, ?>, Children>> ModelXQuery<T> or(Consumer<Children> consumer) {
+        return this.or(true, consumer);
+    }
+
+    /**
+     * OR 嵌套
+     * <p>
+     * 例: or(i -&gt; i.eq("name", "李白").ne("status", "活着"))
+     * </p>
+     *
+     * @param condition 执行条件
+     * @param consumer  消费函数
+     * @return ModelXQuery<T>
+     */
+    public <Children extends AbstractWrapper<T, SFunction<T, ?>, Children>> ModelXQuery<T> or(boolean condition, Consumer<Children> consumer) {
+        if (condition) {
+            this.conditions.disjoin();
+        }
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.or(true, consumer));
+    }
+
+    /**
+     * AND 嵌套
+     * <p>
+     * 例: and(i -&gt; i.eq("name", "李白").ne("status", "活着"))
+     * </p>
+     *
+     * @param consumer  消费函数
+     * @return ModelXQuery<T>
+     */
+    public <Children extends AbstractWrapper<T, SFunction<T, ?>, Children>> ModelXQuery<T> and(Consumer<Children> consumer) {
+        return this.and(true, consumer);
+    }
+
+    /**
+     * AND 嵌套
+     * <p>
+     * 例: and(i -&gt; i.eq("name", "李白").ne("status", "活着"))
+     * </p>
+     *
+     * @param condition 执行条件
+     * @param consumer  消费函数
+     * @return ModelXQuery<T>
+     */
+    public <Children extends AbstractWrapper<T, SFunction<T, ?>, Children>> ModelXQuery<T> and(boolean condition, Consumer<Children> consumer) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.and(true, consumer));
+    }
+
+    /**
+     * 正常嵌套 不带 AND 或者 OR
+     * <p>
+     * 例: nested(i -&gt; i.eq("name", "李白").ne("status", "活着"))
+     * </p>
+     *
+     * @param consumer  消费函数
+     * @return ModelXQuery<T>
+     */
+    public <Children extends AbstractWrapper<T, SFunction<T, ?>, Children>> ModelXQuery<T> nested(Consumer<Children> consumer) {
+        return this.nested(true, consumer);
+    }
+
+    /**
+     * 正常嵌套 不带 AND 或者 OR
+     * <p>
+     * 例: nested(i -&gt; i.eq("name", "李白").ne("status", "活着"))
+     * </p>
+     *
+     * @param condition 执行条件
+     * @param consumer  消费函数
+     * @return ModelXQuery<T>
+     */
+    public <Children extends AbstractWrapper<T, SFunction<T, ?>, Children>> ModelXQuery<T> nested(boolean condition, Consumer<Children> consumer) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.nested(true, consumer));
+    }
+
+    /**
+     * 设置 更新 SQL 的 SET 片段
+     *
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> set(SFunction<T, ?> column, Object val) {
+        return this.set(true, column, val);
+    }
+
+    /**
+     * 设置 更新 SQL 的 SET 片段
+     *
+     * @param condition 是否加入 set
+     * @param column    字段
+     * @param val       值
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> set(boolean condition, SFunction<T, ?> column, Object val) {
+        return this.record(ConditionLog.Kind.SET, condition, wrapper -> ((LambdaUpdateWrapper<T>) wrapper).set(true, column, val));
+    }
+
+    /**
+     * 字段 IS NULL
+     * <p>例: isNull("name")</p>
+     *
+     * @param column    字段
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> isNull(SFunction<T, ?> column) {
+        return this.isNull(true, column);
+    }
+
+    /**
+     * 字段 IS NULL
+     * <p>例: isNull("name")</p>
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> isNull(boolean condition, SFunction<T, ?> column) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.isNull(true, column));
+    }
+
+    /**
+     * 字段 IS NOT NULL
+     * <p>例: isNotNull("name")</p>
+     *
+     * @param column    字段
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> isNotNull(SFunction<T, ?> column) {
+        return this.isNotNull(true, column);
+    }
+
+    /**
+     * 字段 IS NOT NULL
+     * <p>例: isNotNull("name")</p>
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> isNotNull(boolean condition, SFunction<T, ?> column) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.isNotNull(true, column));
+    }
+
+    /**
+     * 字段 IN (value.get(0), value.get(1), ...)
+     * <p>例: in("id", Arrays.asList(1, 2, 3, 4, 5))</p>
+     *
+     * <li> 如果集合为 empty 则不会进行 sql 拼接 </li>
+     *
+     * @param column    字段
+     * @param coll      数据集合
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> in(SFunction<T, ?> column, Collection<?> coll) {
+        return this.in(true, column, coll);
+    }
+
+    /**
+     * 字段 IN (value.get(0), value.get(1), ...)
+     * <p>例: in("id", Arrays.asList(1, 2, 3, 4, 5))</p>
+     *
+     * <li> 如果集合为 empty 则不会进行 sql 拼接 </li>
+     * <li> 超过 {@link ModelXConfig#getInChunkSize()} 时doQuery/doUpdate/doDelete按块拆分执行 </li>
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @param coll      数据集合
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> in(boolean condition, SFunction<T, ?> column, Collection<?> coll) {
+        if (condition && this.conditions.chunkIn(column, coll)) {
+            return this;
+        }
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.in(true, column, this.conditions.inValues(coll)));
+    }
+
+    /**
+     * 字段 NOT IN (value.get(0), value.get(1), ...)
+     * <p>例: notIn("id", Arrays.asList(1, 2, 3, 4, 5))</p>
+     *
+     * @param column    字段
+     * @param coll      数据集合
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> notIn(SFunction<T, ?> column, Collection<?> coll) {
+        return this.notIn(true, column, coll);
+    }
+
+    /**
+     * 字段 NOT IN (value.get(0), value.get(1), ...)
+     * <p>例: notIn("id", Arrays.asList(1, 2, 3, 4, 5))</p>
+     *
+     * @param condition 执行条件
+     * @param column    字段
+     * @param coll      数据集合
+     * @return ModelXQuery<T>
+     */
+    public ModelXQuery<T> notIn(boolean condition, SFunction<T, ?> column, Collection<?> coll) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.notIn(true, column, this.conditions.inValues(coll)));
+    }
+
+    /**
+     * 分组：GROUP BY 字段, ...
+     * <p>例: groupBy("id", "name")</p>
+     *
+     * @param columns   字段数组
+     * @return ModelXQuery<T>
+     */
+    @SafeVarargs
+    public final ModelXQuery<T> groupBy(SFunction<T, ?>... columns) {
+        return this.groupBy(true, columns);
+    }
+
+    /**
+     * 分组：GROUP BY 字段, ...
+     * <p>例: groupBy("id", "name")</p>
+     *
+     * @param condition 执行条件
+     * @param columns   字段数组
+     * @return ModelXQuery<T>
+     */
+    @SafeVarargs
+    public final ModelXQuery<T> groupBy(boolean condition, SFunction<T, ?>... columns) {
+        return this.record(ConditionLog.Kind.GROUP_BY, condition, wrapper -> wrapper.groupBy(true, columns));
+    }
+
+    /**
+     * 排序：ORDER BY 字段, ...
+     * <p>例: orderBy(true, "id", "name")</p>
+     *
+     * @param isAsc     是否是 ASC 排序
+     * @param columns   字段数组
+     * @return ModelXQuery<T>
+     */
+    @SafeVarargs
+    public final ModelXQuery<T> orderBy(boolean isAsc, SFunction<T, ?>... columns) {
+        return this.orderBy(true, isAsc, columns);
+    }
+
+    /**
+     * 排序：ORDER BY 字段, ...
+     * <p>例: orderBy(true, "id", "name")</p>
+     *
+     * @param condition 执行条件
+     * @param isAsc     是否是 ASC 排序
+     * @param columns   字段数组
+     * @return ModelXQuery<T>
+     */
+    @SafeVarargs
+    public final ModelXQuery<T> orderBy(boolean condition, boolean isAsc, SFunction<T, ?>... columns) {
+        if (condition) {
+            this.conditions.addOrder(isAsc, columns);
+        }
+        return this.record(ConditionLog.Kind.ORDER_BY, condition, wrapper -> wrapper.orderBy(true, isAsc, columns));
+    }
+
+    /**
+     * 排序：ORDER BY 字段, ... ASC
+     * <p>例: orderByAsc("id", "name")</p>
+     *
+     * @param columns   字段数组
+     * @return ModelXQuery<T>
+     */
+    @SafeVarargs
+    public final ModelXQuery<T> orderByAsc(SFunction<T, ?>... columns) {
+        return this.orderByAsc(true, columns);
+    }
+
+    /**
+     * 排序：ORDER BY 字段, ... ASC
+     * <p>例: orderByAsc("id", "name")</p>
+     *
+     * @param condition 执行条件
+     * @param columns   字段数组
+     * @return ModelXQuery<T>
+     */
+    @SafeVarargs
+    public final ModelXQuery<T> orderByAsc(boolean condition, SFunction<T, ?>... columns) {
+        if (condition) {
+            this.conditions.addOrder(true, columns);
+        }
+        return this.record(ConditionLog.Kind.ORDER_BY, condition, wrapper -> wrapper.orderByAsc(true, columns));
+    }
+
+    /**
+     * 排序：ORDER BY 字段, ... DESC
+     * <p>例: orderByDesc("id", "name")</p>
+     *
+     * @param columns   字段数组
+     * @return ModelXQuery<T>
+     */
+    @SafeVarargs
+    public final ModelXQuery<T> orderByDesc(SFunction<T, ?>... columns) {
+        return this.orderByDesc(true, columns);
+    }
+
+    /**
+     * 排序：ORDER BY 字段, ... DESC
+     * <p>例: orderByDesc("id", "name")</p>
+     *
+     * @param condition 执行条件
+     * @param columns   字段数组
+     * @return ModelXQuery<T>
+     */
+    @SafeVarargs
+    public final ModelXQuery<T> orderByDesc(boolean condition, SFunction<T, ?>... columns) {
+        if (condition) {
+            this.conditions.addOrder(false, columns);
+        }
+        return this.record(ConditionLog.Kind.ORDER_BY, condition, wrapper -> wrapper.orderByDesc(true, columns));
+    }
+
+    /**
+     * 消费函数
+     *
+     * @param condition
+     * @param consumer  消费函数
+     * @return ModelXQuery<T>
+     * @since Mp3.3.1
+     */
+    public <Children extends AbstractWrapper<T, SFunction<T, ?>, Children>> ModelXQuery<T> func(boolean condition, Consumer<Children> consumer) {
+        return this.record(ConditionLog.Kind.WHERE, condition, wrapper -> wrapper.func(true, consumer));
+    }
+
+    // ====== statements ====
+
+    private List<T> selectList(Wrapper<T> queryWrapper) {
+        return Statements.selectList(this.entityClass, Statements.statement(this.entityClass, SqlMethod.SELECT_LIST),
+                Statements.wrapperParam(queryWrapper));
+    }
+
+    /**
+     * 同 {@link Model#selectOne(Wrapper)}，多于一条时输出警告并返回第一条
+     */
+    private T selectOne(Wrapper<T> queryWrapper) {
+        List<T> list = this.selectList(queryWrapper);
+        if (list.size() > 1) {
+            LogFactory.getLog(this.entityClass).warn(String.format("Warn: execute Method There are %s results.", list.size()));
+        }
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    private boolean update(Wrapper<T> updateWrapper) {
+        if (null != this.owner) {
+            return this.owner.update(updateWrapper);
+        }
+        try {
+            Map<String, Object> param = Statements.wrapperParam(updateWrapper);
+            param.put(Constants.ENTITY, null);
+            return SqlHelper.retBool(Statements.update(this.entityClass, Statements.statement(this.entityClass, SqlMethod.UPDATE), param));
+        } finally {
+            QueryCache.invalidate(this.entityClass);
+            ReadWriteRouting.written();
+        }
+    }
+
+    /**
+     * 执行更新或删除，返回影响行数，不失效缓存
+     */
+    private int affected(SqlMethod sqlMethod, Wrapper<T> wrapper) {
+        Map<String, Object> param = Statements.wrapperParam(wrapper);
+        if (SqlMethod.UPDATE == sqlMethod) {
+            param.put(Constants.ENTITY, null == this.owner ? null : this.owner.entity());
+        }
+        return Statements.update(this.entityClass, Statements.statement(this.entityClass, sqlMethod), param);
+    }
+
+    private boolean delete(Wrapper<T> queryWrapper) {
+        if (null != this.owner) {
+            return this.owner.delete(queryWrapper);
+        }
+        try {
+            return SqlHelper.retBool(Statements.update(this.entityClass, Statements.statement(this.entityClass, SqlMethod.DELETE),
+                    Statements.wrapperParam(queryWrapper)));
+        } finally {
+            QueryCache.invalidate(this.entityClass);
+            ReadWriteRouting.written();
+        }
+    }
+
+    /**
+     * 链的所有者，即创建链的dao：doUpdate/doDelete经由dao自身的update/delete执行
+     * <p>MyBatis-Plus的Model要求类型参数继承Model，链只依赖这里用到的操作，不限制实体类型</p>
+     */
+    interface Owner<T> {
+
+        boolean update(Wrapper<T> updateWrapper);
+
+        boolean delete(Wrapper<T> queryWrapper);
+
+        /**
+         * UPDATE语句的实体参数，其非空字段作为SET
+         */
+        Object entity();
+    }
+}
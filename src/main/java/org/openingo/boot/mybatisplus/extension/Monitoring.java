@@ -0,0 +1,176 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * 一次终端操作的监控：计时、记录SQL形态，完成后通知 {@link ModelXMonitor} 并输出慢查询日志
+ *
+ * @author Qicz
+ */
+@SuppressWarnings("rawtypes")
+final class Monitoring {
+
+    private static final Pattern PARAMETER = Pattern.compile("#\\{[^}]*}");
+
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\?(\\s*,\\s*\\?)+\\)");
+
+    private final Class<?> entityClass;
+
+    private final String terminal;
+
+    private final long start = System.nanoTime();
+
+    private volatile String sql;
+
+    private volatile long rows = -1;
+
+    private Monitoring(Class<?> entityClass, String terminal) {
+        this.entityClass = entityClass;
+        this.terminal = terminal;
+    }
+
+    /**
+     * 执行并监控终端操作，未设置监控且未开启慢查询日志时action收到null
+     * @param entityClass 实体类
+     * @param terminal 终端操作
+     * @param action 终端操作
+     * @param <R> 结果类型
+     */
+    static <R> R run(Class<?> entityClass, String terminal, Function<Monitoring, R> action) {
+        if (ModelXMonitor.NOOP == ModelXConfig.getMonitor() && ModelXConfig.getSlowQueryMillis() <= 0) {
+            return action.apply(null);
+        }
+        Monitoring monitoring = new Monitoring(entityClass, terminal);
+        R result = null;
+        Throwable error = null;
+        try {
+            result = action.apply(monitoring);
+            return result;
+        } catch (RuntimeException | Error e) {
+            error = e;
+            throw e;
+        } finally {
+            monitoring.finish(result, error);
+        }
+    }
+
+    /**
+     * 记录执行的SQL形态，只记录第一条
+     * @param action 操作
+     * @param wrapper 执行的Wrapper
+     */
+    void shape(String action, AbstractWrapper wrapper) {
+        if (null == this.sql) {
+            this.sql = normalize(SqlShapes.sqlOf(action, wrapper));
+        }
+    }
+
+    /**
+     * 记录影响的行数，未记录时根据结果推断
+     * @param monitoring 监控，未开启时为null
+     * @param rows 行数
+     * @return rows
+     */
+    static int rows(Monitoring monitoring, int rows) {
+        if (null != monitoring) {
+            monitoring.rows = rows;
+        }
+        return rows;
+    }
+
+    /**
+     * 记录影响的行数
+     * @param monitoring 监控，未开启时为null
+     * @param rows 行数
+     * @return rows
+     */
+    static long rows(Monitoring monitoring, long rows) {
+        if (null != monitoring) {
+            monitoring.rows = rows;
+        }
+        return rows;
+    }
+
+    private void finish(Object result, Throwable error) {
+        long elapsed = System.nanoTime() - this.start;
+        long rows = this.rows >= 0 ? this.rows : rowsOf(result);
+        ModelXMonitor.Execution execution = new ModelXMonitor.Execution(this.entityClass, this.terminal, this.sql, elapsed, rows, error);
+        long slowQueryMillis = ModelXConfig.getSlowQueryMillis();
+        if (slowQueryMillis > 0 && elapsed >= TimeUnit.MILLISECONDS.toNanos(slowQueryMillis)) {
+            log().warn("Slow " + this.terminal + " on " + this.entityClass.getName() + ": "
+                    + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms, rows=" + rows + ", sql=" + this.sql);
+        }
+        try {
+            ModelXConfig.getMonitor().onExecution(execution);
+        } catch (RuntimeException e) {
+            log().warn("ModelXMonitor failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 日志使用MyBatis当前的日志实现(Configuration.setLogImpl可能晚于本类加载)，只在慢查询及监控失败时获取
+     */
+    private static Log log() {
+        return LogFactory.getLog(ModelXMonitor.class);
+    }
+
+    private static long rowsOf(Object result) {
+        if (null == result) {
+            return 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result.getClass().isArray()) {
+            return Array.getLength(result);
+        }
+        if (result instanceof ModelX) {
+            return 1;
+        }
+        return -1;
+    }
+
+    /**
+     * 参数替换为?，IN列表折叠为(?...)
+     */
+    static String normalize(String sql) {
+        String normalized = PARAMETER.matcher(sql).replaceAll("?");
+        return IN_LIST.matcher(normalized).replaceAll("(?...)");
+    }
+}
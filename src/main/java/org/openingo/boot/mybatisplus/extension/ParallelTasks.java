@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 并行执行一组查询
+ * <p>任务提交到 {@link ModelXConfig#getAsyncExecutor()}，调用线程同时认领尚未开始的任务自己执行，
+ * 即使在异步线程中嵌套调用、线程池已满也不会互相等待而死锁。
+ * 每个任务都在调用线程的读写路由上下文中执行。
+ * 当前线程处于Spring事务中时顺序执行，保证读取到事务内的数据</p>
+ *
+ * @author Qicz
+ */
+final class ParallelTasks {
+
+    private ParallelTasks() {
+    }
+
+    /**
+     * 执行所有任务，结果与任务的顺序一致
+     * @param tasks 任务
+     * @param <R> 结果类型
+     */
+    static <R> List<R> invokeAll(List<Supplier<R>> tasks) {
+        int size = tasks.size();
+        List<R> results = new ArrayList<>(size);
+        if (size <= 1 || TransactionSynchronizationManager.isActualTransactionActive()) {
+            for (Supplier<R> task : tasks) {
+                results.add(task.get());
+            }
+            return results;
+        }
+        List<Task<R>> claimable = new ArrayList<>(size);
+        Executor executor = ModelXConfig.getAsyncExecutor();
+        ReadWriteRouting.Context routing = ReadWriteRouting.capture();
+        for (Supplier<R> supplier : tasks) {
+            Task<R> task = new Task<>(routing.wrap(supplier));
+            claimable.add(task);
+            // 第一个任务由调用线程执行
+            if (claimable.size() > 1) {
+                try {
+                    executor.execute(task::run);
+                } catch (RejectedExecutionException ignored) {
+                    // 由调用线程认领
+                }
+            }
+        }
+        for (Task<R> task : claimable) {
+            task.run();
+        }
+        for (Task<R> task : claimable) {
+            results.add(join(task.result));
+        }
+        return results;
+    }
+
+    private static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ExceptionUtils.mpe(cause);
+        }
+    }
+
+    /**
+     * 只执行一次的任务，由线程池或调用线程认领
+     */
+    private static final class Task<R> {
+
+        private final Supplier<R> supplier;
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private final CompletableFuture<R> result = new CompletableFuture<>();
+
+        Task(Supplier<R> supplier) {
+            this.supplier = supplier;
+        }
+
+        void run() {
+            if (!this.claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                this.result.complete(this.supplier.get());
+            } catch (Throwable e) {
+                this.result.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.enums.SqlMethod;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * 单列投影及逐行读取，不构建List
+ * <p>执行由MyBatis-Plus注入的SELECT_OBJS、SELECT_LIST语句派生的语句，经ResultHandler逐行消费；
+ * 参与Spring事务，Executor、StatementHandler等插件(如多租户、数据权限插件)及TypeHandler照常生效</p>
+ *
+ * @author Qicz
+ */
+final class Projections {
+
+    private Projections() {
+    }
+
+    /**
+     * 读取第一列，NULL值跳过
+     * @param entityClass 实体类
+     * @param wrapper 条件，只select一列
+     */
+    static <T> long[] longs(Class<T> entityClass, Wrapper<T> wrapper) {
+        LongStream.Builder values = LongStream.builder();
+        each(entityClass, wrapper, Long.class, values::add);
+        return values.build().toArray();
+    }
+
+    /**
+     * 读取第一列，NULL值跳过
+     * @param entityClass 实体类
+     * @param wrapper 条件，只select一列
+     */
+    static <T> int[] ints(Class<T> entityClass, Wrapper<T> wrapper) {
+        IntStream.Builder values = IntStream.builder();
+        each(entityClass, wrapper, Integer.class, values::add);
+        return values.build().toArray();
+    }
+
+    /**
+     * 读取第一列，NULL值跳过
+     * @param entityClass 实体类
+     * @param wrapper 条件，只select一列
+     */
+    static <T> String[] strings(Class<T> entityClass, Wrapper<T> wrapper) {
+        Stream.Builder<String> values = Stream.builder();
+        each(entityClass, wrapper, String.class, values::add);
+        return values.build().toArray(String[]::new);
+    }
+
+    /**
+     * 以SELECT_OBJS派生的语句逐行读取第一列，值由type对应的TypeHandler转换，NULL值跳过
+     * @param entityClass 实体类
+     * @param wrapper 条件，只select一列
+     * @param type 值类型
+     * @param consumer 消费每个非NULL值
+     */
+    static <T, V> void each(Class<T> entityClass, Wrapper<T> wrapper, Class<V> type, Consumer<V> consumer) {
+        Configuration configuration = Statements.configuration(entityClass);
+        String id = Statements.statement(entityClass, SqlMethod.SELECT_OBJS);
+        String suffix = "projection" + type.getSimpleName();
+        MappedStatement statement = Statements.derive(configuration, id, suffix, null, builder -> builder.resultMaps(
+                Collections.singletonList(new ResultMap.Builder(configuration, id + "$" + suffix + "-Inline", type,
+                        new ArrayList<>()).build())));
+        Statements.execute(configuration, ExecutorType.SIMPLE, executor -> executor.query(statement,
+                Statements.wrapperParam(wrapper), RowBounds.DEFAULT, context -> {
+                    Object value = context.getResultObject();
+                    if (null != value) {
+                        consumer.accept(type.cast(value));
+                    }
+                }));
+    }
+
+    /**
+     * 以SELECT_LIST派生的语句逐行读取实体，列值由实体的ResultMap(TypeHandler、枚举等)转换，不构建List
+     * @param entityClass 实体类
+     * @param wrapper 条件
+     * @param fetchSize JDBC fetchSize，null时使用驱动默认值
+     * @param consumer 消费每一行
+     */
+    @SuppressWarnings("unchecked")
+    static <T> void rows(Class<T> entityClass, Wrapper<T> wrapper, Integer fetchSize, Consumer<T> consumer) {
+        Configuration configuration = Statements.configuration(entityClass);
+        MappedStatement statement = Statements.derive(configuration, Statements.statement(entityClass, SqlMethod.SELECT_LIST),
+                "rows" + (null == fetchSize ? "" : Integer.MIN_VALUE == fetchSize ? "Streaming" : String.valueOf(fetchSize)),
+                null, builder -> {
+                    builder.resultSetType(ResultSetType.FORWARD_ONLY);
+                    if (null != fetchSize) {
+                        builder.fetchSize(fetchSize);
+                    }
+                });
+        Statements.execute(configuration, ExecutorType.SIMPLE, executor -> executor.query(statement,
+                Statements.wrapperParam(wrapper), RowBounds.DEFAULT, context -> consumer.accept((T) context.getResultObject())));
+    }
+}
@@ -0,0 +1,470 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 进程内查询结果缓存
+ * <p>以规范化SQL及参数为key，容量有界，按key的hash分段加锁，淘汰时按TinyLFU频率决定是否接纳新条目；
+ * 同一张表发生写操作时，该表的所有缓存条目失效（按表的版本号判断，O(1)），Spring事务中的写操作在提交后失效。
+ * Spring事务中及读己之写窗口内的查询不使用缓存；使用 {@link ReadWriteDataSource} 时，
+ * 表发生写操作后读己之写窗口内开始的查询可能读到未复制的从库，结果不放入缓存</p>
+ *
+ * @author Qicz
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public final class QueryCache {
+
+    private QueryCache() {
+    }
+
+    private static final Map<String, Version> TABLE_VERSIONS = new ConcurrentHashMap<>();
+
+    /**
+     * 分段数，2的幂
+     */
+    private static final int SEGMENTS = 16;
+
+    private static final Segment[] SEGMENT_TABLE = new Segment[SEGMENTS];
+
+    static {
+        for (int i = 0; i < SEGMENTS; i++) {
+            SEGMENT_TABLE[i] = new Segment();
+        }
+    }
+
+    private static final LongAdder HITS = new LongAdder();
+
+    private static final LongAdder MISSES = new LongAdder();
+
+    private static final LongAdder EVICTIONS = new LongAdder();
+
+    private static final LongAdder REJECTIONS = new LongAdder();
+
+    /**
+     * 生成缓存key，实体条件(by)无法可靠比较，返回null表示不缓存
+     * @param entityClass 实体类
+     * @param action 操作
+     * @param wrapper 执行的Wrapper
+     * @param extras 不在Wrapper中的查询参数，如limit/offset
+     */
+    static Key key(Class<?> entityClass, String action, AbstractWrapper wrapper, Object... extras) {
+        if (null != wrapper.getEntity()) {
+            return null;
+        }
+        Map<String, Object> params = new HashMap<String, Object>(wrapper.getParamNameValuePairs());
+        if (extras.length > 0) {
+            params.put("$extras", Arrays.asList(extras));
+        }
+        return new Key(entityClass, SqlShapes.sqlOf(action, wrapper), params);
+    }
+
+    /**
+     * 查询，优先使用缓存
+     * @param key 缓存key
+     * @param ttlMillis 有效期(毫秒)
+     * @param loader 缓存未命中时的查询
+     */
+    static <R> R get(Key key, long ttlMillis, Supplier<R> loader) {
+        Version version = version(key.entityClass);
+        long now = System.currentTimeMillis();
+        Segment segment = segment(key);
+        synchronized (segment) {
+            segment.sketch.increment(key.hashCode());
+            Entry entry = segment.entries.get(key);
+            if (null != entry) {
+                if (entry.expireAt > now && entry.version == version.value.get()) {
+                    HITS.increment();
+                    return copy((R) entry.value);
+                }
+                segment.entries.remove(key);
+            }
+        }
+        MISSES.increment();
+        // 查询前读取版本号及时间
+        long loadVersion = version.value.get();
+        long loadStart = System.nanoTime();
+        R value = loader.get();
+        if (version.isStale(loadVersion, loadStart)) {
+            return value;
+        }
+        put(segment, key, new Entry(copy(value), now + ttlMillis, loadVersion));
+        return value;
+    }
+
+    /**
+     * 使实体对应表的所有缓存失效
+     * @param entityClass 实体类
+     */
+    static void invalidate(Class<?> entityClass) {
+        TableInfo tableInfo = TableInfoHelper.getTableInfo(entityClass);
+        if (null != tableInfo) {
+            invalidate(tableInfo.getTableName());
+        }
+    }
+
+    /**
+     * 使指定表的所有缓存失效，用于ModelX之外的写操作；在Spring事务中调用时，事务提交后才失效
+     * @param tableName 表名
+     */
+    public static void invalidate(String tableName) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump(tableName);
+            return;
+        }
+        // 提交前其他线程读到的仍是已提交的数据，提交后失效；回滚时不需要失效
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(PendingInvalidation.class);
+        if (null == pending) {
+            PendingInvalidation synchronization = new PendingInvalidation();
+            TransactionSynchronizationManager.bindResource(PendingInvalidation.class, synchronization.tables);
+            TransactionSynchronizationManager.registerSynchronization(synchronization);
+            pending = synchronization.tables;
+        }
+        pending.add(tableName);
+    }
+
+    private static void bump(String tableName) {
+        // 尚未缓存过的表同样记录写操作时间，之后窗口内的查询结果不放入缓存
+        Version version = TABLE_VERSIONS.computeIfAbsent(tableName, table -> new Version());
+        version.writtenAt = System.nanoTime();
+        version.value.incrementAndGet();
+    }
+
+    /**
+     * 清空缓存及统计
+     */
+    public static void clear() {
+        for (Segment segment : SEGMENT_TABLE) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.sketch.clear();
+            }
+        }
+        HITS.reset();
+        MISSES.reset();
+        EVICTIONS.reset();
+        REJECTIONS.reset();
+    }
+
+    /**
+     * 缓存统计
+     */
+    public static Stats stats() {
+        int size = 0;
+        for (Segment segment : SEGMENT_TABLE) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return new Stats(HITS.sum(), MISSES.sum(), EVICTIONS.sum(), REJECTIONS.sum(), size);
+    }
+
+    private static Version version(Class<?> entityClass) {
+        return TABLE_VERSIONS.computeIfAbsent(Statements.tableInfo(entityClass).getTableName(), table -> new Version());
+    }
+
+    private static Segment segment(Key key) {
+        int hash = key.hashCode();
+        return SEGMENT_TABLE[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static void put(Segment segment, Key key, Entry entry) {
+        // 容量按段均分
+        int maximumSize = Math.max(1, ModelXConfig.getQueryCacheSize() / SEGMENTS);
+        synchronized (segment) {
+            if (!segment.entries.containsKey(key) && segment.entries.size() >= maximumSize) {
+                Iterator<Map.Entry<Key, Entry>> eldest = segment.entries.entrySet().iterator();
+                Key victim = eldest.next().getKey();
+                // TinyLFU：新条目的访问频率不高于被淘汰者时不接纳
+                if (segment.sketch.frequency(key.hashCode()) <= segment.sketch.frequency(victim.hashCode())) {
+                    REJECTIONS.increment();
+                    return;
+                }
+                eldest.remove();
+                EVICTIONS.increment();
+            }
+            segment.entries.put(key, entry);
+        }
+    }
+
+    /**
+     * 复制结果的容器，实体本身共享；ColumnarBatch复制各列的数组
+     * @param value 结果
+     */
+    static <R> R copy(R value) {
+        if (value instanceof List) {
+            return (R) new ArrayList<>((List) value);
+        }
+        if (value instanceof long[]) {
+            return (R) ((long[]) value).clone();
+        }
+        if (value instanceof int[]) {
+            return (R) ((int[]) value).clone();
+        }
+        if (value instanceof Object[]) {
+            return (R) ((Object[]) value).clone();
+        }
+        if (value instanceof ColumnarBatch) {
+            return (R) ((ColumnarBatch) value).copy();
+        }
+        return value;
+    }
+
+    /**
+     * 缓存key：实体类 + 规范化SQL + 参数
+     */
+    static final class Key {
+
+        private final Class<?> entityClass;
+
+        private final String sql;
+
+        private final Map<String, Object> params;
+
+        private final int hash;
+
+        Key(Class<?> entityClass, String sql, Map<String, Object> params) {
+            this.entityClass = entityClass;
+            this.sql = sql;
+            this.params = params;
+            this.hash = Objects.hash(entityClass, sql, params);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash && entityClass == key.entityClass && sql.equals(key.sql) && params.equals(key.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 一段缓存条目及其访问频率，按LRU顺序淘汰，读写都持有该段的锁
+     */
+    private static final class Segment {
+
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+        private final FrequencySketch sketch = new FrequencySketch();
+    }
+
+    /**
+     * 事务中待失效的表，提交后失效
+     */
+    private static final class PendingInvalidation extends TransactionSynchronizationAdapter {
+
+        private final Set<String> tables = new LinkedHashSet<>();
+
+        @Override
+        public void afterCommit() {
+            this.tables.forEach(QueryCache::bump);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(PendingInvalidation.class);
+        }
+    }
+
+    /**
+     * 表的版本号及最后一次写操作(提交)的时间
+     */
+    private static final class Version {
+
+        private final AtomicLong value = new AtomicLong();
+
+        /**
+         * 最后一次写操作的时间(nanoTime)，版本号为0时没有写操作；先于版本号更新
+         */
+        private volatile long writtenAt;
+
+        /**
+         * 查询结果是否不能放入缓存：查询期间发生了写操作，
+         * 或查询开始于写操作后的读己之写窗口内，从库可能尚未复制该写操作
+         * @param loadVersion 查询前的版本号
+         * @param loadStart 查询开始的时间(nanoTime)
+         */
+        boolean isStale(long loadVersion, long loadStart) {
+            long current = this.value.get();
+            if (current != loadVersion) {
+                return true;
+            }
+            long window = ReadWriteRouting.window();
+            return current != 0 && window > 0 && loadStart - this.writtenAt < window;
+        }
+    }
+
+    private static final class Entry {
+
+        private final Object value;
+
+        private final long expireAt;
+
+        private final long version;
+
+        Entry(Object value, long expireAt, long version) {
+            this.value = value;
+            this.expireAt = expireAt;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Count-Min Sketch，4位计数器，每4行取最小值；计数总量达到阈值后减半，使频率随时间衰减
+     */
+    private static final class FrequencySketch {
+
+        private static final int WIDTH = 1 << 10;
+
+        private static final int DEPTH = 4;
+
+        private static final int[] SEEDS = {0x97cb3127, 0xb1a91cc3, 0x6b7d3c3d, 0x4f1bbcdd};
+
+        private final byte[] table = new byte[WIDTH * DEPTH];
+
+        private int additions;
+
+        void increment(int hash) {
+            for (int i = 0; i < DEPTH; i++) {
+                int index = index(hash, i);
+                if (table[index] < 15) {
+                    table[index]++;
+                }
+            }
+            if (++additions >= WIDTH * 10) {
+                this.halve();
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < DEPTH; i++) {
+                frequency = Math.min(frequency, table[index(hash, i)]);
+            }
+            return frequency;
+        }
+
+        void clear() {
+            Arrays.fill(table, (byte) 0);
+            additions = 0;
+        }
+
+        private void halve() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (byte) (table[i] >>> 1);
+            }
+            additions >>>= 1;
+        }
+
+        private static int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+            h ^= h >>> 16;
+            return row * WIDTH + (h & (WIDTH - 1));
+        }
+    }
+
+    /**
+     * 缓存统计快照
+     */
+    public static final class Stats {
+
+        private final long hits;
+
+        private final long misses;
+
+        private final long evictions;
+
+        private final long rejections;
+
+        private final int size;
+
+        Stats(long hits, long misses, long evictions, long rejections, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.rejections = rejections;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * TinyLFU未接纳的条目数
+         */
+        public long getRejections() {
+            return rejections;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0D : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                    + ", rejections=" + rejections + ", size=" + size + ", hitRatio=" + getHitRatio() + "}";
+        }
+    }
+}
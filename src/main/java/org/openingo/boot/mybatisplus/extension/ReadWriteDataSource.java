@@ -0,0 +1,184 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 读写分离的DataSource
+ * <p>ModelX的读终端操作(doQuery、doQueryOne、doQueryLimitOne、doQueryLimit、doCount、doExists、doQueryParallel)轮询使用可用的从库，
+ * 其他操作、Spring事务中的操作、以及当前线程写操作后 {@link #setReadYourWritesWindow(Duration) 读己之写窗口} 内的读操作使用主库。
+ * 获取连接失败的从库在 {@link #setRetryInterval(Duration) 重试间隔} 内不再使用，所有从库不可用时读操作回落到主库</p>
+ * <p>作为MyBatis-Plus使用的DataSource注册即可，如 {@code new ReadWriteDataSource(primary, replica1, replica2)}</p>
+ *
+ * @author Qicz
+ */
+public class ReadWriteDataSource extends AbstractDataSource {
+
+    private static final Log LOG = LogFactory.getLog(ReadWriteDataSource.class);
+
+    private final DataSource primary;
+
+    private final Replica[] replicas;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private volatile long readYourWritesNanos = TimeUnit.SECONDS.toNanos(1);
+
+    private volatile long retryNanos = TimeUnit.SECONDS.toNanos(30);
+
+    public ReadWriteDataSource(DataSource primary, DataSource... replicas) {
+        this(primary, Arrays.asList(replicas));
+    }
+
+    public ReadWriteDataSource(DataSource primary, List<DataSource> replicas) {
+        if (null == primary) {
+            throw new IllegalArgumentException("primary must not be null");
+        }
+        this.primary = primary;
+        this.replicas = new Replica[replicas.size()];
+        for (int i = 0; i < this.replicas.length; i++) {
+            this.replicas[i] = new Replica(replicas.get(i));
+        }
+        ReadWriteRouting.enable(this.readYourWritesNanos);
+    }
+
+    /**
+     * 设置读己之写窗口：当前线程写操作后该时间内的读操作使用主库，应大于从库的复制延迟
+     * @param window 窗口，默认1秒，Duration.ZERO不使用主库
+     */
+    public void setReadYourWritesWindow(Duration window) {
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("window must not be negative");
+        }
+        this.readYourWritesNanos = window.toNanos();
+        ReadWriteRouting.enable(this.readYourWritesNanos);
+    }
+
+    /**
+     * 设置不可用从库的重试间隔
+     * @param retryInterval 间隔，默认30秒
+     */
+    public void setRetryInterval(Duration retryInterval) {
+        if (retryInterval.isNegative()) {
+            throw new IllegalArgumentException("retryInterval must not be negative");
+        }
+        this.retryNanos = retryInterval.toNanos();
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    /**
+     * 当前可用的从库
+     */
+    public List<DataSource> getAvailableReplicas() {
+        long now = System.nanoTime();
+        List<DataSource> available = new ArrayList<>(this.replicas.length);
+        for (Replica replica : this.replicas) {
+            if (replica.isAvailable(now)) {
+                available.add(replica.dataSource);
+            }
+        }
+        return Collections.unmodifiableList(available);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return this.connection(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return this.connection(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection connection(ConnectionFactory factory) throws SQLException {
+        int count = this.replicas.length;
+        if (count == 0 || !ReadWriteRouting.isReplicaAllowed(this.readYourWritesNanos)) {
+            return factory.get(this.primary);
+        }
+        int start = Math.floorMod(this.next.getAndIncrement(), count);
+        long now = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Replica replica = this.replicas[(start + i) % count];
+            if (!replica.isAvailable(now)) {
+                continue;
+            }
+            try {
+                Connection connection = factory.get(replica.dataSource);
+                replica.retryAt = 0;
+                return connection;
+            } catch (SQLException e) {
+                replica.retryAt = now + this.retryNanos;
+                LOG.warn("Replica " + replica.dataSource + " is unavailable, retry in "
+                        + TimeUnit.NANOSECONDS.toMillis(this.retryNanos) + " ms: " + e.getMessage());
+            }
+        }
+        return factory.get(this.primary);
+    }
+
+    @FunctionalInterface
+    private interface ConnectionFactory {
+
+        Connection get(DataSource dataSource) throws SQLException;
+    }
+
+    private static final class Replica {
+
+        private final DataSource dataSource;
+
+        /**
+         * 不可用时下次重试的时间(nanoTime)，0表示可用
+         */
+        private volatile long retryAt;
+
+        Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        boolean isAvailable(long now) {
+            long retryAt = this.retryAt;
+            return retryAt == 0 || now - retryAt >= 0;
+        }
+    }
+}
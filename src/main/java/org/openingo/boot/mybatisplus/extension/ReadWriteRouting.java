@@ -0,0 +1,249 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 读写路由的线程上下文
+ * <p>读终端操作执行期间标记为读，{@link ReadWriteDataSource} 据此选择从库；
+ * 同时记录当前线程最后一次写操作的时间，用于读己之写(read-your-writes)窗口。
+ * 提交到其他线程的任务通过 {@link #capture()} 携带提交时的上下文，任务中的写操作对提交线程同样可见</p>
+ *
+ * @author Qicz
+ */
+final class ReadWriteRouting {
+
+    private ReadWriteRouting() {
+    }
+
+    /**
+     * 没有写操作
+     */
+    private static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * 未启用路由时的上下文，不改变线程状态
+     */
+    private static final Context DISABLED = new Context(false, null);
+
+    /**
+     * 是否存在 {@link ReadWriteDataSource}，没有时不维护线程上下文
+     */
+    private static volatile boolean enabled;
+
+    /**
+     * 读己之写窗口(纳秒)，多个 {@link ReadWriteDataSource} 时以最后设置的为准
+     */
+    private static volatile long windowNanos;
+
+    private static final ThreadLocal<Boolean> READING = new ThreadLocal<>();
+
+    /**
+     * 最后一次写操作的时间，由提交线程与其任务共享
+     */
+    private static final ThreadLocal<AtomicLong> LAST_WRITE = new ThreadLocal<>();
+
+    /**
+     * 启用路由
+     * @param readYourWritesNanos 读己之写窗口(纳秒)
+     */
+    static void enable(long readYourWritesNanos) {
+        windowNanos = readYourWritesNanos;
+        enabled = true;
+    }
+
+    /**
+     * 读己之写窗口(纳秒)，即假定的从库复制延迟；未启用路由时为0
+     */
+    static long window() {
+        return enabled ? windowNanos : 0L;
+    }
+
+    /**
+     * 以读的方式执行
+     * @param action 读操作
+     * @param <R> 结果类型
+     */
+    static <R> R read(Supplier<R> action) {
+        if (!enabled || Boolean.TRUE.equals(READING.get())) {
+            return action.get();
+        }
+        READING.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            READING.remove();
+        }
+    }
+
+    /**
+     * 记录当前线程的一次写操作
+     */
+    static void written() {
+        if (enabled) {
+            lastWrite().set(System.nanoTime());
+        }
+    }
+
+    /**
+     * 获取当前线程的上下文，用于在其他线程中执行任务
+     */
+    static Context capture() {
+        if (!enabled) {
+            return DISABLED;
+        }
+        return new Context(Boolean.TRUE.equals(READING.get()), lastWrite());
+    }
+
+    /**
+     * 两个上下文中最后一次写操作较晚的一个，用于合并多个线程提交的同一批任务
+     * @param one 上下文，可以为null
+     * @param other 上下文
+     */
+    static Context latest(Context one, Context other) {
+        if (null == one || null == one.lastWrite) {
+            return other;
+        }
+        if (null == other.lastWrite) {
+            return one;
+        }
+        long a = one.lastWrite.get();
+        long b = other.lastWrite.get();
+        if (NONE == a) {
+            return other;
+        }
+        return NONE == b || a - b >= 0 ? one : other;
+    }
+
+    /**
+     * 当前获取的连接是否可以使用从库：读操作、不在Spring事务中、且不在最近一次写操作后的窗口内
+     * @param readYourWritesNanos 读己之写窗口(纳秒)
+     */
+    static boolean isReplicaAllowed(long readYourWritesNanos) {
+        if (!Boolean.TRUE.equals(READING.get()) || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return false;
+        }
+        AtomicLong holder = LAST_WRITE.get();
+        long lastWrite = null == holder ? NONE : holder.get();
+        if (NONE == lastWrite) {
+            return true;
+        }
+        if (System.nanoTime() - lastWrite < readYourWritesNanos) {
+            return false;
+        }
+        holder.compareAndSet(lastWrite, NONE);
+        return true;
+    }
+
+    /**
+     * 当前线程是否在最近一次写操作后的读己之写窗口内，窗口内的读操作使用主库
+     */
+    static boolean isWithinReadYourWrites() {
+        if (!enabled) {
+            return false;
+        }
+        AtomicLong holder = LAST_WRITE.get();
+        long lastWrite = null == holder ? NONE : holder.get();
+        return NONE != lastWrite && System.nanoTime() - lastWrite < windowNanos;
+    }
+
+    private static AtomicLong lastWrite() {
+        AtomicLong holder = LAST_WRITE.get();
+        if (null == holder) {
+            holder = new AtomicLong(NONE);
+            LAST_WRITE.set(holder);
+        }
+        return holder;
+    }
+
+    /**
+     * 提交任务时捕获的路由上下文，在执行线程中恢复，执行完成后还原执行线程原有的上下文
+     */
+    static final class Context {
+
+        private final boolean reading;
+
+        private final AtomicLong lastWrite;
+
+        private Context(boolean reading, AtomicLong lastWrite) {
+            this.reading = reading;
+            this.lastWrite = lastWrite;
+        }
+
+        /**
+         * 在此上下文中执行
+         * @param action 操作
+         * @param <R> 结果类型
+         */
+        <R> R call(Supplier<R> action) {
+            if (this == DISABLED) {
+                return action.get();
+            }
+            Boolean reading = READING.get();
+            AtomicLong lastWrite = LAST_WRITE.get();
+            set(READING, this.reading ? Boolean.TRUE : null);
+            set(LAST_WRITE, this.lastWrite);
+            try {
+                return action.get();
+            } finally {
+                set(READING, reading);
+                set(LAST_WRITE, lastWrite);
+            }
+        }
+
+        /**
+         * 在此上下文中执行
+         * @param action 操作
+         */
+        void run(Runnable action) {
+            this.call(() -> {
+                action.run();
+                return null;
+            });
+        }
+
+        /**
+         * 包装为在此上下文中执行的Supplier
+         */
+        <R> Supplier<R> wrap(Supplier<R> action) {
+            return this == DISABLED ? action : () -> this.call(action);
+        }
+
+        private static <V> void set(ThreadLocal<V> local, V value) {
+            if (null == value) {
+                local.remove();
+            } else {
+                local.set(value);
+            }
+        }
+    }
+}
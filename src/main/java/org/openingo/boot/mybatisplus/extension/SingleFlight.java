@@ -0,0 +1,146 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 相同查询的合并执行(single-flight)
+ * <p>同一时刻key相同(实体类 + 规范化SQL + 参数)的查询只有第一个到达的线程访问数据库，
+ * 其他线程等待并共享它的结果或异常</p>
+ *
+ * @author Qicz
+ */
+public final class SingleFlight {
+
+    private SingleFlight() {
+    }
+
+    private static final ConcurrentHashMap<QueryCache.Key, CompletableFuture<Object>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private static final LongAdder EXECUTIONS = new LongAdder();
+
+    private static final LongAdder COLLAPSED = new LongAdder();
+
+    /**
+     * 执行查询，相同key的查询正在执行时等待其结果
+     * @param key 查询key
+     * @param loader 查询
+     * @param <R> 结果类型
+     */
+    @SuppressWarnings("unchecked")
+    static <R> R execute(QueryCache.Key key, Supplier<R> loader) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> leader = IN_FLIGHT.putIfAbsent(key, flight);
+        if (null != leader) {
+            COLLAPSED.increment();
+            return QueryCache.copy((R) join(leader));
+        }
+        EXECUTIONS.increment();
+        try {
+            R value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (Throwable e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            IN_FLIGHT.remove(key, flight);
+        }
+    }
+
+    private static Object join(CompletableFuture<Object> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ExceptionUtils.mpe(cause);
+        }
+    }
+
+    /**
+     * 合并执行的统计
+     */
+    public static Stats stats() {
+        return new Stats(EXECUTIONS.sum(), COLLAPSED.sum());
+    }
+
+    /**
+     * 清空统计
+     */
+    public static void reset() {
+        EXECUTIONS.reset();
+        COLLAPSED.reset();
+    }
+
+    /**
+     * 合并执行的统计快照
+     */
+    public static final class Stats {
+
+        private final long executions;
+
+        private final long collapsed;
+
+        Stats(long executions, long collapsed) {
+            this.executions = executions;
+            this.collapsed = collapsed;
+        }
+
+        /**
+         * 实际访问数据库的次数
+         */
+        public long getExecutions() {
+            return executions;
+        }
+
+        /**
+         * 被合并、等待共享结果的次数
+         */
+        public long getCollapsed() {
+            return collapsed;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{executions=" + executions + ", collapsed=" + collapsed + "}";
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.Query;
+import com.baomidou.mybatisplus.core.conditions.update.Update;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQL形态
+ * <p>规范化模式下，IN列表按桶补齐，使同一条链的SQL文本保持稳定；
+ * 同时统计每种SQL形态的执行次数及IN列表的补齐情况。SQL形态越少，驱动预编译语句缓存的命中率越高，
+ * 实际的命中率以驱动或连接池的统计为准</p>
+ *
+ * @author Qicz
+ */
+@SuppressWarnings("rawtypes")
+public final class SqlShapes {
+
+    private SqlShapes() {
+    }
+
+    /**
+     * 最多跟踪的SQL形态数量，超过后新的形态只计入overflow
+     */
+    private static final int MAX_TRACKED_SHAPES = 4096;
+
+    private static final ConcurrentHashMap<String, Shape> SHAPES = new ConcurrentHashMap<>();
+
+    private static final LongAdder OVERFLOW = new LongAdder();
+
+    private static final LongAdder PADDED_LISTS = new LongAdder();
+
+    private static final LongAdder PADDED_VALUES = new LongAdder();
+
+    /**
+     * IN列表按桶补齐(8/16/32/...)，用最后一个元素填充，不改变IN的语义
+     * @param coll 数据集合
+     * @return 补齐后的集合，超过最大桶或为empty时原样返回
+     */
+    static Collection<?> pad(Collection<?> coll) {
+        int size = null == coll ? 0 : coll.size();
+        if (size == 0 || size > ModelXConfig.getInListMaxBucket()) {
+            return coll;
+        }
+        int bucket = Math.max(ModelXConfig.getInListMinBucket(), Integer.highestOneBit(size - 1) << 1);
+        if (bucket == size) {
+            return coll;
+        }
+        List<Object> padded = new ArrayList<>(bucket);
+        padded.addAll(coll);
+        Object last = padded.get(size - 1);
+        for (int i = size; i < bucket; i++) {
+            padded.add(last);
+        }
+        PADDED_LISTS.increment();
+        PADDED_VALUES.add(bucket - size);
+        return padded;
+    }
+
+    /**
+     * 记录一次执行的SQL形态
+     * @param entityClass 实体类
+     * @param action 操作
+     * @param wrapper 执行的Wrapper
+     */
+    static void record(Class<?> entityClass, String action, AbstractWrapper wrapper) {
+        String sql = sqlOf(action, wrapper);
+        String key = entityClass.getName() + '#' + sql;
+        Shape shape = SHAPES.get(key);
+        if (null == shape) {
+            if (SHAPES.size() >= MAX_TRACKED_SHAPES) {
+                OVERFLOW.increment();
+                return;
+            }
+            shape = SHAPES.computeIfAbsent(key, k -> new Shape(entityClass.getName(), sql));
+        }
+        shape.executions.increment();
+    }
+
+    /**
+     * Wrapper对应的规范化SQL文本（不含表名和实体条件）
+     * @param action 操作
+     * @param wrapper Wrapper
+     */
+    static String sqlOf(String action, AbstractWrapper wrapper) {
+        StringBuilder sql = new StringBuilder(action);
+        if (wrapper instanceof Query) {
+            String select = ((Query) wrapper).getSqlSelect();
+            sql.append(' ').append(null == select ? "*" : select);
+        } else if (wrapper instanceof Update) {
+            String set = ((Update) wrapper).getSqlSet();
+            if (null != set) {
+                sql.append(" SET ").append(set);
+            }
+        }
+        return sql.append(' ').append(wrapper.getCustomSqlSegment()).toString();
+    }
+
+    /**
+     * 当前所有SQL形态的统计快照
+     */
+    public static List<Shape> snapshot() {
+        return new ArrayList<>(SHAPES.values());
+    }
+
+    /**
+     * 超出跟踪上限而未统计的执行次数
+     */
+    public static long overflow() {
+        return OVERFLOW.sum();
+    }
+
+    /**
+     * 补齐过的IN列表数量
+     */
+    public static long paddedLists() {
+        return PADDED_LISTS.sum();
+    }
+
+    /**
+     * 补齐时追加的值的总数
+     */
+    public static long paddedValues() {
+        return PADDED_VALUES.sum();
+    }
+
+    /**
+     * 清空统计
+     */
+    public static void reset() {
+        SHAPES.clear();
+        OVERFLOW.reset();
+        PADDED_LISTS.reset();
+        PADDED_VALUES.reset();
+    }
+
+    /**
+     * 单个SQL形态的统计
+     */
+    public static final class Shape {
+
+        private final String entity;
+
+        private final String sql;
+
+        private final LongAdder executions = new LongAdder();
+
+        Shape(String entity, String sql) {
+            this.entity = entity;
+            this.sql = sql;
+        }
+
+        public String getEntity() {
+            return entity;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "Shape{entity=" + entity + ", sql=" + sql + ", executions=" + getExecutions() + "}";
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.enums.SqlMethod;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+import com.baomidou.mybatisplus.core.toolkit.GlobalConfigUtils;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
+import org.apache.ibatis.exceptions.ExceptionFactory;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.reflection.property.PropertyNamer;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.transaction.Transaction;
+import org.mybatis.spring.SqlSessionUtils;
+
+import java.lang.invoke.SerializedLambda;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * MappedStatement及SqlSession工具
+ * <p>基于MyBatis-Plus注入的语句派生出不同执行参数(fetchSize等)的语句，派生语句按Configuration及id缓存在本类中，
+ * 不写入Configuration</p>
+ *
+ * @author Qicz
+ */
+final class Statements {
+
+    private Statements() {
+    }
+
+    private static final Map<Configuration, Map<String, MappedStatement>> DERIVED = new ConcurrentHashMap<>();
+
+    /**
+     * lambda类对应的属性名
+     */
+    private static final Map<Class<?>, String> PROPERTIES = new ConcurrentHashMap<>();
+
+    /**
+     * 获取实体的表信息
+     * @param entityClass 实体类
+     */
+    static TableInfo tableInfo(Class<?> entityClass) {
+        TableInfo tableInfo = TableInfoHelper.getTableInfo(entityClass);
+        if (null == tableInfo) {
+            throw ExceptionUtils.mpe("%s is not a table entity, no TableInfo found", entityClass.getName());
+        }
+        return tableInfo;
+    }
+
+    /**
+     * 获取实体的主键值
+     * @param entity 实体
+     */
+    static Object keyValue(Object entity) {
+        TableInfo tableInfo = tableInfo(entity.getClass());
+        if (null == tableInfo.getKeyProperty()) {
+            throw ExceptionUtils.mpe("%s has no @TableId", entity.getClass().getName());
+        }
+        return SystemMetaObject.forObject(entity).getValue(tableInfo.getKeyProperty());
+    }
+
+    /**
+     * 用于匹配的键值：整数统一为Long，使Integer类型的外键与Long类型的主键相等
+     * @param value 键值
+     */
+    static Object joinKey(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte
+                || value instanceof BigInteger && ((BigInteger) value).bitLength() < Long.SIZE) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+
+    /**
+     * 获取lambda字段对应的实体属性名
+     * @param column 字段
+     */
+    static String property(SFunction<?, ?> column) {
+        return PROPERTIES.computeIfAbsent(column.getClass(), lambdaClass -> {
+            // 直接读取JDK的SerializedLambda，MP各版本的LambdaUtils(resolve/extract)不兼容
+            try {
+                Method writeReplace = lambdaClass.getDeclaredMethod("writeReplace");
+                writeReplace.setAccessible(true);
+                SerializedLambda lambda = (SerializedLambda) writeReplace.invoke(column);
+                return PropertyNamer.methodToProperty(lambda.getImplMethodName());
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                throw ExceptionUtils.mpe("%s is not a serializable lambda", e, lambdaClass.getName());
+            }
+        });
+    }
+
+    /**
+     * 获取实体属性的Java类型
+     * @param entityClass 实体类
+     * @param property 属性名
+     */
+    static Class<?> propertyType(Class<?> entityClass, String property) {
+        TableInfo tableInfo = tableInfo(entityClass);
+        if (property.equals(tableInfo.getKeyProperty())) {
+            return tableInfo.getKeyType();
+        }
+        for (TableFieldInfo field : tableInfo.getFieldList()) {
+            if (field.getProperty().equals(property)) {
+                return field.getPropertyType();
+            }
+        }
+        throw ExceptionUtils.mpe("%s has no table field %s", entityClass.getName(), property);
+    }
+
+    /**
+     * 获取MyBatis-Plus注入的语句id
+     * @param entityClass 实体类
+     * @param sqlMethod 注入的方法
+     */
+    static String statement(Class<?> entityClass, SqlMethod sqlMethod) {
+        return tableInfo(entityClass).getSqlStatement(sqlMethod.getMethod());
+    }
+
+    /**
+     * 获取SqlSession，Spring事务中返回事务绑定的SqlSession
+     * @param entityClass 实体类
+     */
+    static SqlSession openSession(Class<?> entityClass) {
+        return SqlHelper.sqlSession(entityClass);
+    }
+
+    /**
+     * 释放SqlSession
+     * @param entityClass 实体类
+     * @param sqlSession SqlSession
+     */
+    static void closeSession(Class<?> entityClass, SqlSession sqlSession) {
+        SqlSessionUtils.closeSqlSession(sqlSession, GlobalConfigUtils.currentSessionFactory(entityClass));
+    }
+
+    /**
+     * 执行查询，结果不需要Cursor时使用，执行后释放SqlSession
+     * @param entityClass 实体类
+     * @param statement 语句id
+     * @param param 参数
+     */
+    static <E> List<E> selectList(Class<?> entityClass, String statement, Object param) {
+        SqlSession sqlSession = openSession(entityClass);
+        try {
+            return sqlSession.selectList(statement, param);
+        } finally {
+            closeSession(entityClass, sqlSession);
+        }
+    }
+
+    /**
+     * 执行更新或删除，执行后释放SqlSession
+     * @param entityClass 实体类
+     * @param statement 语句id
+     * @param param 参数
+     * @return 影响行数
+     */
+    static int update(Class<?> entityClass, String statement, Object param) {
+        SqlSession sqlSession = openSession(entityClass);
+        try {
+            return sqlSession.update(statement, param);
+        } finally {
+            closeSession(entityClass, sqlSession);
+        }
+    }
+
+    /**
+     * Wrapper参数
+     * @param wrapper 条件
+     */
+    static Map<String, Object> wrapperParam(Wrapper<?> wrapper) {
+        Map<String, Object> param = new HashMap<>(4);
+        param.put(Constants.WRAPPER, wrapper);
+        return param;
+    }
+
+    /**
+     * 实体所属SqlSessionFactory的配置
+     * @param entityClass 实体类
+     */
+    static Configuration configuration(Class<?> entityClass) {
+        return GlobalConfigUtils.currentSessionFactory(entityClass).getConfiguration();
+    }
+
+    /**
+     * 派生语句，已存在时直接返回
+     * <p>派生语句不注册到Configuration(其语句表不支持运行期并发写入)，由 {@link #execute} 执行</p>
+     * @param configuration 配置
+     * @param id 原语句id
+     * @param suffix 派生语句后缀
+     * @param sqlSource 基于原语句的SqlSource生成派生语句的SqlSource，null时沿用原语句的
+     * @param customizer 派生语句的其他设置
+     * @return 派生语句
+     */
+    static MappedStatement derive(Configuration configuration, String id, String suffix, UnaryOperator<SqlSource> sqlSource,
+                                  Consumer<MappedStatement.Builder> customizer) {
+        return derived(configuration, id + "$" + suffix, derivedId -> {
+            MappedStatement ms = configuration.getMappedStatement(id);
+            MappedStatement.Builder builder = new MappedStatement.Builder(configuration, derivedId,
+                    null == sqlSource ? ms.getSqlSource() : sqlSource.apply(ms.getSqlSource()), ms.getSqlCommandType())
+                    .resource(ms.getResource())
+                    .databaseId(ms.getDatabaseId())
+                    .lang(ms.getLang())
+                    .statementType(ms.getStatementType())
+                    .fetchSize(ms.getFetchSize())
+                    .timeout(ms.getTimeout())
+                    .resultSetType(ms.getResultSetType())
+                    .parameterMap(ms.getParameterMap())
+                    .resultMaps(ms.getResultMaps())
+                    .resultOrdered(ms.isResultOrdered())
+                    .keyGenerator(ms.getKeyGenerator())
+                    .flushCacheRequired(ms.isFlushCacheRequired())
+                    .useCache(ms.isUseCache())
+                    .cache(ms.getCache());
+            if (null != ms.getKeyProperties()) {
+                builder.keyProperty(String.join(",", ms.getKeyProperties()));
+            }
+            if (null != ms.getKeyColumns()) {
+                builder.keyColumn(String.join(",", ms.getKeyColumns()));
+            }
+            customizer.accept(builder);
+            return builder.build();
+        });
+    }
+
+    /**
+     * 获取派生语句，不存在时创建
+     * @param configuration 配置
+     * @param derivedId 派生语句id
+     * @param factory 创建派生语句
+     */
+    static MappedStatement derived(Configuration configuration, String derivedId, Function<String, MappedStatement> factory) {
+        return DERIVED.computeIfAbsent(configuration, key -> new ConcurrentHashMap<>(16))
+                .computeIfAbsent(derivedId, factory);
+    }
+
+    /**
+     * 在独立的Executor中执行，成功时提交，失败时回滚，最后释放连接
+     * <p>Executor由 {@link Configuration#newExecutor} 创建，已注册的插件(多租户、数据权限、SQL日志等)照常生效；
+     * 事务由Environment的TransactionFactory创建，Spring事务中使用事务绑定的连接</p>
+     * @param configuration 配置
+     * @param executorType 执行器类型
+     * @param action 执行的操作
+     */
+    static <R> R execute(Configuration configuration, ExecutorType executorType, ExecutorAction<R> action) {
+        Executor executor = newExecutor(configuration, executorType);
+        boolean success = false;
+        try {
+            R result = action.apply(executor);
+            executor.commit(true);
+            success = true;
+            return result;
+        } catch (SQLException e) {
+            throw ExceptionFactory.wrapException("Error executing derived statement.  Cause: " + e, e);
+        } finally {
+            executor.close(!success);
+        }
+    }
+
+    /**
+     * 执行派生的查询语句
+     * @param configuration 配置
+     * @param ms 派生语句
+     * @param param 参数
+     */
+    static <E> List<E> selectList(Configuration configuration, MappedStatement ms, Object param) {
+        return execute(configuration, ExecutorType.SIMPLE,
+                executor -> executor.query(ms, param, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER));
+    }
+
+    /**
+     * 创建Executor，使用完必须close
+     * @param configuration 配置
+     * @param executorType 执行器类型
+     */
+    static Executor newExecutor(Configuration configuration, ExecutorType executorType) {
+        Environment environment = configuration.getEnvironment();
+        Transaction transaction = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, false);
+        return configuration.newExecutor(transaction, executorType);
+    }
+
+    /**
+     * Executor上执行的操作
+     */
+    @FunctionalInterface
+    interface ExecutorAction<R> {
+
+        /**
+         * 执行
+         * @param executor 执行器
+         */
+        R apply(Executor executor) throws SQLException;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import java.util.List;
+
+/**
+ * 插入或更新(upsert)的方言
+ * <p>内置实现见 {@link Dialects}，默认根据DataSource自动识别，可通过 {@link ModelXConfig#setUpsertDialect(UpsertDialect)} 指定</p>
+ *
+ * @author Qicz
+ */
+public interface UpsertDialect {
+
+    /**
+     * 生成按主键插入或更新的SQL
+     * @param table 表名
+     * @param keyColumn 主键字段
+     * @param columns 插入的字段，包含主键
+     * @param values 与columns一一对应的值占位符，如 #{userName}
+     * @param updateColumns 主键冲突时更新的字段，不包含主键，可能为empty
+     * @return SQL
+     */
+    String upsert(String table, String keyColumn, List<String> columns, List<String> values, List<String> updateColumns);
+}
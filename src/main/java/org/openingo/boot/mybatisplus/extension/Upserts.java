@@ -0,0 +1,132 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+import com.baomidou.mybatisplus.core.toolkit.sql.SqlScriptUtils;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.scripting.LanguageDriver;
+import org.apache.ibatis.session.Configuration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 插入或更新(upsert)
+ * <p>按 {@link UpsertDialect} 生成SQL，插入主键及所有 @TableField 字段(包括NULL值)，主键冲突时更新指定的字段；
+ * 语句按完整的SQL缓存(不写入Configuration)，以JDBC batch执行；方言从执行所用的连接识别</p>
+ *
+ * @author Qicz
+ */
+final class Upserts {
+
+    private Upserts() {
+    }
+
+    /**
+     * 批量插入或更新
+     * @param entityClass 实体类
+     * @param entities 实体集合
+     * @param updateColumns 主键冲突时更新的字段，empty时更新主键以外的所有字段
+     * @param batchSize 每批条数
+     * @return 影响行数，由驱动返回
+     */
+    static <T> int execute(Class<?> entityClass, Collection<T> entities, SFunction<T, ?>[] updateColumns, int batchSize) {
+        Configuration configuration = Statements.configuration(entityClass);
+        return Batches.execute(configuration, executor -> statement(entityClass,
+                Dialects.upsertOf(configuration, executor.getTransaction().getConnection()), updateColumns),
+                entities, batchSize, entity -> entity);
+    }
+
+    /**
+     * 获取upsert语句，不存在时生成
+     * <p>按完整的SQL缓存，更新字段相同(与顺序无关)的调用共用一个语句</p>
+     * @param entityClass 实体类
+     * @param dialect upsert方言
+     * @param updateColumns 主键冲突时更新的字段
+     * @return 语句
+     */
+    static MappedStatement statement(Class<?> entityClass, UpsertDialect dialect, SFunction<?, ?>[] updateColumns) {
+        TableInfo tableInfo = Statements.tableInfo(entityClass);
+        if (null == tableInfo.getKeyColumn()) {
+            throw ExceptionUtils.mpe("%s has no @TableId, upsert needs the key column", entityClass.getName());
+        }
+        List<String> columns = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        columns.add(tableInfo.getKeyColumn());
+        values.add(SqlScriptUtils.safeParam(tableInfo.getKeyProperty()));
+        for (TableFieldInfo field : tableInfo.getFieldList()) {
+            columns.add(field.getColumn());
+            values.add(SqlScriptUtils.safeParam(field.getEl()));
+        }
+        List<String> updates = new ArrayList<>();
+        if (updateColumns.length == 0) {
+            updates.addAll(columns.subList(1, columns.size()));
+        } else {
+            for (SFunction<?, ?> updateColumn : updateColumns) {
+                String column = column(tableInfo, Statements.property(updateColumn));
+                if (!updates.contains(column)) {
+                    updates.add(column);
+                }
+            }
+            // 按表中字段的顺序，更新字段相同的调用生成相同的SQL
+            updates.sort(Comparator.comparingInt(columns::indexOf));
+        }
+        Configuration configuration = tableInfo.getConfiguration();
+        String sql = dialect.upsert(tableInfo.getTableName(), tableInfo.getKeyColumn(), columns, values, updates);
+        String id = tableInfo.getCurrentNamespace() + ".upsert$" + (updateColumns.length == 0 ? "all" : String.join(",", updates));
+        return Statements.derived(configuration, tableInfo.getCurrentNamespace() + ".upsert$" + sql, key -> {
+            LanguageDriver lang = configuration.getDefaultScriptingLanguageInstance();
+            // INSERT类型的语句，MyBatis-Plus会为实体执行insertFill并生成ASSIGN_ID等主键
+            return new MappedStatement.Builder(configuration, id, lang.createSqlSource(configuration, sql, entityClass),
+                    SqlCommandType.INSERT)
+                    .lang(lang)
+                    .keyGenerator(NoKeyGenerator.INSTANCE)
+                    .build();
+        });
+    }
+
+    private static String column(TableInfo tableInfo, String property) {
+        if (property.equals(tableInfo.getKeyProperty())) {
+            throw ExceptionUtils.mpe("the key column of %s can not be an update column", tableInfo.getEntityType().getName());
+        }
+        for (TableFieldInfo field : tableInfo.getFieldList()) {
+            if (field.getProperty().equals(property)) {
+                return field.getColumn();
+            }
+        }
+        throw ExceptionUtils.mpe("%s has no table field %s", tableInfo.getEntityType().getName(), property);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 关联预取：每个父实体各自的List，缓存及合并查询共享的实体不被修改
+ *
+ * @author Qicz
+ */
+public class AssociationsTest {
+
+    /**
+     * 为true时阻塞下一次t_user的列表查询，直到GATE打开
+     */
+    private static final AtomicBoolean HOLD = new AtomicBoolean();
+
+    private static volatile CountDownLatch gate;
+
+    @BeforeClass
+    public static void registerInterceptor() {
+        H2Database.start().getConfiguration().addInterceptor(new HoldUsers());
+    }
+
+    @Before
+    public void setUp() {
+        // 用户i的age为i % 10，偶数用户各有2个订单
+        H2Database.reset(12, 2);
+        SingleFlight.reset();
+        HOLD.set(false);
+    }
+
+    @Test
+    public void parentsWithEqualKeysGetTheirOwnList() {
+        // 用户2与用户12的age都是2，按age关联用户2的订单
+        List<UserDO> users = ModelXQuery.of(UserDO.class).in(UserDO::getUserId, Arrays.asList(2, 12))
+                .with(UserDO::getAge, OrderDO.class, OrderDO::getUserId, UserDO::setOrders)
+                .orderByAsc(UserDO::getUserId).doQuery();
+        assertEquals(2, users.size());
+        List<OrderDO> two = users.get(0).getOrders();
+        List<OrderDO> twelve = users.get(1).getOrders();
+        assertEquals(2, two.size());
+        assertEquals(two, twelve);
+        assertNotSame(two, twelve);
+        two.clear();
+        assertEquals(2, twelve.size());
+    }
+
+    @Test
+    public void cachedRowsAreNotModified() {
+        List<UserDO> first = ModelXQuery.of(UserDO.class).le(UserDO::getUserId, 4).cached(Duration.ofMinutes(1))
+                .with(UserDO::getUserId, OrderDO.class, OrderDO::getUserId, UserDO::setOrders).doQuery();
+        assertEquals(2, first.get(1).getOrders().size());
+        first.get(1).getOrders().clear();
+
+        // 条件相同、没有关联的链命中同一缓存，缓存中的实体没有被设置关联
+        List<UserDO> cached = ModelXQuery.of(UserDO.class).le(UserDO::getUserId, 4).cached(Duration.ofMinutes(1)).doQuery();
+        assertEquals(4, cached.size());
+        for (UserDO user : cached) {
+            assertNull(user.getOrders());
+        }
+        List<UserDO> second = ModelXQuery.of(UserDO.class).le(UserDO::getUserId, 4).cached(Duration.ofMinutes(1))
+                .with(UserDO::getUserId, OrderDO.class, OrderDO::getUserId, UserDO::setOrders).doQuery();
+        assertEquals(2, second.get(1).getOrders().size());
+        assertEquals("user2", second.get(1).getUserName());
+        assertDisjoint(first, second);
+        assertDisjoint(cached, second);
+
+        UserDO one = ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 2).cached(Duration.ofMinutes(1))
+                .with(UserDO::getUserId, OrderDO.class, OrderDO::getUserId, UserDO::setOrders).doQueryOne();
+        assertEquals(2, one.getOrders().size());
+        assertNull(ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 2).cached(Duration.ofMinutes(1)).doQueryOne().getOrders());
+    }
+
+    @Test
+    public void coalescedRowsAreNotShared() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            gate = new CountDownLatch(1);
+            HOLD.set(true);
+            CompletableFuture<List<UserDO>> leader = CompletableFuture.supplyAsync(this::coalesced, executor);
+            H2Database.await(() -> SingleFlight.stats().getExecutions() == 1);
+            CompletableFuture<List<UserDO>> follower = CompletableFuture.supplyAsync(this::coalesced, executor);
+            H2Database.await(() -> SingleFlight.stats().getCollapsed() == 1);
+            gate.countDown();
+            List<UserDO> led = leader.get(5, TimeUnit.SECONDS);
+            List<UserDO> followed = follower.get(5, TimeUnit.SECONDS);
+            assertEquals(ids(led), ids(followed));
+            assertEquals(2, led.get(1).getOrders().size());
+            assertEquals(2, followed.get(1).getOrders().size());
+            assertDisjoint(led, followed);
+        } finally {
+            gate.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private List<UserDO> coalesced() {
+        return ModelXQuery.of(UserDO.class).le(UserDO::getUserId, 4).coalesced()
+                .with(UserDO::getUserId, OrderDO.class, OrderDO::getUserId, UserDO::setOrders).doQuery();
+    }
+
+    private static void assertDisjoint(List<UserDO> one, List<UserDO> other) {
+        for (UserDO user : one) {
+            assertTrue(other.stream().noneMatch(row -> row == user));
+        }
+    }
+
+    private static List<Long> ids(List<UserDO> users) {
+        return users.stream().map(UserDO::getUserId).collect(Collectors.toList());
+    }
+
+    /**
+     * 阻塞t_user的列表查询，使并发的相同查询被合并
+     */
+    @Intercepts(@Signature(type = Executor.class, method = "query",
+            args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}))
+    public static final class HoldUsers implements Interceptor {
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            if (((MappedStatement) invocation.getArgs()[0]).getId().endsWith("UserMapper.selectList")
+                    && HOLD.compareAndSet(true, false)) {
+                gate.await(5, TimeUnit.SECONDS);
+            }
+            return invocation.proceed();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.core.exceptions.MybatisPlusException;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 分块删除/更新：多块遍历、遍历中条件列变化、空表、没有主键及set主键
+ *
+ * @author Qicz
+ */
+public class ChunkedWritesTest {
+
+    @Before
+    public void setUp() {
+        H2Database.reset(20, 0);
+    }
+
+    @Test
+    public void deleteWalksEveryChunk() {
+        List<Long> progress = new ArrayList<>();
+        long deleted = ModelXQuery.of(UserDO.class).lt(UserDO::getUserId, 18)
+                .doDeleteChunked(5, Duration.ZERO, progress::add);
+        assertEquals(17, deleted);
+        assertEquals(Arrays.asList(5L, 10L, 15L, 17L), progress);
+        assertEquals(3, ModelXQuery.of(UserDO.class).doCount());
+    }
+
+    @Test
+    public void fullLastChunkEndsWithAnEmptyWalk() {
+        List<Long> progress = new ArrayList<>();
+        assertEquals(20, ModelXQuery.of(UserDO.class).doDeleteChunked(10, Duration.ZERO, progress::add));
+        assertEquals(Arrays.asList(10L, 20L), progress);
+        assertEquals(0, ModelXQuery.of(UserDO.class).doCount());
+    }
+
+    @Test
+    public void updateThatLeavesTheConditionIsAppliedOnce() {
+        // age < 5 的行更新后不再满足条件
+        assertEquals(10, ModelXQuery.of(UserDO.class).set(UserDO::getAge, 99).lt(UserDO::getAge, 5).doUpdateChunked(3));
+        assertEquals(10, ModelXQuery.of(UserDO.class).eq(UserDO::getAge, 99).doCount());
+    }
+
+    @Test
+    public void updateThatKeepsTheConditionIsAppliedOnce() {
+        // 更新后仍满足条件，游标之前的行不会被再次更新
+        List<Long> progress = new ArrayList<>();
+        long updated = ModelXQuery.of(UserDO.class).set(UserDO::getUserName, "renamed").lt(UserDO::getAge, 5)
+                .doUpdateChunked(3, Duration.ZERO, progress::add);
+        assertEquals(10, updated);
+        assertEquals(Arrays.asList(3L, 6L, 9L, 10L), progress);
+        assertEquals(10, ModelXQuery.of(UserDO.class).eq(UserDO::getUserName, "renamed").doCount());
+    }
+
+    @Test
+    public void conditionChangesDuringTheWalk() {
+        // 第一块之后：未遍历的用户10不再满足条件，已遍历的用户1重新满足条件
+        long deleted = ModelXQuery.of(UserDO.class).lt(UserDO::getAge, 5).doDeleteChunked(3, Duration.ZERO, total -> {
+            if (total == 3) {
+                H2Database.execute(H2Database.dataSource(), "UPDATE t_user SET age = 9 WHERE user_id = 10",
+                        "INSERT INTO t_user (user_id, user_name, age) VALUES (1, 'again', 0)");
+            }
+        });
+        assertEquals(9, deleted);
+        List<UserDO> left = ModelXQuery.of(UserDO.class).lt(UserDO::getAge, 5).doQuery();
+        assertEquals(1, left.size());
+        assertEquals("again", left.get(0).getUserName());
+        assertEquals(Integer.valueOf(9), ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 10).doQueryOne().getAge());
+    }
+
+    @Test
+    public void emptyTableWritesNothing() {
+        H2Database.execute(H2Database.dataSource(), "DELETE FROM t_user");
+        List<Long> progress = new ArrayList<>();
+        assertEquals(0, ModelXQuery.of(UserDO.class).doDeleteChunked(5, Duration.ZERO, progress::add));
+        assertEquals(0, ModelXQuery.of(UserDO.class).set(UserDO::getAge, 1).doUpdateChunked(5, Duration.ZERO, progress::add));
+        assertEquals(Collections.emptyList(), progress);
+    }
+
+    @Test
+    public void entityWithoutKeyIsRejected() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(H2Database.start().getConfiguration(), ""), UserNameDO.class);
+        try {
+            ModelXQuery.of(UserNameDO.class).eq(UserNameDO::getUserName, "user1").doDeleteChunked(5);
+            fail("chunked writes need a key column");
+        } catch (MybatisPlusException e) {
+            assertTrue(e.getMessage().contains("@TableId"));
+        }
+        assertEquals(20, ModelXQuery.of(UserDO.class).doCount());
+    }
+
+    @Test
+    public void settingTheKeyIsRejected() {
+        try {
+            ModelXQuery.of(UserDO.class).set(UserDO::getUserId, 100L).eq(UserDO::getUserId, 1).doUpdateChunked(5);
+            fail("chunked updates walk the key column");
+        } catch (MybatisPlusException e) {
+            assertTrue(e.getMessage().contains("user_id"));
+        }
+        assertEquals(1, ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 1).doCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveChunkSizeIsRejected() {
+        ModelXQuery.of(UserDO.class).doDeleteChunked(0);
+    }
+
+    /**
+     * 没有@TableId的t_user
+     */
+    @TableName("t_user")
+    public static class UserNameDO {
+
+        private String userName;
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public void setUserName(String userName) {
+            this.userName = userName;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 合并查询：并发的相同查询只执行一次，跟随者共享结果或异常并计入SingleFlight.stats
+ *
+ * @author Qicz
+ */
+public class CoalescedTest {
+
+    /**
+     * 为true时阻塞下一次t_user的年龄查询，直到gate打开
+     */
+    private static final AtomicBoolean HOLD = new AtomicBoolean();
+
+    /**
+     * 为true时被阻塞的查询在gate打开后失败
+     */
+    private static final AtomicBoolean FAIL = new AtomicBoolean();
+
+    private static volatile CountDownLatch gate;
+
+    private ExecutorService executor;
+
+    @BeforeClass
+    public static void registerInterceptor() {
+        H2Database.start().getConfiguration().addInterceptor(new HoldAges());
+    }
+
+    @Before
+    public void setUp() {
+        // 用户i的age为i % 10
+        H2Database.reset(20, 0);
+        SingleFlight.reset();
+        gate = new CountDownLatch(1);
+        this.executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        gate.countDown();
+        HOLD.set(false);
+        FAIL.set(false);
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallersAreCollapsed() throws Exception {
+        List<CompletableFuture<List<UserDO>>> callers = this.callers(4);
+        gate.countDown();
+        List<List<UserDO>> results = new ArrayList<>();
+        for (CompletableFuture<List<UserDO>> caller : callers) {
+            results.add(caller.get(5, TimeUnit.SECONDS));
+        }
+        for (List<UserDO> result : results) {
+            assertEquals(Arrays.asList(1L, 11L), ids(result));
+        }
+        // 每个调用方得到各自的List
+        for (int i = 1; i < results.size(); i++) {
+            assertNotSame(results.get(0), results.get(i));
+        }
+        assertEquals(1, SingleFlight.stats().getExecutions());
+        assertEquals(3, SingleFlight.stats().getCollapsed());
+    }
+
+    @Test
+    public void failureIsSharedWithTheFollowers() throws Exception {
+        FAIL.set(true);
+        List<CompletableFuture<List<UserDO>>> callers = this.callers(3);
+        gate.countDown();
+        for (CompletableFuture<List<UserDO>> caller : callers) {
+            try {
+                caller.get(5, TimeUnit.SECONDS);
+                fail("the leader failed");
+            } catch (ExecutionException e) {
+                assertTrue(String.valueOf(e.getCause()), String.valueOf(e.getCause()).contains("held query failed"));
+            }
+        }
+        assertEquals(1, SingleFlight.stats().getExecutions());
+        assertEquals(2, SingleFlight.stats().getCollapsed());
+        // 失败的查询不再占用key
+        assertEquals(2, query(1).size());
+        assertEquals(2, SingleFlight.stats().getExecutions());
+    }
+
+    @Test
+    public void sequentialAndDifferentQueriesAreNotCollapsed() {
+        assertEquals(2, query(1).size());
+        assertEquals(2, query(1).size());
+        assertEquals(2, query(2).size());
+        assertEquals(3, SingleFlight.stats().getExecutions());
+        assertEquals(0, SingleFlight.stats().getCollapsed());
+    }
+
+    @Test
+    public void transactionalQueriesAreNotCoalesced() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertEquals(2, query(1).size());
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        assertEquals(0, SingleFlight.stats().getExecutions());
+    }
+
+    /**
+     * 启动count个相同的查询：第一个被阻塞在数据库中，其余的等待它的结果
+     */
+    private List<CompletableFuture<List<UserDO>>> callers(int count) {
+        HOLD.set(true);
+        List<CompletableFuture<List<UserDO>>> callers = new ArrayList<>();
+        callers.add(CompletableFuture.supplyAsync(() -> query(1), this.executor));
+        H2Database.await(() -> SingleFlight.stats().getExecutions() == 1 && !HOLD.get());
+        for (int i = 1; i < count; i++) {
+            callers.add(CompletableFuture.supplyAsync(() -> query(1), this.executor));
+        }
+        H2Database.await(() -> SingleFlight.stats().getCollapsed() == count - 1);
+        return callers;
+    }
+
+    private static List<UserDO> query(int age) {
+        return ModelXQuery.of(UserDO.class).eq(UserDO::getAge, age).orderByAsc(UserDO::getUserId).coalesced().doQuery();
+    }
+
+    private static List<Long> ids(List<UserDO> users) {
+        return users.stream().map(UserDO::getUserId).collect(Collectors.toList());
+    }
+
+    /**
+     * 阻塞t_user的列表查询，使并发的相同查询被合并
+     */
+    @Intercepts(@Signature(type = Executor.class, method = "query",
+            args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}))
+    public static final class HoldAges implements Interceptor {
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            if (((MappedStatement) invocation.getArgs()[0]).getId().endsWith("UserMapper.selectList")
+                    && HOLD.compareAndSet(true, false)) {
+                gate.await(5, TimeUnit.SECONDS);
+                if (FAIL.get()) {
+                    throw new IllegalStateException("held query failed");
+                }
+            }
+            return invocation.proceed();
+        }
+    }
+}
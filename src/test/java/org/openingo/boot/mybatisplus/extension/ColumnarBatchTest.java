@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 列式查询：类型、NULL位图及字符串字典
+ *
+ * @author Qicz
+ */
+public class ColumnarBatchTest {
+
+    @Before
+    public void setUp() {
+        H2Database.reset(4, 0);
+        H2Database.execute(H2Database.dataSource(), "UPDATE t_user SET age = NULL, user_name = 'user1' WHERE user_id = 2");
+    }
+
+    @Test
+    public void columnsFollowTheEntityTypes() {
+        ColumnarBatch batch = ModelXQuery.of(UserDO.class).orderByAsc(UserDO::getUserId)
+                .doQueryColumnar(UserDO::getUserId, UserDO::getAge, UserDO::getUserName);
+        assertEquals(4, batch.size());
+        assertEquals(ColumnarBatch.Type.LONG, batch.column(0).getType());
+        assertArrayEquals(new long[]{1, 2, 3, 4}, Arrays.copyOf(batch.column("userId").getLongs(), 4));
+
+        ColumnarBatch.Column ages = batch.column("age");
+        assertEquals(ColumnarBatch.Type.INT, ages.getType());
+        assertArrayEquals(new int[]{1, 0, 3, 4}, Arrays.copyOf(ages.getInts(), 4));
+        assertFalse(ages.isNull(0));
+        assertTrue(ages.isNull(1));
+
+        ColumnarBatch.Column names = batch.column("userName");
+        assertEquals(Arrays.asList("user1", "user3", "user4"), names.getDictionary());
+        assertEquals("user1", names.getString(1));
+        assertEquals(0, H2Database.dataSource().getPoolState().getActiveConnectionCount());
+    }
+
+    @Test
+    public void emptyResult() {
+        ColumnarBatch batch = ModelXQuery.of(UserDO.class).gt(UserDO::getUserId, 10).doQueryColumnar(UserDO::getUserName);
+        assertEquals(0, batch.size());
+        assertTrue(batch.column(0).getDictionary().isEmpty());
+    }
+}
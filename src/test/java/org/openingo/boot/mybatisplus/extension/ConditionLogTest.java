@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 条件记录的回放：回放构建的Wrapper与直接调用LambdaQueryWrapper得到的SQL片段及参数一致
+ *
+ * @author Qicz
+ */
+public class ConditionLogTest {
+
+    @BeforeClass
+    public static void start() {
+        // 初始化TableInfo，lambda字段才能解析
+        H2Database.start();
+    }
+
+    @Test
+    public void conditionsAreReplayedInOrder() {
+        ModelXQuery<UserDO> query = ModelXQuery.of(UserDO.class)
+                .select(UserDO::getUserId, UserDO::getAge)
+                .eq(UserDO::getAge, 1)
+                .like(UserDO::getUserName, "user")
+                .between(UserDO::getUserId, 1, 10)
+                .in(UserDO::getUserId, Arrays.asList(1, 2, 3))
+                .isNull(UserDO::getCreatedAt)
+                .groupBy(UserDO::getAge, UserDO::getUserId)
+                .orderByDesc(UserDO::getAge)
+                .orderByAsc(UserDO::getUserId);
+        LambdaQueryWrapper<UserDO> eager = new LambdaQueryWrapper<UserDO>()
+                .select(UserDO::getUserId, UserDO::getAge)
+                .eq(UserDO::getAge, 1)
+                .like(UserDO::getUserName, "user")
+                .between(UserDO::getUserId, 1, 10)
+                .in(UserDO::getUserId, Arrays.asList(1, 2, 3))
+                .isNull(UserDO::getCreatedAt)
+                .groupBy(UserDO::getAge, UserDO::getUserId)
+                .orderByDesc(UserDO::getAge)
+                .orderByAsc(UserDO::getUserId);
+        assertReplayed(eager, query);
+    }
+
+    @Test
+    public void nestedAndOrAreReplayed() {
+        ModelXQuery<UserDO> query = ModelXQuery.of(UserDO.class)
+                .eq(UserDO::getAge, 1)
+                .or()
+                .eq(UserDO::getAge, 2)
+                .nested((LambdaQueryWrapper<UserDO> i) -> i.gt(UserDO::getUserId, 3).or().lt(UserDO::getUserId, 1))
+                .and((LambdaQueryWrapper<UserDO> i) -> i.like(UserDO::getUserName, "a").or().like(UserDO::getUserName, "b"))
+                .or((LambdaQueryWrapper<UserDO> i) -> i.eq(UserDO::getUserName, "c").ne(UserDO::getAge, 4))
+                .orderByAsc(UserDO::getUserId);
+        LambdaQueryWrapper<UserDO> eager = new LambdaQueryWrapper<UserDO>()
+                .eq(UserDO::getAge, 1)
+                .or()
+                .eq(UserDO::getAge, 2)
+                .nested(i -> i.gt(UserDO::getUserId, 3).or().lt(UserDO::getUserId, 1))
+                .and(i -> i.like(UserDO::getUserName, "a").or().like(UserDO::getUserName, "b"))
+                .or(i -> i.eq(UserDO::getUserName, "c").ne(UserDO::getAge, 4))
+                .orderByAsc(UserDO::getUserId);
+        assertReplayed(eager, query);
+    }
+
+    @Test
+    public void falseConditionsAreSkipped() {
+        ModelXQuery<UserDO> query = ModelXQuery.of(UserDO.class)
+                .eq(false, UserDO::getAge, 1)
+                .eq(true, UserDO::getAge, 2)
+                .or(false)
+                .in(false, UserDO::getUserId, Arrays.asList(1, 2))
+                .like(true, UserDO::getUserName, "user")
+                .nested(false, (LambdaQueryWrapper<UserDO> i) -> i.eq(UserDO::getUserId, 1))
+                .groupBy(false, UserDO::getAge)
+                .orderBy(false, true, UserDO::getAge)
+                .orderBy(true, false, UserDO::getUserId);
+        LambdaQueryWrapper<UserDO> eager = new LambdaQueryWrapper<UserDO>()
+                .eq(false, UserDO::getAge, 1)
+                .eq(true, UserDO::getAge, 2)
+                .or(false)
+                .in(false, UserDO::getUserId, Arrays.asList(1, 2))
+                .like(true, UserDO::getUserName, "user")
+                .nested(false, i -> i.eq(UserDO::getUserId, 1))
+                .groupBy(false, UserDO::getAge)
+                .orderBy(false, true, UserDO::getAge)
+                .orderBy(true, false, UserDO::getUserId);
+        assertReplayed(eager, query);
+    }
+
+    @Test
+    public void everyReplayBuildsAFreshWrapper() {
+        ModelXQuery<UserDO> query = ModelXQuery.of(UserDO.class).eq(UserDO::getAge, 1).orderByAsc(UserDO::getUserId);
+        LambdaQueryWrapper<UserDO> eager = new LambdaQueryWrapper<UserDO>().eq(UserDO::getAge, 1).orderByAsc(UserDO::getUserId);
+        assertReplayed(eager, query);
+        // 回放不会在上一次的Wrapper上累加条件
+        assertReplayed(eager, query);
+    }
+
+    private static void assertReplayed(LambdaQueryWrapper<UserDO> eager, ModelXQuery<UserDO> query) {
+        LambdaQueryWrapper<UserDO> replayed = query.stream("replay", (entityClass, wrapper) -> wrapper);
+        assertEquals(eager.getSqlSelect(), replayed.getSqlSelect());
+        assertEquals(eager.getCustomSqlSegment(), replayed.getCustomSqlSegment());
+        assertEquals(eager.getParamNameValuePairs(), replayed.getParamNameValuePairs());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * doCount/doExists：忽略链上的select和orderBy，groupBy时返回分组数，缓存在写操作后失效
+ *
+ * @author Qicz
+ */
+public class CountExistsTest {
+
+    @Before
+    public void setUp() {
+        // 用户i的age为i % 10
+        H2Database.reset(20, 0);
+    }
+
+    @Test
+    public void countIgnoresSelectAndOrderBy() {
+        assertEquals(20, ModelXQuery.of(UserDO.class).doCount());
+        assertEquals(4, ModelXQuery.of(UserDO.class).select(UserDO::getUserName).lt(UserDO::getAge, 2)
+                .orderByDesc(UserDO::getAge).doCount());
+    }
+
+    @Test
+    public void countOfGroupsWithGroupBy() {
+        assertEquals(10, ModelXQuery.of(UserDO.class).groupBy(UserDO::getAge).doCount());
+        assertEquals(3, ModelXQuery.of(UserDO.class).lt(UserDO::getAge, 3).groupBy(UserDO::getAge).doCount());
+        assertEquals(0, ModelXQuery.of(UserDO.class).gt(UserDO::getAge, 10).groupBy(UserDO::getAge).doCount());
+    }
+
+    @Test
+    public void existsIgnoresSelectAndOrderBy() {
+        assertTrue(ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 5).doExists());
+        assertFalse(ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 50).doExists());
+        assertTrue(ModelXQuery.of(UserDO.class).select(UserDO::getUserName).eq(UserDO::getAge, 3)
+                .orderByDesc(UserDO::getUserId).doExists());
+        assertTrue(ModelXQuery.of(UserDO.class).eq(UserDO::getAge, 50).or().eq(UserDO::getUserId, 1).doExists());
+    }
+
+    @Test
+    public void emptyTable() {
+        H2Database.execute(H2Database.dataSource(), "DELETE FROM t_user");
+        assertEquals(0, ModelXQuery.of(UserDO.class).doCount());
+        assertFalse(ModelXQuery.of(UserDO.class).doExists());
+    }
+
+    @Test
+    public void cachedCountAndExistsFollowWrites() {
+        assertEquals(2, ModelXQuery.of(UserDO.class).eq(UserDO::getAge, 1).cached(Duration.ofMinutes(1)).doCount());
+        assertTrue(ModelXQuery.of(UserDO.class).eq(UserDO::getAge, 1).cached(Duration.ofMinutes(1)).doExists());
+        ModelXQuery.of(UserDO.class).eq(UserDO::getAge, 1).doDelete();
+        assertEquals(0, ModelXQuery.of(UserDO.class).eq(UserDO::getAge, 1).cached(Duration.ofMinutes(1)).doCount());
+        assertFalse(ModelXQuery.of(UserDO.class).eq(UserDO::getAge, 1).cached(Duration.ofMinutes(1)).doExists());
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CursorPublisher：按request(n)读取、cancel释放连接、非法request按§3.9以onError结束
+ *
+ * @author Qicz
+ */
+public class CursorPublisherTest {
+
+    private static final int USERS = 10;
+
+    @Before
+    public void setUp() {
+        H2Database.reset(USERS, 0);
+    }
+
+    @Test
+    public void emitsOnlyRequestedRows() throws InterruptedException {
+        RecordingSubscriber subscriber = this.subscribe();
+        // 订阅时不读取
+        Thread.sleep(50);
+        assertEquals(0, subscriber.items.size());
+        subscriber.subscription.request(3);
+        H2Database.await(() -> subscriber.items.size() == 3);
+        Thread.sleep(50);
+        assertEquals(3, subscriber.items.size());
+        subscriber.subscription.request(2);
+        H2Database.await(() -> subscriber.items.size() == 5);
+        Thread.sleep(50);
+        assertEquals(5, subscriber.items.size());
+        assertEquals(0, subscriber.completions.get());
+        subscriber.subscription.request(Long.MAX_VALUE);
+        H2Database.await(() -> subscriber.completions.get() == 1);
+        assertEquals(USERS, subscriber.items.size());
+        for (int i = 0; i < USERS; i++) {
+            assertEquals(Long.valueOf(i + 1), subscriber.items.get(i).getUserId());
+        }
+        H2Database.await(() -> H2Database.dataSource().getPoolState().getActiveConnectionCount() == 0);
+    }
+
+    @Test
+    public void cancelReleasesTheSession() throws InterruptedException {
+        RecordingSubscriber subscriber = this.subscribe();
+        subscriber.subscription.request(1);
+        H2Database.await(() -> subscriber.items.size() == 1);
+        // 游标打开期间持有连接
+        assertEquals(1, H2Database.dataSource().getPoolState().getActiveConnectionCount());
+        subscriber.subscription.cancel();
+        H2Database.await(() -> H2Database.dataSource().getPoolState().getActiveConnectionCount() == 0);
+        subscriber.subscription.request(5);
+        Thread.sleep(50);
+        assertEquals(1, subscriber.items.size());
+        assertEquals(0, subscriber.completions.get());
+        assertEquals(null, subscriber.error.get());
+    }
+
+    @Test
+    public void nonPositiveRequestSignalsOnError() {
+        RecordingSubscriber subscriber = this.subscribe();
+        subscriber.subscription.request(2);
+        H2Database.await(() -> subscriber.items.size() == 2);
+        subscriber.subscription.request(0);
+        H2Database.await(() -> null != subscriber.error.get());
+        assertTrue(subscriber.error.get() instanceof IllegalArgumentException);
+        assertEquals(2, subscriber.items.size());
+        assertEquals(0, subscriber.completions.get());
+        H2Database.await(() -> H2Database.dataSource().getPoolState().getActiveConnectionCount() == 0);
+    }
+
+    @Test
+    public void negativeRequestBeforeAnyRowSignalsOnError() {
+        RecordingSubscriber subscriber = this.subscribe();
+        subscriber.subscription.request(-1);
+        H2Database.await(() -> null != subscriber.error.get());
+        assertTrue(subscriber.error.get() instanceof IllegalArgumentException);
+        assertEquals(0, subscriber.items.size());
+        assertEquals(0, H2Database.dataSource().getPoolState().getActiveConnectionCount());
+    }
+
+    private RecordingSubscriber subscribe() {
+        Publisher<UserDO> publisher = ModelXPublishers.publish(ModelXQuery.of(UserDO.class).orderByAsc(UserDO::getUserId), 2);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        assertTrue(null != subscriber.subscription);
+        return subscriber;
+    }
+
+    private static final class RecordingSubscriber implements Subscriber<UserDO> {
+
+        private final List<UserDO> items = new CopyOnWriteArrayList<>();
+
+        private final AtomicInteger completions = new AtomicInteger();
+
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        private volatile Subscription subscription;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(UserDO user) {
+            this.items.add(user);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error.set(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.completions.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 测试用的内存H2数据库，不依赖Spring启动MyBatis-Plus
+ * <p>t_user(user_id, user_name, age, created_at)及t_order(order_id, user_id, amount)，同一JVM中只启动一次</p>
+ *
+ * @author Qicz
+ */
+final class H2Database {
+
+    private H2Database() {
+    }
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2021, 1, 1, 8, 30, 15);
+
+    private static PooledDataSource dataSource;
+
+    private static SqlSessionFactory sqlSessionFactory;
+
+    /**
+     * 启动数据库，注册UserMapper及OrderMapper
+     */
+    static synchronized SqlSessionFactory start() {
+        if (null == sqlSessionFactory) {
+            dataSource = pooled("modelx");
+            execute(dataSource, "CREATE TABLE t_user (user_id BIGINT PRIMARY KEY, user_name VARCHAR(30), age INT, created_at TIMESTAMP)",
+                    "CREATE TABLE t_order (order_id BIGINT PRIMARY KEY, user_id INT, amount INT)");
+            sqlSessionFactory = build("modelx", dataSource, UserMapper.class, OrderMapper.class);
+        }
+        return sqlSessionFactory;
+    }
+
+    /**
+     * 清空数据后写入users个用户，用户i的age为i % 10、created_at为2021-01-01T08:30:15后i天，每个偶数用户有ordersPerUser个订单
+     * @param users 用户数
+     * @param ordersPerUser 每个偶数用户的订单数
+     */
+    static void reset(int users, int ordersPerUser) {
+        start();
+        QueryCache.clear();
+        execute(dataSource, "DELETE FROM t_user", "DELETE FROM t_order");
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement user = connection.prepareStatement("INSERT INTO t_user (user_id, user_name, age, created_at) VALUES (?, ?, ?, ?)");
+             PreparedStatement order = connection.prepareStatement("INSERT INTO t_order (order_id, user_id, amount) VALUES (?, ?, ?)")) {
+            long orderId = 1;
+            for (int i = 1; i <= users; i++) {
+                user.setLong(1, i);
+                user.setString(2, "user" + i);
+                user.setInt(3, i % 10);
+                user.setTimestamp(4, Timestamp.valueOf(CREATED_AT.plusDays(i)));
+                user.addBatch();
+                for (int j = 0; i % 2 == 0 && j < ordersPerUser; j++) {
+                    order.setLong(1, orderId++);
+                    order.setInt(2, i);
+                    order.setInt(3, i * 100 + j);
+                    order.addBatch();
+                }
+            }
+            user.executeBatch();
+            order.executeBatch();
+        } catch (SQLException e) {
+            throw new IllegalStateException("failed to prepare H2 database", e);
+        }
+    }
+
+    /**
+     * 连接池，用于检查连接是否已释放
+     */
+    static PooledDataSource dataSource() {
+        start();
+        return dataSource;
+    }
+
+    /**
+     * 内存数据库的连接池
+     * @param name 数据库名
+     */
+    static PooledDataSource pooled(String name) {
+        PooledDataSource pooled = new PooledDataSource("org.h2.Driver", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        pooled.setPoolMaximumActiveConnections(16);
+        pooled.setPoolMaximumIdleConnections(16);
+        return pooled;
+    }
+
+    /**
+     * 基于dataSource构建MyBatis-Plus的SqlSessionFactory
+     * <p>与Spring Boot中一样使用SpringManagedTransactionFactory：没有Spring事务时连接为autoCommit，非dao链的写操作直接提交</p>
+     * @param id 环境id
+     * @param dataSource 数据源
+     * @param mappers Mapper
+     */
+    static SqlSessionFactory build(String id, DataSource dataSource, Class<?>... mappers) {
+        MybatisConfiguration configuration = new MybatisConfiguration(new Environment(id, new SpringManagedTransactionFactory(), dataSource));
+        for (Class<?> mapper : mappers) {
+            configuration.addMapper(mapper);
+        }
+        return new MybatisSqlSessionFactoryBuilder().build(configuration);
+    }
+
+    /**
+     * 执行DDL/DML
+     * @param dataSource 数据源
+     * @param sqls SQL
+     */
+    static void execute(DataSource dataSource, String... sqls) {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            for (String sql : sqls) {
+                statement.execute(sql);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("failed to execute " + String.join("; ", sqls), e);
+        }
+    }
+
+    /**
+     * 等待条件成立，超时失败
+     * @param condition 条件
+     */
+    static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condition not met in 5s");
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError("interrupted", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 大IN列表分块：合并顺序、去重、select不含主键及OR时不分块
+ *
+ * @author Qicz
+ */
+public class InChunksTest {
+
+    private int inChunkSize;
+
+    @Before
+    public void setUp() {
+        H2Database.reset(20, 0);
+        this.inChunkSize = ModelXConfig.getInChunkSize();
+        ModelXConfig.setInChunkSize(3);
+        InChunks.reset();
+    }
+
+    @After
+    public void tearDown() {
+        ModelXConfig.setInChunkSize(this.inChunkSize);
+    }
+
+    @Test
+    public void mergedRowsFollowTheChainOrder() {
+        List<UserDO> users = ModelXQuery.of(UserDO.class).in(UserDO::getUserId, Arrays.asList(12, 3, 7, 1, 15, 9, 4))
+                .orderByDesc(UserDO::getUserId).doQuery();
+        assertEquals(Arrays.asList(15L, 12L, 9L, 7L, 4L, 3L, 1L), ids(users));
+        assertEquals(1, InChunks.stats().getExecutions());
+        assertEquals(3, InChunks.stats().getChunks());
+    }
+
+    @Test
+    public void duplicateValuesAreQueriedOnce() {
+        List<UserDO> users = ModelXQuery.of(UserDO.class).in(UserDO::getUserId, Arrays.asList(2, 2, 5, 5, 8, 11, 11))
+                .orderByAsc(UserDO::getUserId).doQuery();
+        assertEquals(Arrays.asList(2L, 5L, 8L, 11L), ids(users));
+        assertEquals(2, InChunks.stats().getChunks());
+    }
+
+    @Test
+    public void rowsWithoutTheKeyAreNotDeduplicated() {
+        List<UserDO> users = ModelXQuery.of(UserDO.class).select(UserDO::getUserName, UserDO::getAge)
+                .in(UserDO::getUserId, Arrays.asList(1, 2, 3, 4, 5, 6, 7)).doQuery();
+        assertEquals(7, users.size());
+        for (UserDO user : users) {
+            assertNull(user.getUserId());
+        }
+        assertEquals(3, InChunks.stats().getChunks());
+    }
+
+    @Test
+    public void inBesideOrIsNotChunked() {
+        // age = 0 OR user_id IN (...)：分块时OR左侧的行在每块中都会匹配
+        List<UserDO> users = ModelXQuery.of(UserDO.class).eq(UserDO::getAge, 0).or()
+                .in(UserDO::getUserId, Arrays.asList(1, 2, 3, 4, 5, 6, 7)).orderByAsc(UserDO::getUserId).doQuery();
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 10L, 20L), ids(users));
+        assertEquals(Boolean.TRUE, ModelXQuery.of(UserDO.class).set(UserDO::getAge, 99).eq(UserDO::getAge, 0).or()
+                .in(UserDO::getUserId, Arrays.asList(1, 2, 3, 4, 5, 6, 7)).doUpdate());
+        assertEquals(9, ModelXQuery.of(UserDO.class).eq(UserDO::getAge, 99).doCount());
+        assertEquals(0, InChunks.stats().getExecutions());
+    }
+
+    @Test
+    public void chunkedUpdateAndDelete() {
+        List<Integer> ids = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8);
+        assertEquals(Boolean.TRUE, ModelXQuery.of(UserDO.class).set(UserDO::getAge, 99).in(UserDO::getUserId, ids).doUpdate());
+        assertEquals(8, ModelXQuery.of(UserDO.class).eq(UserDO::getAge, 99).doCount());
+        assertEquals(Boolean.TRUE, ModelXQuery.of(UserDO.class).in(UserDO::getUserId, ids).doDelete());
+        assertEquals(12, ModelXQuery.of(UserDO.class).doCount());
+        assertEquals(6, InChunks.stats().getChunks());
+    }
+
+    private static List<Long> ids(List<UserDO> users) {
+        return users.stream().map(UserDO::getUserId).collect(Collectors.toList());
+    }
+}
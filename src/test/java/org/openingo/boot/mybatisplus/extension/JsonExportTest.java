@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * doQueryToJson：select的属性及顺序、TypeHandler转换的JSR-310类型、可配置的ObjectMapper
+ *
+ * @author Qicz
+ */
+public class JsonExportTest {
+
+    @Before
+    public void setUp() {
+        H2Database.reset(3, 0);
+    }
+
+    @After
+    public void tearDown() {
+        ModelXConfig.setObjectMapper(null);
+    }
+
+    @Test
+    public void writesSelectedPropertiesInOrder() {
+        StringWriter writer = new StringWriter();
+        long rows = ModelXQuery.of(UserDO.class).select(UserDO::getCreatedAt, UserDO::getUserId).le(UserDO::getUserId, 2)
+                .orderByAsc(UserDO::getUserId).doQueryToJson(writer);
+        assertEquals(2, rows);
+        assertEquals("[{\"createdAt\":\"2021-01-02T08:30:15\",\"userId\":1},{\"createdAt\":\"2021-01-03T08:30:15\",\"userId\":2}]",
+                writer.toString());
+        assertEquals(0, H2Database.dataSource().getPoolState().getActiveConnectionCount());
+    }
+
+    @Test
+    public void writesAllTableFieldsWithoutSelect() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 1).doQueryToJson(out);
+        assertEquals("[{\"userId\":1,\"userName\":\"user1\",\"age\":1,\"createdAt\":\"2021-01-02T08:30:15\"}]",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void usesTheConfiguredObjectMapper() {
+        ModelXConfig.setObjectMapper(new ObjectMapper().registerModule(new JavaTimeModule()));
+        StringWriter writer = new StringWriter();
+        ModelXQuery.of(UserDO.class).select(UserDO::getCreatedAt).eq(UserDO::getUserId, 1).doQueryToJson(writer);
+        assertEquals("[{\"createdAt\":[2021,1,2,8,30,15]}]", writer.toString());
+    }
+
+    @Test
+    public void emptyResultIsAnEmptyArray() {
+        StringWriter writer = new StringWriter();
+        assertEquals(0, ModelXQuery.of(UserDO.class).gt(UserDO::getUserId, 10).doQueryToJson(writer));
+        assertEquals("[]", writer.toString());
+    }
+}
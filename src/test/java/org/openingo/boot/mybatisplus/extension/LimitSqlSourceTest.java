@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 各方言的LIMIT改写及H2上的端到端行数限制查询
+ *
+ * @author Qicz
+ */
+public class LimitSqlSourceTest {
+
+    private static final String SQL = "SELECT id,name FROM t WHERE a = ? ORDER BY id";
+
+    @Before
+    public void setUp() {
+        H2Database.reset(20, 0);
+    }
+
+    @After
+    public void tearDown() {
+        ModelXConfig.setDialect(null);
+    }
+
+    @Test
+    public void limitOffset() {
+        assertLimit(Dialects.LIMIT_OFFSET.limit(SQL, 0, 10), SQL + " LIMIT ?", new long[0], new long[]{10});
+        assertLimit(Dialects.LIMIT_OFFSET.limit(SQL, 20, 10), SQL + " LIMIT ? OFFSET ?", new long[0], new long[]{10, 20});
+    }
+
+    @Test
+    public void offsetFetch() {
+        assertLimit(Dialects.OFFSET_FETCH.limit(SQL, 0, 10), SQL + " FETCH FIRST ? ROWS ONLY", new long[0], new long[]{10});
+        assertLimit(Dialects.OFFSET_FETCH.limit(SQL, 20, 10), SQL + " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY",
+                new long[0], new long[]{20, 10});
+    }
+
+    @Test
+    public void sqlServerAddsOrderByOnlyWhenMissingAtTopLevel() {
+        assertLimit(Dialects.SQL_SERVER.limit(SQL, 20, 10), SQL + " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY",
+                new long[0], new long[]{20, 10});
+        String nested = "SELECT id FROM (SELECT id FROM t ORDER BY id) x";
+        assertLimit(Dialects.SQL_SERVER.limit(nested, 0, 10), nested + " ORDER BY (SELECT NULL) OFFSET ? ROWS FETCH NEXT ? ROWS ONLY",
+                new long[0], new long[]{0, 10});
+    }
+
+    @Test
+    public void rownum() {
+        assertLimit(Dialects.ROWNUM.limit(SQL, 0, 10), "SELECT * FROM ( " + SQL + " ) WHERE ROWNUM <= ?",
+                new long[0], new long[]{10});
+        assertLimit(Dialects.ROWNUM.limit(SQL, 20, 10), "SELECT * FROM ( SELECT MX_T.*, ROWNUM MX_RN FROM ( " + SQL
+                + " ) MX_T WHERE ROWNUM <= ? ) WHERE MX_RN > ?", new long[0], new long[]{30, 20});
+    }
+
+    @Test
+    public void top() {
+        // TOP位于原SQL参数之前
+        assertLimit(Dialects.TOP.limit("SELECT DISTINCT id FROM t WHERE a = ?", 0, 10),
+                "SELECT DISTINCT TOP (?) id FROM t WHERE a = ?", new long[]{10}, new long[0]);
+        assertLimit(Dialects.TOP.limit(SQL, 20, 10), "SELECT * FROM ( SELECT ROW_NUMBER() OVER (ORDER BY id) AS MX_RN,"
+                + " id,name FROM t WHERE a = ?  ) MX_T WHERE MX_RN > ? AND MX_RN <= ?", new long[0], new long[]{20, 30});
+    }
+
+    @Test
+    public void detect() {
+        assertEquals(Dialects.LIMIT_OFFSET, Dialects.detect("MySQL", 8));
+        assertEquals(Dialects.LIMIT_OFFSET, Dialects.detect("H2", 1));
+        assertEquals(Dialects.OFFSET_FETCH, Dialects.detect("Oracle", 12));
+        assertEquals(Dialects.ROWNUM, Dialects.detect("Oracle", 11));
+        assertEquals(Dialects.SQL_SERVER, Dialects.detect("Microsoft SQL Server", 11));
+        assertEquals(Dialects.TOP, Dialects.detect("Microsoft SQL Server", 10));
+    }
+
+    @Test
+    public void detectedDialectBindsLimitAfterWrapperParameters() {
+        List<UserDO> users = ModelXQuery.of(UserDO.class).ge(UserDO::getAge, 5).orderByAsc(UserDO::getUserId).doQueryLimit(2, 1);
+        assertEquals(Arrays.asList(6L, 7L), ids(users));
+        assertEquals(0, H2Database.dataSource().getPoolState().getActiveConnectionCount());
+    }
+
+    @Test
+    public void configuredDialectOverridesDetection() {
+        ModelXConfig.setDialect(Dialects.OFFSET_FETCH);
+        List<UserDO> users = ModelXQuery.of(UserDO.class).orderByAsc(UserDO::getUserId).doQueryLimit(3, 4);
+        assertEquals(Arrays.asList(5L, 6L, 7L), ids(users));
+        assertEquals(0, H2Database.dataSource().getPoolState().getActiveConnectionCount());
+    }
+
+    private static List<Long> ids(List<UserDO> users) {
+        return users.stream().map(UserDO::getUserId).collect(Collectors.toList());
+    }
+
+    private static void assertLimit(Dialect.LimitSql limited, String sql, long[] before, long[] after) {
+        assertEquals(sql, limited.getSql());
+        assertArrayEquals(before, limited.getBefore());
+        assertArrayEquals(after, limited.getAfter());
+    }
+}
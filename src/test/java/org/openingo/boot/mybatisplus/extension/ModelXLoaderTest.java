@@ -0,0 +1,195 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 按主键批量加载：合并批次、批次上限、去重、memo及失败后重试
+ *
+ * @author Qicz
+ */
+public class ModelXLoaderTest {
+
+    /**
+     * 之后的批量查询失败的次数
+     */
+    private static final AtomicInteger FAILURES = new AtomicInteger();
+
+    private long batchWindowMillis;
+
+    private int maxBatchSize;
+
+    @BeforeClass
+    public static void registerInterceptor() {
+        H2Database.start().getConfiguration().addInterceptor(new BatchFailure());
+    }
+
+    @Before
+    public void setUp() {
+        H2Database.reset(10, 0);
+        FAILURES.set(0);
+        this.batchWindowMillis = ModelXConfig.getLoaderBatchWindowMillis();
+        this.maxBatchSize = ModelXConfig.getLoaderMaxBatchSize();
+        // 窗口足够长，批次只由dispatch或达到上限触发
+        ModelXConfig.setLoaderBatchWindowMillis(60_000);
+        ModelXLoader.reset();
+    }
+
+    @After
+    public void tearDown() {
+        ModelXConfig.setLoaderBatchWindowMillis(this.batchWindowMillis);
+        ModelXConfig.setLoaderMaxBatchSize(this.maxBatchSize);
+    }
+
+    @Test
+    public void loadsOfAllLoadersShareOneBatch() {
+        ModelXLoader<UserDO> one = ModelXLoader.of(UserDO.class);
+        ModelXLoader<UserDO> other = ModelXLoader.of(UserDO.class);
+        CompletableFuture<UserDO> first = one.load(1L);
+        CompletableFuture<UserDO> second = one.load(2L);
+        CompletableFuture<UserDO> third = other.load(3L);
+        CompletableFuture<UserDO> missing = other.load(99L);
+        assertEquals(0, ModelXLoader.stats().getBatches());
+        one.dispatch();
+        assertEquals("user1", first.join().getUserName());
+        assertEquals("user2", second.join().getUserName());
+        assertEquals("user3", third.join().getUserName());
+        assertNull(missing.join());
+        assertEquals(1, ModelXLoader.stats().getBatches());
+        assertEquals(4, ModelXLoader.stats().getKeys());
+        assertEquals(4, ModelXLoader.stats().getRequests());
+        assertEquals(0, H2Database.dataSource().getPoolState().getActiveConnectionCount());
+    }
+
+    @Test
+    public void fullBatchesAreDispatchedWithoutWaiting() {
+        ModelXConfig.setLoaderMaxBatchSize(2);
+        ModelXLoader<UserDO> loader = ModelXLoader.of(UserDO.class);
+        CompletableFuture<List<UserDO>> users = loader.loadMany(Arrays.asList(5L, 4L, 3L, 2L, 1L));
+        // 最后一个批次未满，等待窗口
+        H2Database.await(() -> ModelXLoader.stats().getBatches() == 2);
+        assertEquals(2, ModelXLoader.stats().getBatches());
+        loader.dispatch();
+        assertEquals(Arrays.asList(5L, 4L, 3L, 2L, 1L), users.join().stream().map(UserDO::getUserId).collect(Collectors.toList()));
+        assertEquals(3, ModelXLoader.stats().getBatches());
+        assertEquals(5, ModelXLoader.stats().getKeys());
+    }
+
+    @Test
+    public void duplicateKeysAreQueriedOnce() {
+        ModelXLoader<UserDO> one = ModelXLoader.of(UserDO.class);
+        ModelXLoader<UserDO> other = ModelXLoader.of(UserDO.class);
+        CompletableFuture<UserDO> first = one.load(7L);
+        // 整数主键统一为Long
+        assertSame(first, one.load(7));
+        CompletableFuture<UserDO> shared = other.load(7L);
+        one.dispatch();
+        assertSame(first.join(), shared.join());
+        assertEquals(1, ModelXLoader.stats().getKeys());
+        assertEquals(1, ModelXLoader.stats().getBatches());
+
+        // memo：同一loader不再查询，clear后重新查询
+        assertSame(first, one.load(7L));
+        assertEquals(1, ModelXLoader.stats().getBatches());
+        CompletableFuture<UserDO> reloaded = one.clear(7L).load(7L);
+        assertNotSame(first, reloaded);
+        one.dispatch();
+        assertEquals("user7", reloaded.join().getUserName());
+        assertEquals(2, ModelXLoader.stats().getBatches());
+    }
+
+    @Test
+    public void failedLoadsAreRetried() {
+        FAILURES.set(1);
+        ModelXLoader<UserDO> loader = ModelXLoader.of(UserDO.class);
+        CompletableFuture<UserDO> failed = loader.load(1L);
+        CompletableFuture<UserDO> other = loader.load(2L);
+        loader.dispatch();
+        for (CompletableFuture<UserDO> future : Arrays.asList(failed, other)) {
+            try {
+                future.join();
+                fail("the batch should fail");
+            } catch (CompletionException e) {
+                assertTrue(e.getCause().getMessage().contains("batch unavailable"));
+            }
+        }
+        assertEquals(0, H2Database.dataSource().getPoolState().getActiveConnectionCount());
+
+        CompletableFuture<UserDO> retried = loader.load(1L);
+        assertNotSame(failed, retried);
+        loader.dispatch();
+        assertEquals("user1", retried.join().getUserName());
+        // 失败的批次不计入统计
+        assertEquals(1, ModelXLoader.stats().getBatches());
+        assertEquals(1, ModelXLoader.stats().getKeys());
+    }
+
+    /**
+     * 按FAILURES使批量查询失败
+     */
+    @Intercepts(@Signature(type = Executor.class, method = "query",
+            args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}))
+    public static final class BatchFailure implements Interceptor {
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            if (((MappedStatement) invocation.getArgs()[0]).getId().endsWith(".selectBatchIds")
+                    && FAILURES.getAndUpdate(failures -> Math.max(0, failures - 1)) > 0) {
+                throw new SQLException("batch unavailable");
+            }
+            return invocation.proceed();
+        }
+    }
+}
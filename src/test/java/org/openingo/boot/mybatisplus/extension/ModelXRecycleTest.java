@@ -0,0 +1,214 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.session.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * dao回收模式：回收的实例恢复为新建实例的字段值且链上条件已清空，字段初始值为可变对象的类不回收
+ *
+ * @author Qicz
+ */
+public class ModelXRecycleTest {
+
+    private boolean recycleDao;
+
+    @BeforeClass
+    public static void start() {
+        Configuration configuration = H2Database.start().getConfiguration();
+        if (!configuration.hasMapper(GuestMapper.class)) {
+            configuration.addMapper(GuestMapper.class);
+            configuration.addMapper(TaggedMapper.class);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        H2Database.reset(20, 0);
+        this.recycleDao = ModelXConfig.isRecycleDao();
+        ModelXConfig.setRecycleDao(true);
+    }
+
+    @After
+    public void tearDown() {
+        ModelXConfig.setRecycleDao(this.recycleDao);
+    }
+
+    @Test
+    public void recycledDaoHasThePrototypeFieldsAndNoConditions() {
+        GuestDO dao = ModelX.dao(GuestDO.class);
+        dao.setUserName("changed");
+        dao.setAge(50);
+        assertEquals(1, dao.eq(GuestDO::getUserId, 1).orderByDesc(GuestDO::getAge).doCount());
+
+        GuestDO recycled = ModelX.dao(GuestDO.class);
+        assertSame(dao, recycled);
+        assertEquals("guest", recycled.getUserName());
+        assertEquals(Integer.valueOf(18), recycled.getAge());
+        assertNull(recycled.getUserId());
+        assertEquals(20, recycled.doCount());
+        assertEquals(20, recycled.doQuery().size());
+    }
+
+    @Test
+    public void daoOfAnotherThreadIsNotShared() throws InterruptedException {
+        GuestDO dao = ModelX.dao(GuestDO.class);
+        dao.doCount();
+        List<GuestDO> other = new ArrayList<>();
+        Thread thread = new Thread(() -> other.add(ModelX.dao(GuestDO.class)));
+        thread.start();
+        thread.join();
+        assertNotSame(dao, other.get(0));
+        assertSame(dao, ModelX.dao(GuestDO.class));
+    }
+
+    @Test
+    public void mutableInitialFieldIsNeverRecycled() {
+        TaggedDO dao = ModelX.dao(TaggedDO.class);
+        dao.getTags().add("vip");
+        assertEquals(1, dao.eq(TaggedDO::getUserId, 1).doCount());
+
+        TaggedDO next = ModelX.dao(TaggedDO.class);
+        assertNotSame(dao, next);
+        assertNotSame(dao.getTags(), next.getTags());
+        assertTrue(next.getTags().isEmpty());
+        assertEquals(20, next.doCount());
+    }
+
+    @Test
+    public void disabledRecyclingCreatesNewDaos() {
+        ModelXConfig.setRecycleDao(false);
+        GuestDO dao = ModelX.dao(GuestDO.class);
+        dao.doCount();
+        assertNotSame(dao, ModelX.dao(GuestDO.class));
+    }
+
+    public interface GuestMapper extends BaseMapper<GuestDO> {
+    }
+
+    public interface TaggedMapper extends BaseMapper<TaggedDO> {
+    }
+
+    /**
+     * 字段初始值为不可变对象，可以回收
+     */
+    @TableName("t_user")
+    public static class GuestDO extends ModelX<GuestDO> {
+        private static final long serialVersionUID = 1L;
+
+        @TableId(value = "user_id", type = IdType.INPUT)
+        private Long userId;
+
+        private String userName = "guest";
+
+        private Integer age = 18;
+
+        @Override
+        public Serializable pkVal() {
+            return this.userId;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public void setUserId(Long userId) {
+            this.userId = userId;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public void setUserName(String userName) {
+            this.userName = userName;
+        }
+
+        public Integer getAge() {
+            return age;
+        }
+
+        public void setAge(Integer age) {
+            this.age = age;
+        }
+    }
+
+    /**
+     * 字段初始值为可变对象，回收后会在dao之间共享，不回收
+     */
+    @TableName("t_user")
+    public static class TaggedDO extends ModelX<TaggedDO> {
+        private static final long serialVersionUID = 1L;
+
+        @TableId(value = "user_id", type = IdType.INPUT)
+        private Long userId;
+
+        @TableField(exist = false)
+        private List<String> tags = new ArrayList<>();
+
+        @Override
+        public Serializable pkVal() {
+            return this.userId;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public void setUserId(Long userId) {
+            this.userId = userId;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.exceptions.MybatisPlusException;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 监控SPI及慢查询日志：终端操作、规范化SQL、行数及异常，监控失败不影响终端操作
+ *
+ * @author Qicz
+ */
+public class MonitoringTest {
+
+    private final List<ModelXMonitor.Execution> executions = new CopyOnWriteArrayList<>();
+
+    private ModelXMonitor monitor;
+
+    private long slowQueryMillis;
+
+    private Class<? extends Log> logImpl;
+
+    @Before
+    public void setUp() {
+        H2Database.reset(20, 0);
+        this.monitor = ModelXConfig.getMonitor();
+        this.slowQueryMillis = ModelXConfig.getSlowQueryMillis();
+        this.logImpl = LogFactory.getLog(MonitoringTest.class).getClass();
+        ModelXConfig.setMonitor(this.executions::add);
+        RecordingLog.WARNINGS.clear();
+    }
+
+    @After
+    public void tearDown() {
+        ModelXConfig.setMonitor(this.monitor);
+        ModelXConfig.setSlowQueryMillis(this.slowQueryMillis);
+        LogFactory.useCustomLogging(this.logImpl);
+    }
+
+    @Test
+    public void queryIsReportedWithItsShape() {
+        List<UserDO> users = ModelXQuery.of(UserDO.class).in(UserDO::getUserId, Arrays.asList(1, 2, 3)).doQuery();
+        assertEquals(1, this.executions.size());
+        ModelXMonitor.Execution execution = this.executions.get(0);
+        assertSame(UserDO.class, execution.getEntityClass());
+        assertEquals("doQuery", execution.getTerminal());
+        assertEquals(users.size(), execution.getRows());
+        assertNull(execution.getError());
+        assertTrue(execution.getElapsedNanos() > 0);
+        assertTrue(execution.getSql(), execution.getSql().contains("(?...)"));
+        assertTrue(execution.getSql(), !execution.getSql().contains("#{"));
+    }
+
+    @Test
+    public void sameShapeHasTheSameFingerprint() {
+        ModelXQuery.of(UserDO.class).eq(UserDO::getAge, 1).in(UserDO::getUserId, Arrays.asList(1, 2)).doQuery();
+        ModelXQuery.of(UserDO.class).eq(UserDO::getAge, 2).in(UserDO::getUserId, Arrays.asList(3, 4, 5)).doQuery();
+        ModelXQuery.of(UserDO.class).gt(UserDO::getAge, 2).doQuery();
+        assertEquals(this.executions.get(0).getFingerprint(), this.executions.get(1).getFingerprint());
+        assertNotEquals(this.executions.get(0).getFingerprint(), this.executions.get(2).getFingerprint());
+    }
+
+    @Test
+    public void writesReportAffectedRows() {
+        assertEquals(10, ModelXQuery.of(UserDO.class).lt(UserDO::getAge, 5).doDeleteChunked(3));
+        ModelXMonitor.Execution execution = this.executions.get(this.executions.size() - 1);
+        assertEquals("doDeleteChunked", execution.getTerminal());
+        assertEquals(10, execution.getRows());
+    }
+
+    @Test
+    public void consumerTerminalsReportDeliveredRows() {
+        ModelXQuery.of(UserDO.class).doScan(7, chunk -> {
+        });
+        ModelXQuery.of(UserDO.class).lt(UserDO::getAge, 5).doQueryParallel(UserDO::getUserId, 3, slice -> {
+        });
+        assertEquals(20, this.executions.get(0).getRows());
+        assertEquals("doQueryParallel", this.executions.get(1).getTerminal());
+        assertEquals(10, this.executions.get(1).getRows());
+    }
+
+    @Test
+    public void failureIsReported() {
+        try {
+            ModelXQuery.of(UserDO.class).orderByAsc(UserDO::getAge).doSeekPage(UserDO::getUserId, null, 5);
+            fail("seek pagination orders by the key only");
+        } catch (MybatisPlusException e) {
+            ModelXMonitor.Execution execution = this.executions.get(0);
+            assertEquals("doSeekPage", execution.getTerminal());
+            assertSame(e, execution.getError());
+            assertNull(execution.getSql());
+        }
+    }
+
+    @Test
+    public void failingMonitorDoesNotFailTheQuery() {
+        LogFactory.useCustomLogging(RecordingLog.class);
+        ModelXConfig.setMonitor(execution -> {
+            throw new IllegalStateException("broken monitor");
+        });
+        assertEquals(20, ModelXQuery.of(UserDO.class).doQuery().size());
+        assertTrue(RecordingLog.WARNINGS.get(0).contains("broken monitor"));
+    }
+
+    @Test
+    public void slowQueriesAreLogged() {
+        LogFactory.useCustomLogging(RecordingLog.class);
+        ModelXConfig.setMonitor(ModelXMonitor.NOOP);
+        ModelXConfig.setSlowQueryMillis(TimeUnit.MINUTES.toMillis(1));
+        ModelXQuery.of(UserDO.class).doScan(5, chunk -> sleep());
+        assertTrue(RecordingLog.WARNINGS.isEmpty());
+
+        ModelXConfig.setSlowQueryMillis(1);
+        ModelXQuery.of(UserDO.class).doScan(5, chunk -> sleep());
+        assertEquals(1, RecordingLog.WARNINGS.size());
+        String warning = RecordingLog.WARNINGS.get(0);
+        assertTrue(warning, warning.startsWith("Slow doScan on " + UserDO.class.getName()));
+        assertTrue(warning, warning.contains("rows=20"));
+    }
+
+    @Test
+    public void histogramsPerShape() {
+        LatencyHistograms histograms = new LatencyHistograms();
+        ModelXConfig.setMonitor(histograms);
+        for (int i = 1; i <= 3; i++) {
+            ModelXQuery.of(UserDO.class).eq(UserDO::getAge, i).doQuery();
+        }
+        ModelXQuery.of(UserDO.class).doCount();
+        List<LatencyHistograms.Histogram> snapshot = histograms.snapshot();
+        assertEquals(2, snapshot.size());
+        LatencyHistograms.Histogram query = snapshot.stream().filter(h -> "doQuery".equals(h.getTerminal())).findFirst().get();
+        assertEquals(3, query.getCount());
+        assertEquals(6, query.getRows());
+        assertTrue(query.getPercentileMillis(0.99) >= query.getMeanMillis());
+    }
+
+    private static void sleep() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 记录warn日志
+     */
+    public static final class RecordingLog implements Log {
+
+        static final List<String> WARNINGS = new CopyOnWriteArrayList<>();
+
+        public RecordingLog(String clazz) {
+        }
+
+        @Override
+        public boolean isDebugEnabled() {
+            return false;
+        }
+
+        @Override
+        public boolean isTraceEnabled() {
+            return false;
+        }
+
+        @Override
+        public void error(String s, Throwable e) {
+        }
+
+        @Override
+        public void error(String s) {
+        }
+
+        @Override
+        public void debug(String s) {
+        }
+
+        @Override
+        public void trace(String s) {
+        }
+
+        @Override
+        public void warn(String s) {
+            WARNINGS.add(s);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.exceptions.MybatisPlusException;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 分片并行查询：分片边界包含最小值和最大值，partitionColumn为NULL的行单独一片，合并后按链上的orderBy排序
+ *
+ * @author Qicz
+ */
+public class ParallelQueryTest {
+
+    @Before
+    public void setUp() {
+        // 用户i的age为i % 10
+        H2Database.reset(20, 0);
+    }
+
+    @Test
+    public void slicesCoverMinAndMaxOnce() {
+        List<UserDO> users = ModelXQuery.of(UserDO.class).orderByAsc(UserDO::getUserId).doQueryParallel(UserDO::getUserId, 3);
+        assertEquals(range(1, 20), ids(users));
+        // [1, 8) [8, 15) [15, 20] 及 IS NULL
+        assertEquals(Arrays.asList(0, 6, 7, 7), sliceSizes(ModelXQuery.of(UserDO.class), UserDO::getUserId, 3));
+    }
+
+    @Test
+    public void nullSliceHoldsTheNullRows() {
+        H2Database.execute(H2Database.dataSource(), "UPDATE t_user SET age = NULL WHERE user_id IN (1, 2, 3)");
+        List<UserDO> users = ModelXQuery.of(UserDO.class).orderByAsc(UserDO::getUserId).doQueryParallel(UserDO::getAge, 4);
+        assertEquals(range(1, 20), ids(users));
+        // age 0~9：[0, 3) 4行 [3, 6) 5行 [6, 9) 6行 [9, 9] 2行 及 IS NULL 3行
+        assertEquals(Arrays.asList(2, 3, 4, 5, 6), sliceSizes(ModelXQuery.of(UserDO.class), UserDO::getAge, 4));
+    }
+
+    @Test
+    public void onlyNullValues() {
+        H2Database.execute(H2Database.dataSource(), "UPDATE t_user SET age = NULL");
+        assertEquals(20, ModelXQuery.of(UserDO.class).doQueryParallel(UserDO::getAge, 4).size());
+        assertEquals(Collections.singletonList(20), sliceSizes(ModelXQuery.of(UserDO.class), UserDO::getAge, 4));
+    }
+
+    @Test
+    public void morePartitionsThanValues() {
+        assertEquals(20, ModelXQuery.of(UserDO.class).doQueryParallel(UserDO::getAge, 50).size());
+        // 每个age一片及 IS NULL
+        List<Integer> sizes = sliceSizes(ModelXQuery.of(UserDO.class), UserDO::getAge, 50);
+        assertEquals(11, sizes.size());
+        assertEquals(Integer.valueOf(0), sizes.get(0));
+    }
+
+    @Test
+    public void singleValueAndNegativeBounds() {
+        assertEquals(Arrays.asList(3L, 13L), ids(ModelXQuery.of(UserDO.class).eq(UserDO::getAge, 3)
+                .orderByAsc(UserDO::getUserId).doQueryParallel(UserDO::getAge, 4)));
+        H2Database.execute(H2Database.dataSource(), "UPDATE t_user SET age = age - 5");
+        List<UserDO> users = ModelXQuery.of(UserDO.class).lt(UserDO::getAge, 0).orderByDesc(UserDO::getUserId)
+                .doQueryParallel(UserDO::getAge, 3);
+        assertEquals(Arrays.asList(20L, 14L, 13L, 12L, 11L, 10L, 4L, 3L, 2L, 1L), ids(users));
+    }
+
+    @Test
+    public void emptyTable() {
+        H2Database.execute(H2Database.dataSource(), "DELETE FROM t_user");
+        assertTrue(ModelXQuery.of(UserDO.class).doQueryParallel(UserDO::getUserId, 4).isEmpty());
+        assertEquals(Collections.singletonList(0), sliceSizes(ModelXQuery.of(UserDO.class), UserDO::getUserId, 4));
+    }
+
+    @Test
+    public void invalidArgumentsAreRejected() {
+        try {
+            ModelXQuery.of(UserDO.class).doQueryParallel(UserDO::getUserName, 2);
+            fail("partition column must be integral");
+        } catch (MybatisPlusException e) {
+            assertTrue(e.getMessage().contains("integral"));
+        }
+        try {
+            ModelXQuery.of(UserDO.class).groupBy(UserDO::getAge).doQueryParallel(UserDO::getAge, 2);
+            fail("groupBy can not be merged");
+        } catch (MybatisPlusException e) {
+            assertTrue(e.getMessage().contains("groupBy"));
+        }
+        try {
+            ModelXQuery.of(UserDO.class).doQueryParallel(UserDO::getAge, 0);
+            fail("partitions must be positive");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("partitions"));
+        }
+    }
+
+    /**
+     * 每片的行数，升序
+     */
+    private static List<Integer> sliceSizes(ModelXQuery<UserDO> query, SFunction<UserDO, ?> partitionColumn, int partitions) {
+        List<Integer> sizes = new ArrayList<>();
+        query.doQueryParallel(partitionColumn, partitions, slice -> sizes.add(slice.size()));
+        Collections.sort(sizes);
+        return sizes;
+    }
+
+    private static List<Long> range(long from, long to) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(List<UserDO> users) {
+        return users.stream().map(UserDO::getUserId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 单列投影：经过Executor插件、NULL值跳过、释放连接
+ *
+ * @author Qicz
+ */
+public class ProjectionsTest {
+
+    private static final AtomicInteger PROJECTIONS = new AtomicInteger();
+
+    @BeforeClass
+    public static void registerInterceptor() {
+        H2Database.start().getConfiguration().addInterceptor(new ProjectionCounter());
+    }
+
+    @Before
+    public void setUp() {
+        H2Database.reset(5, 0);
+        PROJECTIONS.set(0);
+    }
+
+    @Test
+    public void longsIntsAndStrings() {
+        assertArrayEquals(new long[]{1, 2, 3, 4, 5},
+                ModelXQuery.of(UserDO.class).orderByAsc(UserDO::getUserId).doQueryLongs(UserDO::getUserId));
+        assertArrayEquals(new int[]{3, 4, 5},
+                ModelXQuery.of(UserDO.class).ge(UserDO::getAge, 3).orderByAsc(UserDO::getUserId).doQueryInts(UserDO::getAge));
+        assertArrayEquals(new String[]{"user1", "user2"},
+                ModelXQuery.of(UserDO.class).le(UserDO::getUserId, 2).orderByAsc(UserDO::getUserId).doQueryStrings(UserDO::getUserName));
+        assertEquals(3, PROJECTIONS.get());
+        assertEquals(0, H2Database.dataSource().getPoolState().getActiveConnectionCount());
+    }
+
+    @Test
+    public void nullValuesAreSkipped() {
+        H2Database.execute(H2Database.dataSource(), "UPDATE t_user SET age = NULL, user_name = NULL WHERE user_id IN (2, 4)");
+        assertArrayEquals(new int[]{1, 3, 5},
+                ModelXQuery.of(UserDO.class).orderByAsc(UserDO::getUserId).doQueryInts(UserDO::getAge));
+        assertArrayEquals(new String[]{"user1", "user3", "user5"},
+                ModelXQuery.of(UserDO.class).orderByAsc(UserDO::getUserId).doQueryStrings(UserDO::getUserName));
+    }
+
+    /**
+     * 统计经过Executor插件的投影查询
+     */
+    @Intercepts(@Signature(type = Executor.class, method = "query",
+            args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}))
+    public static final class ProjectionCounter implements Interceptor {
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            if (((MappedStatement) invocation.getArgs()[0]).getId().contains("$projection")) {
+                PROJECTIONS.incrementAndGet();
+            }
+            return invocation.proceed();
+        }
+    }
+}
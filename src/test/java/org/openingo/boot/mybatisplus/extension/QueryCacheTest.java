@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * 查询缓存：同一条件的不同终端操作分别缓存，写操作后失效
+ *
+ * @author Qicz
+ */
+public class QueryCacheTest {
+
+    @Before
+    public void setUp() {
+        H2Database.reset(3, 0);
+    }
+
+    @Test
+    public void listAndOneOfTheSameChainAreCachedApart() {
+        List<UserDO> users = ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 2).cached(Duration.ofMinutes(1)).doQuery();
+        assertEquals(1, users.size());
+        UserDO user = ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 2).cached(Duration.ofMinutes(1)).doQueryOne();
+        assertEquals("user2", user.getUserName());
+        assertEquals(1, ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 2).cached(Duration.ofMinutes(1)).doQuery().size());
+    }
+
+    @Test
+    public void cachedColumnarBatchesAreCopied() {
+        ColumnarBatch first = ModelXQuery.of(UserDO.class).orderByAsc(UserDO::getUserId)
+                .cached(Duration.ofMinutes(1)).doQueryColumnar(UserDO::getUserId, UserDO::getUserName);
+        first.column("userId").getLongs()[0] = 100L;
+        first.column("userName").getDictionary().set(0, "changed");
+        first.column("userId").getNulls().set(1);
+        ColumnarBatch second = ModelXQuery.of(UserDO.class).orderByAsc(UserDO::getUserId)
+                .cached(Duration.ofMinutes(1)).doQueryColumnar(UserDO::getUserId, UserDO::getUserName);
+        assertEquals(1L, second.column("userId").getLongs()[0]);
+        assertEquals("user1", second.column("userName").getString(0));
+        assertFalse(second.column("userId").isNull(1));
+        assertEquals(1, QueryCache.stats().getHits());
+    }
+
+    @Test
+    public void writesInvalidateTheCache() {
+        assertEquals("user1", ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 1).cached(Duration.ofMinutes(1)).doQueryOne().getUserName());
+        ModelXQuery.of(UserDO.class).set(UserDO::getUserName, "renamed").eq(UserDO::getUserId, 1).doUpdate();
+        assertEquals("renamed", ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 1).cached(Duration.ofMinutes(1)).doQueryOne().getUserName());
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 读写分离：主库与从库两个H2数据库，读路由到从库，写操作后的读己之写窗口及跨线程传递的路由上下文
+ *
+ * @author Qicz
+ */
+public class ReadWriteRoutingTest {
+
+    private static PooledDataSource primary;
+
+    private static PooledDataSource replica;
+
+    private static ReadWriteDataSource routing;
+
+    private int inChunkSize;
+
+    @BeforeClass
+    public static void start() {
+        primary = H2Database.pooled("primary");
+        replica = H2Database.pooled("replica");
+        String ddl = "CREATE TABLE t_node (node_id BIGINT PRIMARY KEY, name VARCHAR(30))";
+        H2Database.execute(primary, ddl);
+        H2Database.execute(replica, ddl);
+        routing = new ReadWriteDataSource(primary, replica);
+        H2Database.build("routing", routing, NodeMapper.class);
+    }
+
+    @AfterClass
+    public static void stop() {
+        // 路由状态是全局的，避免窗口影响其他用例的缓存
+        routing.setReadYourWritesWindow(Duration.ZERO);
+    }
+
+    @Before
+    public void setUp() {
+        reset(primary, "primary");
+        reset(replica, "replica");
+        // 每个用例从没有写操作的状态开始：窗口为0时第一次读取即清除当前线程的写记录
+        routing.setReadYourWritesWindow(Duration.ZERO);
+        ModelXQuery.of(NodeDO.class).doCount();
+        routing.setReadYourWritesWindow(Duration.ofMinutes(1));
+        this.inChunkSize = ModelXConfig.getInChunkSize();
+    }
+
+    @After
+    public void tearDown() {
+        ModelXConfig.setInChunkSize(this.inChunkSize);
+    }
+
+    @Test
+    public void readsUseTheReplicaAndWritesThePrimary() {
+        assertEquals(set("replica"), names(ModelXQuery.of(NodeDO.class).doQuery()));
+        assertTrue(ModelXQuery.of(NodeDO.class).set(NodeDO::getName, "updated").eq(NodeDO::getNodeId, 1).doUpdate());
+        assertEquals("updated", name(primary, 1));
+        assertEquals("replica", name(replica, 1));
+    }
+
+    @Test
+    public void readsStickToThePrimaryAfterAWrite() {
+        ModelXQuery.of(NodeDO.class).set(NodeDO::getName, "updated").eq(NodeDO::getNodeId, 1).doUpdate();
+        assertEquals("updated", ModelXQuery.of(NodeDO.class).eq(NodeDO::getNodeId, 1).doQueryOne().getName());
+    }
+
+    @Test
+    public void asyncWriteIsVisibleToTheSubmittingThread() {
+        assertTrue(ModelXQuery.of(NodeDO.class).set(NodeDO::getName, "updated").eq(NodeDO::getNodeId, 1).doUpdateAsync().join());
+        assertEquals("updated", ModelXQuery.of(NodeDO.class).eq(NodeDO::getNodeId, 1).doQueryOne().getName());
+        assertEquals("updated", ModelXQuery.of(NodeDO.class).eq(NodeDO::getNodeId, 1).doQueryOneAsync().join().getName());
+    }
+
+    @Test
+    public void asyncReadsUseTheReplica() {
+        assertEquals(set("replica"), names(ModelXQuery.of(NodeDO.class).doQueryAsync().join()));
+    }
+
+    @Test
+    public void parallelSlicesFollowTheCallerContext() {
+        List<NodeDO> nodes = ModelXQuery.of(NodeDO.class).doQueryParallel(NodeDO::getNodeId, 3);
+        assertEquals(6, nodes.size());
+        assertEquals(set("replica"), names(nodes));
+
+        ModelXQuery.of(NodeDO.class).set(NodeDO::getName, "updated").eq(NodeDO::getNodeId, 1).doUpdate();
+        assertEquals(set("primary", "updated"), names(ModelXQuery.of(NodeDO.class).doQueryParallel(NodeDO::getNodeId, 3)));
+    }
+
+    @Test
+    public void inChunksFollowTheCallerContext() {
+        ModelXConfig.setInChunkSize(2);
+        List<Integer> ids = Arrays.asList(1, 2, 3, 4, 5, 6);
+        assertEquals(set("replica"), names(ModelXQuery.of(NodeDO.class).in(NodeDO::getNodeId, ids).doQuery()));
+
+        ModelXQuery.of(NodeDO.class).set(NodeDO::getName, "updated").eq(NodeDO::getNodeId, 1).doUpdate();
+        assertEquals(set("primary", "updated"), names(ModelXQuery.of(NodeDO.class).in(NodeDO::getNodeId, ids).doQuery()));
+    }
+
+    @Test
+    public void loaderBatchesFollowTheCallerContext() {
+        assertEquals("replica", ModelXLoader.of(NodeDO.class).load(1L).join().getName());
+
+        ModelXQuery.of(NodeDO.class).set(NodeDO::getName, "updated").eq(NodeDO::getNodeId, 1).doUpdate();
+        List<NodeDO> nodes = ModelXLoader.of(NodeDO.class).loadMany(Arrays.asList(1L, 2L)).join();
+        assertEquals(Arrays.asList("updated", "primary"), nodes.stream().map(NodeDO::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void cacheAndCoalescingAreSkippedInsideTheWindow() {
+        ModelXQuery.of(NodeDO.class).set(NodeDO::getName, "updated").eq(NodeDO::getNodeId, 1).doUpdate();
+        QueryCache.clear();
+        SingleFlight.reset();
+        NodeDO node = ModelXQuery.of(NodeDO.class).eq(NodeDO::getNodeId, 1).cached(Duration.ofMinutes(1)).coalesced().doQueryOne();
+        assertEquals("updated", node.getName());
+        assertEquals(0, QueryCache.stats().getMisses());
+        assertEquals(0, QueryCache.stats().getSize());
+        assertEquals(0, SingleFlight.stats().getExecutions());
+    }
+
+    @Test
+    public void replicaResultsLoadedInsideTheWindowAreNotCached() {
+        ModelXQuery.of(NodeDO.class).set(NodeDO::getName, "updated").eq(NodeDO::getNodeId, 1).doUpdate();
+        QueryCache.clear();
+        // 其他线程没有写操作，读取尚未复制的从库
+        assertEquals("replica", CompletableFuture.supplyAsync(() -> ModelXQuery.of(NodeDO.class)
+                .eq(NodeDO::getNodeId, 1).cached(Duration.ofMinutes(1)).doQueryOne().getName()).join());
+        assertEquals(1, QueryCache.stats().getMisses());
+        assertEquals(0, QueryCache.stats().getSize());
+
+        // 窗口之后的查询结果正常缓存
+        routing.setReadYourWritesWindow(Duration.ZERO);
+        CompletableFuture.runAsync(() -> ModelXQuery.of(NodeDO.class)
+                .eq(NodeDO::getNodeId, 1).cached(Duration.ofMinutes(1)).doQueryOne()).join();
+        assertEquals(1, QueryCache.stats().getSize());
+    }
+
+    private static void reset(PooledDataSource dataSource, String name) {
+        H2Database.execute(dataSource, "DELETE FROM t_node");
+        for (int i = 1; i <= 6; i++) {
+            H2Database.execute(dataSource, "INSERT INTO t_node (node_id, name) VALUES (" + i + ", '" + name + "')");
+        }
+    }
+
+    private static String name(PooledDataSource dataSource, long nodeId) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT name FROM t_node WHERE node_id = " + nodeId)) {
+            return resultSet.next() ? resultSet.getString(1) : null;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Set<String> names(List<NodeDO> nodes) {
+        return nodes.stream().map(NodeDO::getName).collect(Collectors.toSet());
+    }
+
+    private static Set<String> set(String... names) {
+        return Arrays.stream(names).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.exceptions.MybatisPlusException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Seek分页及分块扫描：按key翻页、链上OR条件的嵌套、key为NULL或未select时失败
+ *
+ * @author Qicz
+ */
+public class SeekPageTest {
+
+    @Before
+    public void setUp() {
+        // 用户i的age为i % 10，created_at为2021-01-01T08:30:15后i天
+        H2Database.reset(20, 0);
+    }
+
+    @Test
+    public void pagesFollowTheKey() {
+        assertEquals(range(1, 7), ids(ModelXQuery.of(UserDO.class).doSeekPage(UserDO::getUserId, null, 7)));
+        assertEquals(range(8, 14), ids(ModelXQuery.of(UserDO.class).doSeekPage(UserDO::getUserId, 7L, 7)));
+        assertEquals(range(15, 20), ids(ModelXQuery.of(UserDO.class).doSeekPage(UserDO::getUserId, 14L, 7)));
+        assertEquals(Collections.emptyList(), ModelXQuery.of(UserDO.class).doSeekPage(UserDO::getUserId, 20L, 7));
+    }
+
+    @Test
+    public void pagesByAnotherUniqueColumn() {
+        LocalDateTime afterKey = ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 5).doQueryOne().getCreatedAt();
+        assertEquals(Arrays.asList(6L, 7L, 8L), ids(ModelXQuery.of(UserDO.class).doSeekPage(UserDO::getCreatedAt, afterKey, 3)));
+    }
+
+    @Test
+    public void orConditionsStayNested() {
+        // (age = 1 OR age = 2) AND user_id > 2，不会再次返回用户1
+        List<UserDO> page = ModelXQuery.of(UserDO.class).eq(UserDO::getAge, 1).or().eq(UserDO::getAge, 2)
+                .doSeekPage(UserDO::getUserId, 2L, 10);
+        assertEquals(Arrays.asList(11L, 12L), ids(page));
+    }
+
+    @Test
+    public void scanVisitsEveryRowOnce() {
+        List<Integer> sizes = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        ModelXQuery.of(UserDO.class).doScan(7, chunk -> {
+            sizes.add(chunk.size());
+            ids.addAll(ids(chunk));
+        });
+        assertEquals(Arrays.asList(7, 7, 6), sizes);
+        assertEquals(range(1, 20), ids);
+    }
+
+    @Test
+    public void scanWithConditionAndExactChunks() {
+        List<Integer> sizes = new ArrayList<>();
+        ModelXQuery.of(UserDO.class).lt(UserDO::getAge, 5).doScan(UserDO::getUserId, 5, chunk -> sizes.add(chunk.size()));
+        assertEquals(Arrays.asList(5, 5), sizes);
+    }
+
+    @Test
+    public void scanOfAnEmptyTable() {
+        H2Database.execute(H2Database.dataSource(), "DELETE FROM t_user");
+        List<List<UserDO>> chunks = new ArrayList<>();
+        ModelXQuery.of(UserDO.class).doScan(5, chunks::add);
+        assertTrue(chunks.isEmpty());
+    }
+
+    @Test
+    public void keyNotSelectedFails() {
+        try {
+            ModelXQuery.of(UserDO.class).select(UserDO::getUserName).doSeekPage(UserDO::getUserId, null, 3);
+            fail("the key column is not selected");
+        } catch (MybatisPlusException e) {
+            assertTrue(e.getMessage().contains("null key"));
+        }
+        List<List<UserDO>> chunks = new ArrayList<>();
+        try {
+            ModelXQuery.of(UserDO.class).select(UserDO::getUserName).doScan(5, chunks::add);
+            fail("the key column is not selected");
+        } catch (MybatisPlusException e) {
+            assertTrue(e.getMessage().contains("null key"));
+        }
+        assertTrue(chunks.isEmpty());
+    }
+
+    @Test
+    public void nullKeyValueFails() {
+        // H2中NULL排在最前，第一页的最后一行key为NULL
+        H2Database.execute(H2Database.dataSource(), "UPDATE t_user SET created_at = NULL WHERE user_id <= 3");
+        try {
+            ModelXQuery.of(UserDO.class).doSeekPage(UserDO::getCreatedAt, null, 3);
+            fail("the key column has NULL values");
+        } catch (MybatisPlusException e) {
+            assertTrue(e.getMessage().contains("null key"));
+        }
+    }
+
+    @Test
+    public void orderByIsRejected() {
+        try {
+            ModelXQuery.of(UserDO.class).orderByDesc(UserDO::getAge).doSeekPage(UserDO::getUserId, null, 3);
+            fail("seek pagination orders by the key only");
+        } catch (MybatisPlusException e) {
+            assertTrue(e.getMessage().contains("orderBy"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveSizeIsRejected() {
+        ModelXQuery.of(UserDO.class).doSeekPage(UserDO::getUserId, null, 0);
+    }
+
+    private static List<Long> range(long from, long to) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(List<UserDO> users) {
+        return users.stream().map(UserDO::getUserId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 OpeningO Co.,Ltd.
+ *
+ *    https://openingo.org
+ *    contactus(at)openingo.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.openingo.boot.mybatisplus.extension;
+
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * upsert：三种方言的SQL、方言识别、语句缓存及H2上的MERGE
+ *
+ * @author Qicz
+ */
+public class UpsertsTest {
+
+    private static final List<String> COLUMNS = Arrays.asList("id", "name", "age");
+
+    private static final List<String> VALUES = Arrays.asList("#{id}", "#{name}", "#{age}");
+
+    private static final String INSERT = "INSERT INTO t (id, name, age) VALUES (#{id}, #{name}, #{age})";
+
+    @Before
+    public void setUp() {
+        H2Database.reset(3, 0);
+    }
+
+    @Test
+    public void onDuplicateKeyUpdate() {
+        assertEquals(INSERT + " ON DUPLICATE KEY UPDATE name = VALUES(name), age = VALUES(age)",
+                Dialects.ON_DUPLICATE_KEY_UPDATE.upsert("t", "id", COLUMNS, VALUES, Arrays.asList("name", "age")));
+        assertEquals(INSERT + " ON DUPLICATE KEY UPDATE id = id",
+                Dialects.ON_DUPLICATE_KEY_UPDATE.upsert("t", "id", COLUMNS, VALUES, Collections.emptyList()));
+        assertEquals(INSERT + " AS mx_new ON DUPLICATE KEY UPDATE name = mx_new.name, age = mx_new.age",
+                Dialects.ON_DUPLICATE_KEY_UPDATE_ROW_ALIAS.upsert("t", "id", COLUMNS, VALUES, Arrays.asList("name", "age")));
+    }
+
+    @Test
+    public void onConflict() {
+        assertEquals(INSERT + " ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name",
+                Dialects.ON_CONFLICT.upsert("t", "id", COLUMNS, VALUES, Collections.singletonList("name")));
+        assertEquals(INSERT + " ON CONFLICT (id) DO NOTHING",
+                Dialects.ON_CONFLICT.upsert("t", "id", COLUMNS, VALUES, Collections.emptyList()));
+    }
+
+    @Test
+    public void merge() {
+        assertEquals("MERGE INTO t USING DUAL ON (id = #{id}) WHEN MATCHED THEN UPDATE SET age = #{age}"
+                        + " WHEN NOT MATCHED THEN INSERT (id, name, age) VALUES (#{id}, #{name}, #{age})",
+                Dialects.MERGE.upsert("t", "id", COLUMNS, VALUES, Collections.singletonList("age")));
+        assertEquals("MERGE INTO t USING DUAL ON (id = #{id})"
+                        + " WHEN NOT MATCHED THEN INSERT (id, name, age) VALUES (#{id}, #{name}, #{age})",
+                Dialects.MERGE.upsert("t", "id", COLUMNS, VALUES, Collections.emptyList()));
+    }
+
+    @Test
+    public void detectUpsert() {
+        assertSame(Dialects.ON_DUPLICATE_KEY_UPDATE_ROW_ALIAS, Dialects.detectUpsert("MySQL", "8.0.23-log"));
+        assertSame(Dialects.ON_DUPLICATE_KEY_UPDATE_ROW_ALIAS, Dialects.detectUpsert("MySQL", "8.0.19"));
+        assertSame(Dialects.ON_DUPLICATE_KEY_UPDATE, Dialects.detectUpsert("MySQL", "8.0.18"));
+        assertSame(Dialects.ON_DUPLICATE_KEY_UPDATE, Dialects.detectUpsert("MySQL", "5.7.30"));
+        assertSame(Dialects.ON_DUPLICATE_KEY_UPDATE, Dialects.detectUpsert("MySQL", "5.5.5-10.5.8-MariaDB"));
+        assertSame(Dialects.ON_DUPLICATE_KEY_UPDATE, Dialects.detectUpsert("MariaDB", "10.5.8"));
+        assertSame(Dialects.ON_DUPLICATE_KEY_UPDATE, Dialects.detectUpsert("MySQL"));
+        assertSame(Dialects.ON_CONFLICT, Dialects.detectUpsert("PostgreSQL", "13.1"));
+        assertSame(Dialects.MERGE, Dialects.detectUpsert("H2", "1.4.200 (2019-10-14)"));
+    }
+
+    @Test
+    public void statementsAreKeyedByTheUpdateColumnSet() {
+        MappedStatement nameAge = Upserts.statement(UserDO.class, Dialects.MERGE, columns(UserDO::getUserName, UserDO::getAge));
+        assertSame(nameAge, Upserts.statement(UserDO.class, Dialects.MERGE, columns(UserDO::getAge, UserDO::getUserName)));
+        assertNotSame(nameAge, Upserts.statement(UserDO.class, Dialects.MERGE, columns(UserDO::getAge)));
+        assertNotSame(nameAge, Upserts.statement(UserDO.class, Dialects.ON_CONFLICT, columns(UserDO::getUserName, UserDO::getAge)));
+    }
+
+    @Test
+    public void mergeOnH2() {
+        UserDO existing = user(1L, "renamed", 50);
+        UserDO created = user(10L, "user10", 7);
+        assertEquals(2, ModelX.upsertBatch(Arrays.asList(existing, created), columns(UserDO::getUserName)));
+        UserDO one = ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 1).doQueryOne();
+        assertEquals("renamed", one.getUserName());
+        // 只更新指定的字段
+        assertEquals(Integer.valueOf(1), one.getAge());
+        UserDO ten = ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 10).doQueryOne();
+        assertEquals("user10", ten.getUserName());
+        assertNull(ten.getCreatedAt());
+
+        assertEquals(1, ModelX.upsertBatch(Collections.singletonList(user(2L, "all", 60))));
+        UserDO two = ModelXQuery.of(UserDO.class).eq(UserDO::getUserId, 2).doQueryOne();
+        assertEquals("all", two.getUserName());
+        assertEquals(Integer.valueOf(60), two.getAge());
+        assertEquals(0, H2Database.dataSource().getPoolState().getActiveConnectionCount());
+    }
+
+    @SafeVarargs
+    private static SFunction<UserDO, ?>[] columns(SFunction<UserDO, ?>... columns) {
+        return columns;
+    }
+
+    private static UserDO user(Long userId, String userName, Integer age) {
+        UserDO user = new UserDO();
+        user.setUserId(userId);
+        user.setUserName(userName);
+        user.setAge(age);
+        return user;
+    }
+}